@@ -0,0 +1,113 @@
+package org.elasticsearch.sync.cloud.benchmark;
+
+import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.xcontent.NamedXContentRegistry;
+import org.elasticsearch.common.xcontent.XContentFactory;
+import org.elasticsearch.common.xcontent.XContentHelper;
+import org.elasticsearch.common.xcontent.XContentParser;
+import org.elasticsearch.common.xcontent.XContentType;
+import org.elasticsearch.common.xcontent.json.JsonXContent;
+import org.elasticsearch.sync.cloud.utils.IndexInfo;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * (De)serialization of the state document of every index, as the state is written and read back.
+ * toXContent and fromXContent are the paths of ElasticClient#writeState and the state scan, the others
+ * those of the legacy state document.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IndexInfoBenchmark {
+
+    /**
+     * The source of each document of a state write, see ElasticClient#writeState.
+     */
+    @Benchmark
+    public void toXContent(IndexStates states, Blackhole blackhole) throws IOException {
+        for (IndexInfo info : states.infos) {
+            blackhole.consume(info.toXContent(XContentFactory.jsonBuilder()).bytes());
+        }
+    }
+
+    /**
+     * Each hit of a state scan, streamed off its source bytes.
+     */
+    @Benchmark
+    public void fromXContent(SourceBytes sources, Blackhole blackhole) throws IOException {
+        for (BytesReference source : sources.sources) {
+            try (XContentParser parser = XContentHelper.createParser(NamedXContentRegistry.EMPTY, source, XContentType.JSON)) {
+                blackhole.consume(IndexInfo.fromXContent(parser));
+            }
+        }
+    }
+
+    @Benchmark
+    public void toJson(IndexStates states, Blackhole blackhole) throws IOException {
+        for (IndexInfo info : states.infos) {
+            blackhole.consume(info.toJson());
+        }
+    }
+
+    @Benchmark
+    public void fromJson(IndexStates states, Blackhole blackhole) {
+        for (String doc : states.docs) {
+            blackhole.consume(new IndexInfo(doc));
+        }
+    }
+
+    /**
+     * From the source maps of the search hits, the parse itself is done by the search response.
+     */
+    @Benchmark
+    public void fromMap(SourceMaps maps, Blackhole blackhole) {
+        for (Map<String, Object> source : maps.sources) {
+            blackhole.consume(new IndexInfo(source));
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class SourceBytes {
+        List<BytesReference> sources;
+
+        @Setup
+        public void setUp(IndexStates states) {
+            sources = new ArrayList<>(states.docs.size());
+            for (String doc : states.docs) {
+                sources.add(new BytesArray(doc));
+            }
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class SourceMaps {
+        List<Map<String, Object>> sources;
+
+        @Setup
+        public void setUp(IndexStates states) {
+            sources = new ArrayList<>(states.docs.size());
+            for (String doc : states.docs) {
+                sources.add(XContentHelper.convertToMap(JsonXContent.jsonXContent, doc, false));
+            }
+        }
+    }
+}
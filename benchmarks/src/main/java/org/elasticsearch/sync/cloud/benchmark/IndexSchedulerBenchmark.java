@@ -0,0 +1,57 @@
+package org.elasticsearch.sync.cloud.benchmark;
+
+import org.elasticsearch.sync.cloud.start.IndexScheduler;
+import org.elasticsearch.sync.cloud.start.SchedulingPolicy;
+import org.elasticsearch.sync.cloud.utils.IndexInfo;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The READY queue of the source, see {@link IndexScheduler}, ordered by the "schedule" policy: the head
+ * taken for a snapshot batch and put back, e.g. the indices left out of the batch.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IndexSchedulerBenchmark {
+
+    @Benchmark
+    public List<IndexInfo> pollAndPutBack(Queue queue) {
+        List<IndexInfo> head = queue.scheduler.poll(queue.batch);
+        queue.scheduler.putBack(head);
+        return head;
+    }
+
+    @State(Scope.Thread)
+    public static class Queue {
+
+        @Param({"name", "newest_first", "largest_first"})
+        public String schedule;
+
+        @Param({"1", "50", "1000"})
+        public int batch;
+
+        IndexScheduler scheduler;
+
+        @Setup
+        public void setUp(IndexStates states) {
+            scheduler = new IndexScheduler(SchedulingPolicy.fromString(schedule).comparator(Collections.emptyMap()));
+            scheduler.addAll(states.infos);
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package org.elasticsearch.sync.cloud.benchmark;
+
+import org.elasticsearch.sync.cloud.utils.IndexInfo;
+import org.elasticsearch.sync.cloud.utils.Utils;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * The state of a sync of "indices" daily indices, midway: a third each READY, SNAPSHOT_INPROGRESS and
+ * SNAPSHOTED, in the forms the plugin keeps it in (objects, the legacy state document, a document per index).
+ */
+@State(Scope.Benchmark)
+public class IndexStates {
+
+    @Param({"1000", "10000", "100000"})
+    public int indices;
+
+    List<IndexInfo> infos;
+    //index -> primary bytes, as read from the source cluster.
+    Map<String, Long> sizes;
+    //the legacy state document of all indices, see Utils#toJson(List).
+    String json;
+    //a state document per index, as stored by ElasticClient.
+    List<String> docs;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        Random random = new Random(indices);
+        IndexInfo.State[] states = IndexInfo.State.values();
+        infos = new ArrayList<>(indices);
+        sizes = new LinkedHashMap<>();
+        docs = new ArrayList<>(indices);
+        long day = 1514764800000L;
+        for (int i = 0; i < indices; i++) {
+            String name = "logs-" + (i % 50) + "-" + (day + i / 50 * 86400000L);
+            //up to 64gb, sizes over 2gb are parsed as long.
+            long size = 1 + (random.nextLong() >>> 28);
+            IndexInfo.State state = states[i % states.length];
+            IndexInfo info = new IndexInfo(name, size, state, state == IndexInfo.State.READY ? null : "snapshot_" + name)
+                    .withCreationDate(day + i / 50 * 86400000L);
+            infos.add(info);
+            sizes.put(name, size);
+            docs.add(info.toJson());
+        }
+        json = Utils.toJson(infos);
+    }
+}
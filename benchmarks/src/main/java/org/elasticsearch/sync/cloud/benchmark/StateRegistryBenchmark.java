@@ -0,0 +1,74 @@
+package org.elasticsearch.sync.cloud.benchmark;
+
+import org.elasticsearch.sync.cloud.start.SchedulingPolicy;
+import org.elasticsearch.sync.cloud.start.StateRegistry;
+import org.elasticsearch.sync.cloud.utils.IndexInfo;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The in-memory state of the source, see {@link StateRegistry}: the load on start (and on every retry), and
+ * the moves of a snapshot of "batch" indices with the flushes before the snapshot and before the publish.
+ * The writer returns the entries, only the registry is measured.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StateRegistryBenchmark {
+
+    @Benchmark
+    public StateRegistry load(IndexStates states) {
+        StateRegistry registry = new StateRegistry(SchedulingPolicy.NAME.comparator(Collections.emptyMap()),
+                entries -> entries);
+        registry.load(states.infos);
+        return registry;
+    }
+
+    /**
+     * One snapshot: poll, SNAPSHOT_INPROGRESS, flush, SNAPSHOTED, flush. The batch is then moved back to READY,
+     * written by the next flush, so the queue keeps its size over the iterations.
+     */
+    @Benchmark
+    public List<IndexInfo> snapshotCycle(LoadedRegistry loaded) throws IOException {
+        StateRegistry registry = loaded.registry;
+        List<IndexInfo> batch = registry.poll(loaded.batch);
+        String snapshot = "snapshot_" + batch.get(0).getName();
+        List<IndexInfo> inProgress = registry.move(batch, IndexInfo.State.SNAPSHOT_INPROGRESS, snapshot);
+        registry.flush();
+        List<IndexInfo> snapshotted = registry.move(inProgress, IndexInfo.State.SNAPSHOTED, snapshot);
+        registry.flush();
+        return registry.move(snapshotted, IndexInfo.State.READY, null);
+    }
+
+    @State(Scope.Thread)
+    public static class LoadedRegistry {
+
+        @Param({"1", "50"})
+        public int batch;
+
+        StateRegistry registry;
+
+        @Setup(Level.Iteration)
+        public void setUp(IndexStates states) {
+            registry = new StateRegistry(SchedulingPolicy.NAME.comparator(Collections.emptyMap()), entries -> entries);
+            registry.load(states.infos);
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package org.elasticsearch.sync.cloud.benchmark;
+
+import org.elasticsearch.sync.cloud.utils.IndexInfo;
+import org.elasticsearch.sync.cloud.utils.Utils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The {@link Utils} paths run over the full index list on every cycle of the sync.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UtilsBenchmark {
+
+    @Benchmark
+    public String toJsonOfSizes(IndexStates states) throws IOException {
+        return Utils.toJson(states.sizes);
+    }
+
+    @Benchmark
+    public String toJson(IndexStates states) throws IOException {
+        return Utils.toJson(states.infos);
+    }
+
+    @Benchmark
+    public List<IndexInfo> toSnapshots(IndexStates states) {
+        return Utils.toSnapshots(states.json);
+    }
+
+    @Benchmark
+    public List<IndexInfo> sortAndFilter(IndexStates states) {
+        return Utils.sortAndFilter(states.infos, IndexInfo.State.READY);
+    }
+
+    @Benchmark
+    public List<IndexInfo> replace(ReplaceState state) {
+        //moves a different index to the head each time, the list keeps its size.
+        IndexInfo next = state.list.get(state.list.size() - 1);
+        return Utils.replace(next.withState(IndexInfo.State.SNAPSHOTED, "snapshot_" + next.getName()), state.list);
+    }
+
+    /**
+     * Utils#replace changes the list it is given, each trial gets its own copy.
+     */
+    @State(Scope.Thread)
+    public static class ReplaceState {
+        List<IndexInfo> list;
+
+        @Setup
+        public void setUp(IndexStates states) {
+            list = new ArrayList<>(states.infos);
+        }
+    }
+}
@@ -1,24 +1,87 @@
 package org.elasticsearch.sync.cloud;
 
+import org.elasticsearch.client.Client;
 import org.elasticsearch.cluster.metadata.IndexNameExpressionResolver;
 import org.elasticsearch.cluster.node.DiscoveryNodes;
+import org.elasticsearch.cluster.service.ClusterService;
+import org.elasticsearch.common.inject.Module;
 import org.elasticsearch.common.settings.ClusterSettings;
 import org.elasticsearch.common.settings.IndexScopedSettings;
+import org.elasticsearch.common.settings.Setting;
 import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.common.settings.SettingsFilter;
+import org.elasticsearch.common.xcontent.NamedXContentRegistry;
 import org.elasticsearch.plugins.ActionPlugin;
 import org.elasticsearch.plugins.Plugin;
 import org.elasticsearch.rest.RestController;
 import org.elasticsearch.rest.RestHandler;
+import org.elasticsearch.script.ScriptService;
+import org.elasticsearch.sync.cloud.actions.BenchRestAction;
 import org.elasticsearch.sync.cloud.actions.StartRestAction;
+import org.elasticsearch.sync.cloud.actions.StatsRestAction;
 import org.elasticsearch.sync.cloud.actions.StatusRestAction;
+import org.elasticsearch.sync.cloud.elastic.ClusterEvents;
+import org.elasticsearch.sync.cloud.elastic.ElasticClient;
+import org.elasticsearch.sync.cloud.elastic.RepositoryAccess;
+import org.elasticsearch.sync.cloud.start.SyncCoordinator;
+import org.elasticsearch.sync.cloud.status.SyncStats;
+import org.elasticsearch.threadpool.ExecutorBuilder;
+import org.elasticsearch.threadpool.FixedExecutorBuilder;
+import org.elasticsearch.threadpool.ThreadPool;
+import org.elasticsearch.watcher.ResourceWatcherService;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.function.Supplier;
 
 public class CloudSyncPlugin extends Plugin implements ActionPlugin {
 
+    //thread pool of the sync loops and background work, see _nodes/stats/thread_pool.
+    public static final String EXECUTOR_NAME = "cloudsync";
+    //threads the sync loops can pin at a time, see getExecutorBuilders.
+    private static final int loopThreads = 6;
+
+    private final ClusterEvents events = new ClusterEvents();
+    private final RepositoryAccess repositoryAccess = new RepositoryAccess();
+    private final SyncStats stats = new SyncStats();
+
+    @Override
+    public Collection<Object> createComponents(Client client, ClusterService clusterService, ThreadPool threadPool,
+                                               ResourceWatcherService resourceWatcherService, ScriptService scriptService,
+                                               NamedXContentRegistry xContentRegistry) {
+        clusterService.addListener(events);
+        //runs the sync threads on the elected master.
+        SyncCoordinator coordinator = new SyncCoordinator(new ElasticClient(client, events), stats,
+                repositoryAccess, threadPool.executor(EXECUTOR_NAME));
+        clusterService.addListener(coordinator);
+        return Arrays.asList(events, repositoryAccess, stats, coordinator);
+    }
+
+    /**
+     * Source or sink loop, throttle controller, catch-up loop, benchmarks, stats and status loads. The loops make
+     * blocking calls and each pins a thread for its whole run: up to 3, and up to 6 during a handover, while the
+     * loops of a new start request wait on their threads for the old ones to exit. The other threads serve the
+     * REST handlers, which queue behind the loops if the pool is smaller. Sink stages wait on listeners and hold
+     * no thread.
+     */
+    @Override
+    public List<ExecutorBuilder<?>> getExecutorBuilders(Settings settings) {
+        return Collections.singletonList(
+                new FixedExecutorBuilder(settings, EXECUTOR_NAME, loopThreads + 2, 100, "cloudsync.thread_pool"));
+    }
+
+    @Override
+    public List<Setting<?>> getSettings() {
+        return Collections.singletonList(SyncCoordinator.START_SETTING);
+    }
+
+    @Override
+    public Collection<Module> createGuiceModules() {
+        return Collections.singletonList(b -> b.bind(RepositoryAccess.Binder.class).asEagerSingleton());
+    }
 
     @Override
     public List<RestHandler> getRestHandlers(Settings settings, RestController restController,
@@ -27,8 +90,10 @@ public class CloudSyncPlugin extends Plugin implements ActionPlugin {
                                              IndexNameExpressionResolver indexNameExpressionResolver,
                                              Supplier<DiscoveryNodes> nodesInCluster) {
         List<RestHandler> list = new ArrayList<>();
-        list.add(new StatusRestAction(settings,restController));
-        list.add(new StartRestAction(settings,restController));
+        list.add(new StatusRestAction(settings,restController,events,stats.getProgress(),repositoryAccess));
+        list.add(new StatsRestAction(settings,restController,events,stats,repositoryAccess));
+        list.add(new StartRestAction(settings,restController,events));
+        list.add(new BenchRestAction(settings,restController,events,repositoryAccess));
         return list;
     }
 
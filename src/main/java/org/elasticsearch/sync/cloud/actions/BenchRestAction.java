@@ -0,0 +1,93 @@
+package org.elasticsearch.sync.cloud.actions;
+
+
+import org.apache.logging.log4j.Logger;
+import org.elasticsearch.client.node.NodeClient;
+import org.elasticsearch.common.inject.Inject;
+import org.elasticsearch.common.logging.ESLoggerFactory;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.rest.*;
+import org.elasticsearch.sync.cloud.CloudSyncPlugin;
+import org.elasticsearch.sync.cloud.bench.BenchInfo;
+import org.elasticsearch.sync.cloud.bench.RepositoryBenchmark;
+import org.elasticsearch.sync.cloud.elastic.ClusterEvents;
+import org.elasticsearch.sync.cloud.elastic.ElasticClient;
+import org.elasticsearch.sync.cloud.elastic.RepositoryAccess;
+import org.elasticsearch.sync.cloud.messages.ErrorResponseMessage;
+
+import java.io.IOException;
+import java.util.List;
+
+import static org.elasticsearch.rest.RestRequest.Method.POST;
+
+/**
+ * Measures what the cloudsync repository sustains, before a sync is started. Runs on the cloudsync
+ * thread pool, the response is sent once all rounds are done.
+ */
+public class BenchRestAction extends BaseRestHandler {
+
+    private final Logger logger = ESLoggerFactory.getLogger(BenchRestAction.class);
+    private final String repository = "cloudsync_backup";
+    //blobs are written under this path of the repository, apart from the snapshots.
+    private final String benchPath = "cloudsync_bench";
+    private final ClusterEvents events;
+    private final RepositoryAccess repositoryAccess;
+
+    @Inject
+    public BenchRestAction(Settings settings, RestController controller, ClusterEvents events,
+                           RepositoryAccess repositoryAccess) {
+        super(settings);
+        this.events = events;
+        this.repositoryAccess = repositoryAccess;
+        controller.registerHandler(POST, "/cloudsync/_bench", this);
+    }
+
+    @Override
+    protected BaseRestHandler.RestChannelConsumer prepareRequest(RestRequest restRequest, NodeClient client) throws IOException {
+        BenchInfo benchInfo;
+        try {
+            benchInfo = new BenchInfo(restRequest.hasContent() ? restRequest.content().utf8ToString() : null);
+        } catch (Exception ex) {
+            return channel -> sendError(channel, restRequest, ex);
+        }
+        ElasticClient elastic = new ElasticClient(client, events);
+        return channel -> client.threadPool().executor(CloudSyncPlugin.EXECUTOR_NAME).execute(() -> {
+            try {
+                if (benchInfo.getStore() != null && !elastic.hasRepository(repository)
+                        && !elastic.createRepository(benchInfo.getStore(), repository, benchInfo.getLocation())) {
+                    throw new IOException("Failed to create repository.");
+                }
+                RepositoryBenchmark benchmark = new RepositoryBenchmark(
+                        repositoryAccess.blobContainer(repository, benchPath),
+                        benchInfo.getChunkSizes(), benchInfo.getConcurrency(), benchInfo.getBlobs());
+                List<RepositoryBenchmark.Result> results = benchmark.run();
+
+                XContentBuilder builder = channel.newBuilder().startObject();
+                builder.field("repository", repository);
+                builder.startArray("results");
+                for (RepositoryBenchmark.Result result : results) {
+                    result.toXContent(builder);
+                }
+                builder.endArray();
+                builder.endObject();
+                channel.sendResponse(new BytesRestResponse(RestStatus.OK, builder));
+            } catch (Exception ex) {
+                logger.error("cloud-sync bench action failed with error: ", ex);
+                try {
+                    sendError(channel, restRequest, ex);
+                } catch (IOException ioex) {
+                    logger.error("cloud-sync failed to send bench error.", ioex);
+                }
+            }
+        });
+    }
+
+    private void sendError(RestChannel channel, RestRequest restRequest, Exception ex) throws IOException {
+        ErrorResponseMessage message = new ErrorResponseMessage(ex.getMessage());
+        XContentBuilder builder = channel.newBuilder().startObject();
+        message.toXContent(builder, restRequest);
+        builder.endObject();
+        channel.sendResponse(new BytesRestResponse(RestStatus.BAD_REQUEST, builder));
+    }
+}
@@ -8,16 +8,17 @@ import org.elasticsearch.common.logging.ESLoggerFactory;
 import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.common.xcontent.XContentBuilder;
 import org.elasticsearch.rest.*;
+import org.elasticsearch.sync.cloud.elastic.ClusterEvents;
 import org.elasticsearch.sync.cloud.elastic.ElasticClient;
 import org.elasticsearch.sync.cloud.messages.ErrorResponseMessage;
 import org.elasticsearch.sync.cloud.messages.StartResponseMessage;
-import org.elasticsearch.sync.cloud.start.StartAtSinkThread;
-import org.elasticsearch.sync.cloud.start.StartAtSourceThread;
 import org.elasticsearch.sync.cloud.start.StartInfo;
+import org.elasticsearch.sync.cloud.start.SyncCoordinator;
 import org.elasticsearch.sync.cloud.utils.IndexInfo;
-import org.elasticsearch.sync.cloud.utils.Utils;
+import org.elasticsearch.sync.cloud.utils.StateCounts;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 
@@ -26,10 +27,12 @@ import static org.elasticsearch.rest.RestRequest.Method.POST;
 public class StartRestAction extends BaseRestHandler {
 
     private final Logger logger = ESLoggerFactory.getLogger(StartRestAction.class);
+    private final ClusterEvents events;
 
     @Inject
-    public StartRestAction(Settings settings, RestController controller) {
+    public StartRestAction(Settings settings, RestController controller, ClusterEvents events) {
         super(settings);
+        this.events = events;
         controller.registerHandler(POST, "/cloudsync/start", this);
     }
 
@@ -40,15 +43,17 @@ public class StartRestAction extends BaseRestHandler {
             StartInfo startInfo = new StartInfo(restRequest.content().utf8ToString());
             logger.info("cloud-sync- source start.");
 
-            ElasticClient elastic = new ElasticClient(client);
+            ElasticClient elastic = new ElasticClient(client, events);
 
             //todo: needs change once aws-s3 is supported   .
             elastic.isPluginLoaded("repository-gcs");
 
             if (StartInfo.SOURCE.equals(startInfo.getMode())) {
-                sourceActions(startInfo, elastic);
-            } else if (StartInfo.SINK.equals(startInfo.getMode())) {
-                sinkActions(startInfo, elastic);
+                handleStartState(elastic,startInfo.getIndices());
+            }
+            //the elected master picks the request up and runs the threads, see SyncCoordinator.
+            if (!elastic.updatePersistentSetting(SyncCoordinator.START_SETTING.getKey(), startInfo.toJson())) {
+                throw new IOException("Failed to store the start request in the cluster settings.");
             }
         } catch (Exception ex){
             logger.error("cloud-sync start action failed with error: ",ex);
@@ -71,40 +76,34 @@ public class StartRestAction extends BaseRestHandler {
         };
     }
 
-    private void sourceActions(StartInfo startInfo, ElasticClient elastic) throws IOException {
-        elastic.isPluginLoaded("repository-gcs");
-        handleStartState(elastic,startInfo.getIndices());
-
-        StartAtSourceThread sourceThread = new StartAtSourceThread(elastic, startInfo);
-        new Thread(sourceThread).start();
-    }
-
-    private void sinkActions(StartInfo startInfo, ElasticClient elastic) throws IOException {
-        StartAtSinkThread sinkThread = new StartAtSinkThread(elastic,startInfo);
-        new Thread(sinkThread).start();
-    }
-
     private void handleStartState(ElasticClient elastic,final String indicesPattern) throws IOException {
-        String prevState = elastic.readState();
-        if(!prevState.isEmpty()) {
-            List<IndexInfo> list = Utils.sortAndFilter(Utils.toSnapshots(prevState), IndexInfo.State.READY);
-            if(list.size() > 0 ) {
-                logger.info("cloud-sync found valid previous run state. Ignoring input indices pattern. " +
-                        "If you want to run with new indices list, delete .cloudsync index. `curl -XDELETE localhost:9200/.cloudsync` ");
-                return;
-            }
-        }
-        Map<String, Long> indices = elastic.getIndices(indicesPattern);
-        logger.info("cloud-sync indices count: "+indices.size());
-        String snapshotsJson = Utils.toJson(indices);
         if(!elastic.createStateIndex()){
             logger.error("cloud-sync failed to create .cloudsync index.");
             throw new IOException("Failed to create .cloudsync index");
         }
+        elastic.migrateLegacyState();
+
+        StateCounts counts = elastic.readStateCounts();
+        //in-flight snapshots of a stopped run are resumed by the source thread, see InFlightReconciler.
+        if(counts.getCount(IndexInfo.State.READY) > 0 || counts.getCount(IndexInfo.State.SNAPSHOT_INPROGRESS) > 0) {
+            logger.info("cloud-sync found valid previous run state. Ignoring input indices pattern. " +
+                    "If you want to run with new indices list, delete .cloudsync index. `curl -XDELETE localhost:9200/.cloudsync` ");
+            return;
+        }
+        Map<String, Long> indices = elastic.getIndices(indicesPattern);
+        Map<String, Long> creationDates = elastic.getIndexCreationDates(indicesPattern);
+        logger.info("cloud-sync indices count: "+indices.size());
+        List<IndexInfo> entries = new ArrayList<>(indices.size());
+        for(Map.Entry<String, Long> index : indices.entrySet()){
+            entries.add(new IndexInfo(index.getKey(), index.getValue(), IndexInfo.State.READY)
+                    .withCreationDate(creationDates.getOrDefault(index.getKey(), 0L)));
+        }
 
-        if(!elastic.writeState(snapshotsJson)){
-            logger.error("cloud-sync failed to create .cloudsync index.");
-            throw new IOException("Failed to write state to .cloudsync index");
+        //a new run replaces the state of the previous one.
+        if(!counts.isEmpty() && !elastic.resetStateIndex()){
+            logger.error("cloud-sync failed to re-create .cloudsync index.");
+            throw new IOException("Failed to re-create .cloudsync index");
         }
+        elastic.writeState(entries);
     }
 }
@@ -0,0 +1,161 @@
+package org.elasticsearch.sync.cloud.actions;
+
+
+import org.apache.logging.log4j.Logger;
+import org.elasticsearch.client.node.NodeClient;
+import org.elasticsearch.common.logging.ESLoggerFactory;
+import org.elasticsearch.common.inject.Inject;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.ByteSizeValue;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.rest.*;
+import org.elasticsearch.sync.cloud.CloudSyncPlugin;
+import org.elasticsearch.sync.cloud.elastic.ClusterEvents;
+import org.elasticsearch.sync.cloud.elastic.ElasticClient;
+import org.elasticsearch.sync.cloud.elastic.RepositoryAccess;
+import org.elasticsearch.sync.cloud.elastic.TransferProgress;
+import org.elasticsearch.sync.cloud.handoff.HandoffManifest;
+import org.elasticsearch.sync.cloud.handoff.HandoffStore;
+import org.elasticsearch.sync.cloud.status.SyncStats;
+import org.elasticsearch.sync.cloud.utils.IndexInfo;
+import org.elasticsearch.sync.cloud.utils.StateCounts;
+
+import java.io.IOException;
+
+import static org.elasticsearch.rest.RestRequest.Method.GET;
+
+/**
+ * Detailed sync stats of this node: index state, queues, shard level progress of the running snapshot or
+ * restore, bytes, throughput and latency of every phase, and the ETA. Valid on both clusters, the state
+ * and the ETA are reported only on the source, where the .cloudsync index is. The snapshots in the storage
+ * are those of the handoff manifest, as in StatusRestAction, the repository is not listed.
+ */
+public class StatsRestAction extends BaseRestHandler {
+
+    private final Logger logger = ESLoggerFactory.getLogger(StatsRestAction.class);
+    protected final String repository = "cloudsync_backup";
+    private final ClusterEvents events;
+    private final SyncStats stats;
+    private final RepositoryAccess repositoryAccess;
+
+    @Inject
+    public StatsRestAction(Settings settings, RestController controller, ClusterEvents events, SyncStats stats,
+                           RepositoryAccess repositoryAccess) {
+        super(settings);
+        this.events = events;
+        this.stats = stats;
+        this.repositoryAccess = repositoryAccess;
+        controller.registerHandler(GET, "/cloudsync/_stats", this);
+    }
+
+    @Override
+    protected BaseRestHandler.RestChannelConsumer prepareRequest(RestRequest restRequest, NodeClient client) {
+        ElasticClient elastic = new ElasticClient(client, events);
+        //the stats read the state and the manifest, not on the network thread.
+        return channel -> client.threadPool().executor(CloudSyncPlugin.EXECUTOR_NAME).execute(() -> {
+            try {
+                channel.sendResponse(new BytesRestResponse(RestStatus.OK, buildStats(channel, elastic)));
+            } catch (Exception ex) {
+                logger.error("cloud-sync stats action failed with error: ", ex);
+                try {
+                    channel.sendResponse(new BytesRestResponse(channel, ex));
+                } catch (IOException ioex) {
+                    logger.error("cloud-sync failed to send stats error.", ioex);
+                }
+            }
+        });
+    }
+
+    /**
+     * Reads the state, the handoff manifest and the recoveries, runs on the cloudsync executor.
+     */
+    private XContentBuilder buildStats(RestChannel channel, ElasticClient elastic) throws IOException {
+        XContentBuilder builder = channel.newBuilder().startObject();
+        StateCounts counts = elastic.readStateCounts();
+        boolean hasRepository = elastic.hasRepository(repository);
+        //null till the source publishes its first manifest.
+        HandoffManifest manifest = hasRepository ? readManifest() : null;
+        if (!counts.isEmpty()) {
+            long inStorage = 0;
+            long inStorageBytes = 0;
+            if (manifest != null) {
+                for (HandoffManifest.Entry entry : manifest.getSnapshots()) {
+                    inStorage += entry.getIndices().size();
+                    inStorageBytes += entry.getSizeInBytes();
+                }
+            }
+            long remainingBytes = counts.getTotalSizeInBytes() - counts.getSizeInBytes(IndexInfo.State.SNAPSHOTED)
+                    + inStorageBytes;
+            builder.startObject("state");
+            for (IndexInfo.State state : IndexInfo.State.values()) {
+                stateToXContent(builder, state.name().toLowerCase(), counts.getCount(state), counts.getSizeInBytes(state));
+            }
+            stateToXContent(builder, "in_storage", inStorage, inStorageBytes);
+            stateToXContent(builder, "completed", counts.getCount(IndexInfo.State.SNAPSHOTED) - inStorage,
+                    counts.getTotalSizeInBytes() - remainingBytes);
+            builder.endObject();
+            etaToXContent(builder, remainingBytes);
+        }
+        builder.startObject("queue");
+        if (manifest != null) {
+            builder.field("snapshots_in_storage", manifest.getSnapshots().size());
+        }
+        builder.field("sink_pending_stages", stats.getPendingStages());
+        builder.field("sink_failed_snapshots", stats.getFailedSnapshots());
+        builder.endObject();
+
+        builder.startObject("in_flight");
+        if (hasRepository) {
+            progressToXContent(builder, "snapshot", elastic.snapshotProgress(repository));
+        }
+        progressToXContent(builder, "restore", elastic.restoreProgress());
+        builder.endObject();
+
+        builder.field("phases");
+        stats.toXContent(builder);
+        builder.endObject();
+        return builder;
+    }
+
+    private HandoffManifest readManifest() {
+        try {
+            return new HandoffStore(repositoryAccess.blobContainer(repository, HandoffStore.path)).readLatest();
+        } catch (IOException ex) {
+            //no manifest yet.
+            return null;
+        }
+    }
+
+    private void stateToXContent(XContentBuilder builder, String name, long count, long bytes) throws IOException {
+        builder.startObject(name)
+                .field("indices", count)
+                .field("size", new ByteSizeValue(bytes))
+                .field("size_in_bytes", bytes)
+                .endObject();
+    }
+
+    private void progressToXContent(XContentBuilder builder, String name, TransferProgress progress) throws IOException {
+        builder.startObject(name)
+                .field("shards", progress.shards)
+                .field("done", new ByteSizeValue(progress.doneBytes))
+                .field("total", new ByteSizeValue(progress.totalBytes))
+                .endObject();
+    }
+
+    /**
+     * The source is held back by the in-flight budget till the sink catches up, so over an hour the snapshot
+     * rate of the source is also the rate of the whole sync.
+     */
+    private void etaToXContent(XContentBuilder builder, long remainingBytes) throws IOException {
+        long etaMillis = stats.getEtaMillis(SyncStats.Phase.SNAPSHOT, remainingBytes);
+        builder.startObject("eta")
+                .field("remaining", new ByteSizeValue(remainingBytes))
+                .field("bytes_per_sec", new ByteSizeValue(stats.getBytesPerSec(SyncStats.Phase.SNAPSHOT, 60)));
+        if (etaMillis >= 0) {
+            builder.field("time", new TimeValue(etaMillis).toString())
+                    .field("time_in_millis", etaMillis);
+        }
+        builder.endObject();
+    }
+}
@@ -6,24 +6,42 @@ import org.elasticsearch.common.inject.Inject;
 import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.common.xcontent.XContentBuilder;
 import org.elasticsearch.rest.*;
+import org.elasticsearch.sync.cloud.CloudSyncPlugin;
+import org.elasticsearch.sync.cloud.elastic.ClusterEvents;
 import org.elasticsearch.sync.cloud.elastic.ElasticClient;
+import org.elasticsearch.sync.cloud.elastic.RepositoryAccess;
+import org.elasticsearch.sync.cloud.handoff.HandoffManifest;
+import org.elasticsearch.sync.cloud.handoff.HandoffStore;
 import org.elasticsearch.sync.cloud.messages.ErrorResponseMessage;
 import org.elasticsearch.sync.cloud.messages.StatusResponseMessage;
 import org.elasticsearch.sync.cloud.status.StatusInfo;
-import org.elasticsearch.sync.cloud.utils.IndexInfo;
-import org.elasticsearch.sync.cloud.utils.Utils;
+import org.elasticsearch.sync.cloud.status.SyncProgress;
+import org.elasticsearch.sync.cloud.utils.StateCounts;
 
-import java.util.List;
+import java.io.IOException;
 
 import static org.elasticsearch.rest.RestRequest.Method.GET;
 
+/**
+ * Served from the in-memory {@link SyncProgress}, without calls to the cluster or the repository. A stale
+ * view is re-loaded in the background, the request gets the current one.
+ */
 public class StatusRestAction extends BaseRestHandler {
 
    protected final  String repository = "cloudsync_backup";
+    //age of the view that starts a background re-load.
+    private static final long refreshIntervalMSecs = 10000;
+    private final ClusterEvents events;
+    private final SyncProgress progress;
+    private final RepositoryAccess repositoryAccess;
 
     @Inject
-    public StatusRestAction(Settings settings, RestController controller) {
+    public StatusRestAction(Settings settings, RestController controller, ClusterEvents events,
+                            SyncProgress progress, RepositoryAccess repositoryAccess) {
         super(settings);
+        this.events = events;
+        this.progress = progress;
+        this.repositoryAccess = repositoryAccess;
         controller.registerHandler(GET, "/cloudsync/status", this);
     }
 
@@ -33,23 +51,21 @@ public class StatusRestAction extends BaseRestHandler {
         // that makes this api valid on source side. this could be fixed by replicating .cloudsync index to
         // sink cluster.
 
-
-        ElasticClient elastic = new ElasticClient(client);
-        String json = elastic.readState();
-        if(json.isEmpty()){
-            return channel -> {
-                ErrorResponseMessage message = new ErrorResponseMessage("No valid cloudsync state found. This api is " +
-                        "valid only on the source cluster.");
-                XContentBuilder builder = channel.newBuilder().startObject();
-                message.toXContent(builder, restRequest);
-                builder.endObject();
-                channel.sendResponse(new BytesRestResponse(RestStatus.BAD_REQUEST, builder));
-            };
+        ElasticClient elastic = new ElasticClient(client, events);
+        progress.refreshIfStale(refreshIntervalMSecs, client.threadPool().executor(CloudSyncPlugin.EXECUTOR_NAME),
+                view -> load(elastic, view));
+        if(!progress.isLoaded()){
+            return channel -> sendError(channel, restRequest, RestStatus.SERVICE_UNAVAILABLE,
+                    "cloudsync status is loading, retry in a few seconds.");
+        }
+        StatusInfo statusInfo = progress.toStatusInfo();
+        if(statusInfo.totalIndices == 0){
+            return channel -> sendError(channel, restRequest, RestStatus.BAD_REQUEST,
+                    "No valid cloudsync state found. This api is valid only on the source cluster.");
         }
-
 
         return channel -> {
-            StatusResponseMessage message = new StatusResponseMessage(calcStatus(elastic,json));
+            StatusResponseMessage message = new StatusResponseMessage(statusInfo);
             XContentBuilder builder = channel.newBuilder();
             builder.startObject();
             message.toXContent(builder, restRequest);
@@ -58,26 +74,36 @@ public class StatusRestAction extends BaseRestHandler {
         };
     }
 
-    private StatusInfo calcStatus(ElasticClient elastic, String json){
-        StatusInfo statusInfo = new StatusInfo();
-        List<IndexInfo> indices = Utils.toSnapshots(json);
-        List<String> snapShots = elastic.listSnapshots(repository);
-
-        statusInfo.totalIndices = indices.size();
-        int currentSnapShoted = 0;
-
-        for(IndexInfo index :indices){
-            statusInfo.totalSizeInBytes += index.getSizeInBytes();
-            if(index.getState() == IndexInfo.State.READY){
-                statusInfo.pendingIndicesToSnapshot++;
-                statusInfo.totalPendingInBytes += index.getSizeInBytes();
+    /**
+     * Index counts come from an aggregation of the state, the indices still in the storage from the
+     * handoff manifest: snapshoted indices are complete once the sink acked their snapshot.
+     */
+    private void load(ElasticClient elastic, SyncProgress view) throws IOException {
+        StateCounts counts = elastic.readStateCounts();
+        long inStorage = 0;
+        long inStorageBytes = 0;
+        HandoffManifest manifest = null;
+        if (!counts.isEmpty()) {
+            try {
+                manifest = new HandoffStore(repositoryAccess.blobContainer(repository, HandoffStore.path)).readLatest();
+            } catch (IOException ex) {
+                //no repository or manifest yet.
             }
-            if(index.getState() == IndexInfo.State.SNAPSHOTED){
-                currentSnapShoted++;
+        }
+        if (manifest != null) {
+            for (HandoffManifest.Entry entry : manifest.getSnapshots()) {
+                inStorage += entry.getIndices().size();
+                inStorageBytes += entry.getSizeInBytes();
             }
         }
-        statusInfo.pendingIndicesToRestore = statusInfo.totalIndices - statusInfo.pendingIndicesToSnapshot;
-        statusInfo.completedIndices = currentSnapShoted - snapShots.size();
-        return statusInfo;
+        view.reset(counts, inStorage, inStorageBytes);
+    }
+
+    private void sendError(RestChannel channel, RestRequest restRequest, RestStatus status, String msg) throws IOException {
+        ErrorResponseMessage message = new ErrorResponseMessage(msg);
+        XContentBuilder builder = channel.newBuilder().startObject();
+        message.toXContent(builder, restRequest);
+        builder.endObject();
+        channel.sendResponse(new BytesRestResponse(status, builder));
     }
 }
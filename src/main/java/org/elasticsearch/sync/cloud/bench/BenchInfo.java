@@ -0,0 +1,93 @@
+package org.elasticsearch.sync.cloud.bench;
+
+import org.elasticsearch.common.xcontent.XContentHelper;
+import org.elasticsearch.common.xcontent.json.JsonXContent;
+import org.elasticsearch.sync.cloud.start.StartInfo;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.InputMismatchException;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * curl -X POST "localhost:9200/cloudsync/_bench" -H 'Content-Type: application/json' -d'
+ * {
+ *     "store" : "fs",                     (optional) creates the repository if it is not registered yet.
+ *     "location": "/mount/backup",        (optional) with store.
+ *     "chunk_sizes" : ["1mb", "64mb"],    (optional) size of the blobs written and read.
+ *     "concurrency" : [1, 4],             (optional) parallel blob operations.
+ *     "blobs" : 8                         (optional) blobs per chunk size and concurrency.
+ * }
+ */
+final public class BenchInfo {
+
+    private String store;
+    private String location;
+    private List<Long> chunkSizes = Arrays.asList(1024L * 1024L, 16L * 1024L * 1024L);
+    private List<Integer> concurrency = Arrays.asList(1, 4);
+    private int blobs = 8;
+
+    public BenchInfo(String json) {
+        if (json != null && !json.trim().isEmpty()) {
+            parse(json);
+        }
+        validate();
+    }
+
+    private void parse(String json) {
+        Map<String, Object> mapValue = XContentHelper.convertToMap(JsonXContent.jsonXContent, json, false);
+        this.store = (String) mapValue.get("store");
+        this.location = (String) mapValue.get("location");
+        if (mapValue.get("chunk_sizes") instanceof List) {
+            this.chunkSizes = new ArrayList<>();
+            for (Object size : (List<?>) mapValue.get("chunk_sizes")) {
+                this.chunkSizes.add(StartInfo.toBytes(size, "chunk_sizes", 0));
+            }
+        }
+        if (mapValue.get("concurrency") instanceof List) {
+            this.concurrency = new ArrayList<>();
+            for (Object level : (List<?>) mapValue.get("concurrency")) {
+                this.concurrency.add(Integer.parseInt(level.toString()));
+            }
+        }
+        if (mapValue.containsKey("blobs")) {
+            this.blobs = Integer.parseInt(mapValue.get("blobs").toString());
+        }
+    }
+
+    private void validate() {
+        if ((store == null) != (location == null)) {
+            throw new InputMismatchException("cloud-sync Invalid bench. Provide both store and location, or neither.");
+        }
+        if (chunkSizes.isEmpty() || chunkSizes.stream().anyMatch(size -> size < 1)) {
+            throw new InputMismatchException("cloud-sync Invalid chunk_sizes. Provide positive sizes.");
+        }
+        if (concurrency.isEmpty() || concurrency.stream().anyMatch(level -> level < 1)) {
+            throw new InputMismatchException("cloud-sync Invalid concurrency. Provide values >= 1.");
+        }
+        if (blobs < 1) {
+            throw new InputMismatchException("cloud-sync Invalid blobs. Provide a value >= 1.");
+        }
+    }
+
+    public String getStore() {
+        return store;
+    }
+
+    public String getLocation() {
+        return location;
+    }
+
+    public List<Long> getChunkSizes() {
+        return chunkSizes;
+    }
+
+    public List<Integer> getConcurrency() {
+        return concurrency;
+    }
+
+    public int getBlobs() {
+        return blobs;
+    }
+}
@@ -0,0 +1,222 @@
+package org.elasticsearch.sync.cloud.bench;
+
+import org.apache.logging.log4j.Logger;
+import org.elasticsearch.common.blobstore.BlobContainer;
+import org.elasticsearch.common.logging.ESLoggerFactory;
+import org.elasticsearch.common.unit.ByteSizeValue;
+import org.elasticsearch.common.util.concurrent.EsExecutors;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Writes, reads and deletes synthetic blobs through a repository's blob container, for every chunk size and
+ * concurrency level, and measures throughput and per-operation latency. The blobs are removed again
+ * after each round.
+ */
+public class RepositoryBenchmark {
+
+    private final Logger logger = ESLoggerFactory.getLogger(RepositoryBenchmark.class);
+
+    public enum Operation {
+        WRITE, READ, DELETE
+    }
+
+    //random content, repeated to fill blobs larger than this.
+    private static final int patternSize = 1024 * 1024;
+
+    private final BlobContainer container;
+    private final List<Long> chunkSizes;
+    private final List<Integer> concurrencyLevels;
+    private final int blobs;
+    private final byte[] pattern;
+
+    public RepositoryBenchmark(final BlobContainer container, final List<Long> chunkSizes,
+                               final List<Integer> concurrencyLevels, final int blobs) {
+        this.container = container;
+        this.chunkSizes = chunkSizes;
+        this.concurrencyLevels = concurrencyLevels;
+        this.blobs = blobs;
+        this.pattern = new byte[patternSize];
+        new Random(0).nextBytes(pattern);
+    }
+
+    public List<Result> run() throws IOException, InterruptedException {
+        List<Result> results = new ArrayList<>();
+        for (long chunkSize : chunkSizes) {
+            for (int concurrency : concurrencyLevels) {
+                ExecutorService executor = Executors.newFixedThreadPool(concurrency,
+                        EsExecutors.daemonThreadFactory("cloudsync_bench"));
+                try {
+                    String prefix = "bench-" + chunkSize + "-" + concurrency + "-";
+                    for (Operation operation : Operation.values()) {
+                        Result result = runOperation(executor, operation, prefix, chunkSize, concurrency);
+                        logger.info("cloud-sync bench " + result);
+                        results.add(result);
+                    }
+                } finally {
+                    executor.shutdownNow();
+                }
+            }
+        }
+        return results;
+    }
+
+    private Result runOperation(final ExecutorService executor, final Operation operation, final String prefix,
+                                final long chunkSize, final int concurrency) throws IOException, InterruptedException {
+        List<Future<Long>> futures = new ArrayList<>(blobs);
+        long start = System.nanoTime();
+        for (int i = 0; i < blobs; i++) {
+            String name = prefix + i;
+            futures.add(executor.submit(() -> {
+                long opStart = System.nanoTime();
+                switch (operation) {
+                    case WRITE:
+                        container.writeBlob(name, new PatternInputStream(pattern, chunkSize), chunkSize);
+                        break;
+                    case READ:
+                        drain(container.readBlob(name));
+                        break;
+                    default:
+                        container.deleteBlob(name);
+                }
+                return System.nanoTime() - opStart;
+            }));
+        }
+        long[] latencies = new long[blobs];
+        for (int i = 0; i < blobs; i++) {
+            try {
+                latencies[i] = futures.get(i).get();
+            } catch (ExecutionException ex) {
+                throw new IOException("cloud-sync bench " + operation + " of [" + prefix + i + "] failed.", ex.getCause());
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        long bytes = (operation == Operation.DELETE) ? 0 : chunkSize * blobs;
+        return new Result(operation, chunkSize, concurrency, bytes, elapsed, latencies);
+    }
+
+    private static void drain(final InputStream in) throws IOException {
+        byte[] buffer = new byte[64 * 1024];
+        try (InputStream stream = in) {
+            while (stream.read(buffer) >= 0) {
+                //discard.
+            }
+        }
+    }
+
+    /**
+     * Outcome of one operation at one chunk size and concurrency.
+     */
+    public static class Result {
+
+        private final Operation operation;
+        private final long chunkSize;
+        private final int concurrency;
+        private final long bytes;
+        private final long elapsedNanos;
+        //sorted.
+        private final long[] latencyNanos;
+
+        Result(Operation operation, long chunkSize, int concurrency, long bytes, long elapsedNanos, long[] latencyNanos) {
+            this.operation = operation;
+            this.chunkSize = chunkSize;
+            this.concurrency = concurrency;
+            this.bytes = bytes;
+            this.elapsedNanos = elapsedNanos;
+            this.latencyNanos = latencyNanos.clone();
+            Arrays.sort(this.latencyNanos);
+        }
+
+        public Operation getOperation() {
+            return operation;
+        }
+
+        public double getMegabytesPerSec() {
+            return elapsedNanos <= 0 ? 0 : (bytes / (1024.0 * 1024.0)) / (elapsedNanos / 1e9);
+        }
+
+        public double getOperationsPerSec() {
+            return elapsedNanos <= 0 ? 0 : latencyNanos.length / (elapsedNanos / 1e9);
+        }
+
+        /**
+         * @param percentile 0..100, nearest rank.
+         */
+        public double getLatencyMillis(final double percentile) {
+            if (latencyNanos.length == 0) {
+                return 0;
+            }
+            int rank = (int) Math.ceil(percentile / 100.0 * latencyNanos.length);
+            return latencyNanos[Math.max(0, Math.min(latencyNanos.length - 1, rank - 1))] / 1e6;
+        }
+
+        public XContentBuilder toXContent(XContentBuilder builder) throws IOException {
+            return builder.startObject()
+                    .field("operation", operation.name().toLowerCase())
+                    .field("chunk_size", new ByteSizeValue(chunkSize).toString())
+                    .field("concurrency", concurrency)
+                    .field("ops_per_sec", getOperationsPerSec())
+                    .field("mb_per_sec", getMegabytesPerSec())
+                    .startObject("latency_ms")
+                    .field("p50", getLatencyMillis(50))
+                    .field("p90", getLatencyMillis(90))
+                    .field("p99", getLatencyMillis(99))
+                    .field("max", getLatencyMillis(100))
+                    .endObject()
+                    .endObject();
+        }
+
+        @Override
+        public String toString() {
+            return operation + " chunk_size=" + new ByteSizeValue(chunkSize) + " concurrency=" + concurrency
+                    + " mb/s=" + String.format("%.1f", getMegabytesPerSec())
+                    + " p50=" + String.format("%.1f", getLatencyMillis(50)) + "ms"
+                    + " p99=" + String.format("%.1f", getLatencyMillis(99)) + "ms";
+        }
+    }
+
+    /**
+     * length bytes of the pattern, repeated.
+     */
+    static class PatternInputStream extends InputStream {
+
+        private final byte[] pattern;
+        private final long length;
+        private long position = 0;
+
+        PatternInputStream(byte[] pattern, long length) {
+            this.pattern = pattern;
+            this.length = length;
+        }
+
+        @Override
+        public int read() {
+            if (position >= length) {
+                return -1;
+            }
+            return pattern[(int) (position++ % pattern.length)] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (position >= length) {
+                return -1;
+            }
+            int offset = (int) (position % pattern.length);
+            int n = (int) Math.min(Math.min(len, length - position), pattern.length - offset);
+            System.arraycopy(pattern, offset, b, off, n);
+            position += n;
+            return n;
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package org.elasticsearch.sync.cloud.elastic;
+
+import org.elasticsearch.cluster.ClusterChangedEvent;
+import org.elasticsearch.cluster.ClusterState;
+import org.elasticsearch.cluster.ClusterStateListener;
+import org.elasticsearch.cluster.RestoreInProgress;
+import org.elasticsearch.cluster.SnapshotDeletionsInProgress;
+import org.elasticsearch.cluster.SnapshotsInProgress;
+
+/**
+ * Wakes up the sync threads when the local cluster state changes in a way they wait on: snapshots
+ * or snapshot deletions in progress, restores in progress or shard routing (index health).
+ * Registered once per node by the plugin.
+ *
+ * Waiters read {@link #generation()} before checking their condition and pass it to {@link #awaitChange},
+ * so a change between the check and the wait is not lost. Changes made by the other cluster (e.g. the sink
+ * deleting a snapshot from the storage) are not seen here, waiters fall back to their timeout for those.
+ */
+public class ClusterEvents implements ClusterStateListener {
+
+    private final Object mutex = new Object();
+    private long generation = 0;
+
+    @Override
+    public void clusterChanged(ClusterChangedEvent event) {
+        if (event.routingTableChanged()
+                || customChanged(event, SnapshotsInProgress.TYPE)
+                || customChanged(event, SnapshotDeletionsInProgress.TYPE)
+                || customChanged(event, RestoreInProgress.TYPE)) {
+            synchronized (mutex) {
+                generation++;
+                mutex.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * @return a counter that moves on every change the sync threads wait on.
+     */
+    public long generation() {
+        synchronized (mutex) {
+            return generation;
+        }
+    }
+
+    /**
+     * Blocks till a change after the given generation, or till the timeout.
+     * @param since generation read before the waiter checked its condition.
+     * @param timeoutMSecs fallback interval, for changes the listener can not see.
+     * @return true if woken by a change.
+     */
+    public boolean awaitChange(final long since, final long timeoutMSecs) throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + timeoutMSecs;
+        synchronized (mutex) {
+            while (generation == since) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    return false;
+                }
+                mutex.wait(remaining);
+            }
+            return true;
+        }
+    }
+
+    private static boolean customChanged(ClusterChangedEvent event, String type) {
+        ClusterState.Custom current = event.state().custom(type);
+        ClusterState.Custom previous = event.previousState().custom(type);
+        return current != previous;
+    }
+}
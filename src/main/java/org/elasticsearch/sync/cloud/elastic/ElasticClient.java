@@ -1,69 +1,134 @@
 package org.elasticsearch.sync.cloud.elastic;
 
 
-import org.elasticsearch.action.admin.cluster.health.ClusterHealthResponse;
+import org.elasticsearch.ElasticsearchParseException;
 import org.elasticsearch.action.admin.cluster.node.info.NodeInfo;
 import org.elasticsearch.action.admin.cluster.node.info.NodesInfoResponse;
+import org.elasticsearch.action.admin.cluster.node.stats.NodeStats;
+import org.elasticsearch.action.admin.cluster.node.stats.NodesStatsResponse;
 import org.elasticsearch.action.admin.cluster.repositories.delete.DeleteRepositoryRequest;
 import org.elasticsearch.action.admin.cluster.repositories.put.PutRepositoryRequest;
 import org.elasticsearch.action.admin.cluster.repositories.verify.VerifyRepositoryRequest;
 import org.elasticsearch.action.admin.cluster.repositories.verify.VerifyRepositoryResponse;
 import org.elasticsearch.action.admin.cluster.snapshots.create.CreateSnapshotRequest;
-import org.elasticsearch.action.admin.cluster.snapshots.create.CreateSnapshotResponse;
 import org.elasticsearch.action.admin.cluster.snapshots.delete.DeleteSnapshotRequest;
 import org.elasticsearch.action.admin.cluster.snapshots.get.GetSnapshotsRequest;
 import org.elasticsearch.action.admin.cluster.snapshots.get.GetSnapshotsResponse;
 import org.elasticsearch.action.admin.cluster.snapshots.restore.RestoreSnapshotRequest;
-import org.elasticsearch.action.admin.cluster.snapshots.restore.RestoreSnapshotResponse;
+import org.elasticsearch.action.admin.cluster.snapshots.status.SnapshotIndexStatus;
+import org.elasticsearch.action.admin.cluster.snapshots.status.SnapshotStatus;
 import org.elasticsearch.action.admin.cluster.snapshots.status.SnapshotsStatusRequest;
 import org.elasticsearch.action.admin.cluster.snapshots.status.SnapshotsStatusResponse;
 import org.elasticsearch.action.admin.cluster.state.ClusterStateRequestBuilder;
 import org.elasticsearch.action.admin.cluster.state.ClusterStateResponse;
 import org.elasticsearch.action.admin.indices.create.CreateIndexRequest;
+import org.elasticsearch.action.admin.indices.recovery.RecoveryRequest;
+import org.elasticsearch.action.admin.indices.recovery.RecoveryResponse;
+import org.elasticsearch.action.admin.indices.stats.CommonStatsFlags;
 import org.elasticsearch.action.admin.indices.stats.IndexStats;
+import org.elasticsearch.action.admin.indices.stats.ShardStats;
 import org.elasticsearch.action.admin.indices.stats.IndicesStatsRequest;
 import org.elasticsearch.action.admin.indices.stats.IndicesStatsResponse;
-import org.elasticsearch.action.index.IndexResponse;
+import org.elasticsearch.action.bulk.BulkItemResponse;
+import org.elasticsearch.action.bulk.BulkRequest;
+import org.elasticsearch.action.bulk.BulkRequestBuilder;
+import org.elasticsearch.action.bulk.BulkResponse;
+import org.elasticsearch.action.get.GetResponse;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.action.ActionFuture;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.support.GroupedActionListener;
 import org.elasticsearch.action.support.IndicesOptions;
-import org.elasticsearch.client.node.NodeClient;
-import org.elasticsearch.cluster.health.ClusterHealthStatus;
+import org.elasticsearch.action.support.PlainActionFuture;
+import org.elasticsearch.action.support.WriteRequest;
+import org.elasticsearch.client.Client;
+import org.elasticsearch.cluster.routing.RecoverySource;
+import org.elasticsearch.cluster.metadata.IndexMetaData;
+import org.elasticsearch.cluster.metadata.MetaData;
+import org.elasticsearch.cluster.routing.ShardRouting;
+import org.elasticsearch.common.CheckedConsumer;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.collect.Tuple;
 import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.common.xcontent.NamedXContentRegistry;
+import org.elasticsearch.common.xcontent.XContentHelper;
+import org.elasticsearch.common.xcontent.XContentParser;
 import org.elasticsearch.common.xcontent.XContentType;
+import org.elasticsearch.index.VersionType;
+import org.elasticsearch.index.query.QueryBuilder;
+import org.elasticsearch.index.query.QueryBuilders;
+import org.elasticsearch.index.query.functionscore.ScoreFunctionBuilders;
+import org.elasticsearch.indices.recovery.RecoveryState;
 import org.elasticsearch.plugins.PluginInfo;
 import org.elasticsearch.repositories.RepositoryMissingException;
-import org.elasticsearch.rest.RestStatus;
+import org.elasticsearch.search.SearchHit;
+import org.elasticsearch.search.aggregations.AggregationBuilders;
+import org.elasticsearch.search.aggregations.bucket.terms.Terms;
+import org.elasticsearch.search.aggregations.metrics.sum.Sum;
+import org.elasticsearch.search.sort.SortOrder;
+import org.elasticsearch.snapshots.RestoreInfo;
 import org.elasticsearch.snapshots.SnapshotInfo;
+import org.elasticsearch.snapshots.SnapshotMissingException;
+import org.elasticsearch.snapshots.SnapshotState;
+import org.elasticsearch.sync.cloud.utils.IndexInfo;
+import org.elasticsearch.threadpool.ThreadPool;
+import org.elasticsearch.threadpool.ThreadPoolStats;
+import org.elasticsearch.sync.cloud.utils.StateCounts;
+import org.elasticsearch.sync.cloud.utils.Utils;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.elasticsearch.common.xcontent.XContentFactory.jsonBuilder;
 
 /**
  * Set of Elastic utils
  */
 public class ElasticClient {
 
-    private NodeClient client;
+    private Client client;
+    private final ClusterEvents events;
     private final String stateIndex = ".cloudsync";
+    private final String stateType = "doc";
+    //single document of the state layout before one document per index.
+    private final String legacyStateId = "1";
+    private static final int bulkSize = 1000;
+    private static final TimeValue scrollKeepAlive = TimeValue.timeValueMinutes(1);
+    //fallback, for health changes the cluster events miss.
+    private static final int greenWaitIntervalMSecs = 10000;
+    //registrations of a repository with its default throttles, see updateRepositoryThrottle.
+    private final AtomicLong registrations = new AtomicLong();
 
 
-    public ElasticClient(NodeClient client) {
+    public ElasticClient(Client client, ClusterEvents events) {
         this.client = client;
+        this.events = events;
+    }
+
+    public ClusterEvents getEvents() {
+        return events;
     }
 
-    private boolean indexExists()  {
+    private boolean indexExists() throws IOException {
         ClusterStateRequestBuilder request = client.admin().cluster().prepareState();
-        ClusterStateResponse response = request.execute().actionGet();
+        ClusterStateResponse response = await(request.execute());
         return response.getState().metaData().hasIndex(stateIndex);
     }
 
     /**
-     * Create .cloudsync index to store the progress/state.
+     * Create .cloudsync index to store the progress/state. One document per index, the document id is the index name.
      * @return
      */
-    public boolean createStateIndex(){
+    public boolean createStateIndex() throws IOException {
         if(indexExists())
             return true;
 
@@ -71,30 +136,209 @@ public class ElasticClient {
         request.settings(Settings.builder()
                 .put("index.number_of_shards", 1)
                 .put("index.number_of_replicas", 0));
+        request.mapping(stateType, jsonBuilder().startObject().startObject(stateType).startObject("properties")
+                .startObject("name").field("type", "keyword").endObject()
+                .startObject("sizeInBytes").field("type", "long").endObject()
+                .startObject("state").field("type", "keyword").endObject()
+                .startObject("snapshot").field("type", "keyword").endObject()
+                .startObject("creationDate").field("type", "long").endObject()
+                .endObject().endObject().endObject());
 
-        return client.admin().indices().create(request).actionGet().isAcknowledged();
+        return await(client.admin().indices().create(request)).isAcknowledged();
     }
 
     /**
-     * Writes to the .cloudsync index.
-     * @param json
+     * Deletes and re-creates the .cloudsync index, dropping all state.
      * @return
      */
-    public boolean writeState(final String json){
-        IndexResponse response = client.prepareIndex(stateIndex, "doc","1")
-                .setSource(json, XContentType.JSON)
-                .execute().actionGet();
-        return (response.status().getStatus() == RestStatus.CREATED.getStatus()) ;
+    public boolean resetStateIndex() throws IOException {
+        if(indexExists() && !await(client.admin().indices().prepareDelete(stateIndex).execute()).isAcknowledged())
+            return false;
+        return createStateIndex();
     }
 
     /**
-     * Returns the lastest version of the stored doc.
-     * @return
+     * Moves the state of an earlier version, one document ("doc/1") holding all indices, to one document per index.
+     * The index is re-created, the old mapping does not fit the new layout.
      */
-    public String readState(){
+    public void migrateLegacyState() throws IOException {
         if(!indexExists())
-            return "";
-        return client.prepareGet(stateIndex, "doc", "1").get().getSourceAsString();
+            return;
+        GetResponse legacy = await(client.prepareGet(stateIndex, stateType, legacyStateId).execute());
+        if(!legacy.isExists())
+            return;
+
+        //streamed, the legacy document holds every index of the sync.
+        List<IndexInfo> entries = new ArrayList<>();
+        try (XContentParser parser = XContentHelper.createParser(NamedXContentRegistry.EMPTY, legacy.getSourceAsBytesRef(),
+                XContentType.JSON)) {
+            //an index named "1" in the new layout.
+            if (!Utils.readSnapshots(parser, entries::add))
+                return;
+        }
+        if(!resetStateIndex()) {
+            throw new IOException("Failed to re-create .cloudsync index");
+        }
+        writeState(entries);
+    }
+
+    /**
+     * Writes the entries to the .cloudsync index with bulk requests. Entries read from the index carry their
+     * document version, the write fails if someone else changed the document since.
+     * @param entries
+     * @return the entries with their new document versions.
+     */
+    public List<IndexInfo> writeState(final List<IndexInfo> entries) throws IOException {
+        List<IndexInfo> written = new ArrayList<>(entries.size());
+        for (int from = 0; from < entries.size(); from += bulkSize) {
+            List<IndexInfo> chunk = entries.subList(from, Math.min(entries.size(), from + bulkSize));
+            BulkRequestBuilder bulk = client.prepareBulk().setRefreshPolicy(WriteRequest.RefreshPolicy.WAIT_UNTIL);
+            for (IndexInfo entry : chunk) {
+                bulk.add(client.prepareIndex(stateIndex, stateType, entry.getName())
+                        .setSource(entry.toXContent(jsonBuilder()))
+                        .setVersion(entry.getVersion())
+                        .setVersionType(VersionType.INTERNAL));
+            }
+            BulkResponse response = await(bulk.execute());
+            BulkItemResponse[] items = response.getItems();
+            for (int i = 0; i < items.length; i++) {
+                if (items[i].isFailed()) {
+                    throw new IOException("Failed to write state of [" + items[i].getId() + "]: " + items[i].getFailureMessage());
+                }
+                written.add(chunk.get(i).withVersion(items[i].getVersion()));
+            }
+        }
+        return written;
+    }
+
+    /**
+     * @return all entries of the state.
+     */
+    public List<IndexInfo> readState(){
+        return searchState(QueryBuilders.matchAllQuery());
+    }
+
+    /**
+     * @return entries in the given state.
+     */
+    public List<IndexInfo> readState(final IndexInfo.State state){
+        return searchState(QueryBuilders.termQuery("state", state.name()));
+    }
+
+    /**
+     * @return entries held by the given snapshots.
+     */
+    public List<IndexInfo> readStateOfSnapshots(final Collection<String> snapshots){
+        if (snapshots.isEmpty())
+            return new ArrayList<>();
+        return searchState(QueryBuilders.termsQuery("snapshot", snapshots));
+    }
+
+    /**
+     * @return number of indices and size per state, aggregated by the .cloudsync index.
+     */
+    public StateCounts readStateCounts() throws IOException {
+        StateCounts counts = new StateCounts();
+        if(!indexExists())
+            return counts;
+        SearchResponse response = await(client.prepareSearch(stateIndex).setTypes(stateType).setSize(0)
+                .addAggregation(AggregationBuilders.terms("states").field("state")
+                        .subAggregation(AggregationBuilders.sum("bytes").field("sizeInBytes")))
+                .execute());
+        Terms states = response.getAggregations().get("states");
+        for (Terms.Bucket bucket : states.getBuckets()) {
+            IndexInfo.State state = IndexInfo.State.valueOf(bucket.getKeyAsString());
+            Sum bytes = bucket.getAggregations().get("bytes");
+            counts.add(state, bucket.getDocCount(), (long) bytes.getValue());
+        }
+        return counts;
+    }
+
+    private List<IndexInfo> searchState(QueryBuilder query) {
+        List<IndexInfo> entries = new ArrayList<>();
+        try {
+            scanState(query, entries::add);
+        } catch (IOException ex) {
+            throw new ElasticsearchParseException("Failed to parse the state of [" + stateIndex + "]", ex);
+        }
+        return entries;
+    }
+
+    /**
+     * Scrolls the state documents matching the query, each parsed straight from its source bytes.
+     */
+    private void scanState(QueryBuilder query, CheckedConsumer<IndexInfo, IOException> consumer) throws IOException {
+        if(!indexExists())
+            return;
+        SearchResponse response = await(client.prepareSearch(stateIndex).setTypes(stateType)
+                .setQuery(query)
+                .setVersion(true)
+                .setSize(bulkSize)
+                .setScroll(scrollKeepAlive)
+                .execute());
+        try {
+            while (response.getHits().getHits().length > 0) {
+                for (SearchHit hit : response.getHits().getHits()) {
+                    try (XContentParser parser = XContentHelper.createParser(NamedXContentRegistry.EMPTY, hit.getSourceRef(),
+                            XContentType.JSON)) {
+                        consumer.accept(IndexInfo.fromXContent(parser).withVersion(hit.getVersion()));
+                    }
+                }
+                response = await(client.prepareSearchScroll(response.getScrollId()).setScroll(scrollKeepAlive)
+                        .execute());
+            }
+        } finally {
+            await(client.prepareClearScroll().addScrollId(response.getScrollId()).execute());
+        }
+    }
+
+    /**
+     * Scrolls over the documents of the index with the time field in [from, to), one page at a time.
+     * @param field date field, compared as epoch millis.
+     * @param pageSize documents per page.
+     * @return documents exported.
+     */
+    public long exportRange(final String index, final String field, final long from, final long to, final int pageSize,
+                            final CheckedConsumer<SearchHit[], IOException> page) throws IOException {
+        SearchResponse response = await(client.prepareSearch(index)
+                .setQuery(QueryBuilders.rangeQuery(field).gte(from).lt(to).format("epoch_millis"))
+                .addSort("_doc", SortOrder.ASC)
+                .setSize(pageSize)
+                .setScroll(scrollKeepAlive)
+                .execute());
+        long exported = 0;
+        try {
+            while (response.getHits().getHits().length > 0) {
+                page.accept(response.getHits().getHits());
+                exported += response.getHits().getHits().length;
+                response = await(client.prepareSearchScroll(response.getScrollId()).setScroll(scrollKeepAlive)
+                        .execute());
+            }
+        } finally {
+            await(client.prepareClearScroll().addScrollId(response.getScrollId()).execute());
+        }
+        return exported;
+    }
+
+    /**
+     * Sends a bulk body (new line delimited json), the listener gets the number of documents, or
+     * fails if any of them failed.
+     */
+    public void bulkLoad(final byte[] body, final ActionListener<Integer> listener) {
+        BulkRequest request = new BulkRequest();
+        try {
+            request.add(body, 0, body.length, XContentType.JSON);
+        } catch (Exception ex) {
+            listener.onFailure(ex);
+            return;
+        }
+        client.bulk(request, ActionListener.wrap(response -> {
+            if (response.hasFailures()) {
+                listener.onFailure(new IOException(response.buildFailureMessage()));
+            } else {
+                listener.onResponse(response.getItems().length);
+            }
+        }, listener::onFailure));
     }
 
     /**
@@ -102,8 +346,8 @@ public class ElasticClient {
      * @param pattern
      * @return
      */
-    public Map<String, Long> getIndices(String pattern) {
-        IndicesStatsResponse r = client.admin().indices().stats(new IndicesStatsRequest().indices(pattern)).actionGet();
+    public Map<String, Long> getIndices(String pattern) throws IOException {
+        IndicesStatsResponse r = await(client.admin().indices().stats(new IndicesStatsRequest().indices(pattern)));
         Map<String, IndexStats> indices = r.getIndices();
         Map<String, Long> filteredIndices = new HashMap<>();
         for (String index : indices.keySet()) {
@@ -114,33 +358,255 @@ public class ElasticClient {
 
 
     /**
-     * Request to take a snapshot.
-     * @param index
+     * Creation time of the indices matching the pattern.
+     * @param pattern
+     * @return index name -> creation time in millis.
+     */
+    public Map<String, Long> getIndexCreationDates(String pattern) throws IOException {
+        MetaData metaData = await(client.admin().cluster().prepareState().clear().setMetaData(true).setIndices(pattern)
+                .execute()).getState().metaData();
+        Map<String, Long> dates = new HashMap<>();
+        for (IndexMetaData index : metaData) {
+            dates.put(index.getIndex().getName(), index.getCreationDate());
+        }
+        return dates;
+    }
+
+    /**
+     * Settings of the indices, only those of the keys given that are set.
+     * @return index name -> setting key -> value.
+     */
+    public Map<String, Map<String, String>> getIndexSettings(final String[] indices, final String... keys)
+            throws IOException {
+        MetaData metaData = await(client.admin().cluster().prepareState().clear().setMetaData(true).setIndices(indices)
+                .execute()).getState().metaData();
+        Map<String, Map<String, String>> settings = new HashMap<>();
+        for (IndexMetaData index : metaData) {
+            Map<String, String> values = new HashMap<>();
+            for (String key : keys) {
+                String value = index.getSettings().get(key);
+                if (value != null) {
+                    values.put(key, value);
+                }
+            }
+            settings.put(index.getIndex().getName(), values);
+        }
+        return settings;
+    }
+
+    /**
+     * Updates dynamic settings of the index.
+     * @param settings a null value resets the setting to its default.
+     */
+    public boolean updateIndexSettings(final String index, final Map<String, String> settings) throws IOException {
+        Settings.Builder builder = Settings.builder();
+        for (Map.Entry<String, String> setting : settings.entrySet()) {
+            if (setting.getValue() == null) {
+                builder.putNull(setting.getKey());
+            } else {
+                builder.put(setting.getKey(), setting.getValue());
+            }
+        }
+        return await(client.admin().indices().prepareUpdateSettings(index).setSettings(builder).execute())
+                .isAcknowledged();
+    }
+
+    /**
+     * Flushes the indices, waiting for a flush already running.
+     */
+    public boolean flush(final String... indices) throws IOException {
+        return await(client.admin().indices().prepareFlush(indices).setWaitIfOngoing(true).execute())
+                .getFailedShards() == 0;
+    }
+
+    /**
+     * Merges the indices down to the segments per shard given, blocks till the merge is done.
+     */
+    public boolean forceMerge(final String[] indices, final int maxNumSegments) throws IOException {
+        return await(client.admin().indices().prepareForceMerge(indices).setMaxNumSegments(maxNumSegments)
+                .setFlush(true).execute()).getFailedShards() == 0;
+    }
+
+    /**
+     * @return index name -> most segments of any primary shard of the index.
+     */
+    public Map<String, Long> getMaxSegmentsPerShard(final String... indices) throws IOException {
+        IndicesStatsRequest request = new IndicesStatsRequest().indices(indices).clear().segments(true);
+        IndicesStatsResponse response = await(client.admin().indices().stats(request));
+        Map<String, Long> segments = new HashMap<>();
+        for (ShardStats shard : response.getShards()) {
+            if (!shard.getShardRouting().primary() || shard.getStats().getSegments() == null) {
+                continue;
+            }
+            segments.merge(shard.getShardRouting().getIndexName(), shard.getStats().getSegments().getCount(), Math::max);
+        }
+        return segments;
+    }
+
+    public boolean refresh(final String... indices) throws IOException {
+        return await(client.admin().indices().prepareRefresh(indices).execute()).getFailedShards() == 0;
+    }
+
+    /**
+     * Documents per primary shard and the sample hash of the indices, see {@link IndexChecks}. The size is not read.
+     * @param sampleSize documents in the sample, 0 for no sample.
+     */
+    public Map<String, IndexChecks> readChecks(final String[] indices, final int sampleSize) throws IOException {
+        PlainActionFuture<Map<String, IndexChecks>> future = PlainActionFuture.newFuture();
+        readChecks(indices, sampleSize, future);
+        return await(future);
+    }
+
+    public void readChecks(final String[] indices, final int sampleSize, final ActionListener<Map<String, IndexChecks>> listener) {
+        IndicesStatsRequest request = new IndicesStatsRequest().indices(indices).clear().docs(true);
+        client.admin().indices().stats(request, ActionListener.wrap(response -> {
+            Map<String, Map<Integer, Long>> docs = new HashMap<>();
+            for (String index : indices) {
+                docs.put(index, new HashMap<>());
+            }
+            for (ShardStats shard : response.getShards()) {
+                ShardRouting routing = shard.getShardRouting();
+                if (routing.primary() && docs.containsKey(routing.getIndexName()) && shard.getStats().getDocs() != null) {
+                    docs.get(routing.getIndexName()).put(routing.id(), shard.getStats().getDocs().getCount());
+                }
+            }
+            if (sampleSize <= 0) {
+                Map<String, IndexChecks> checks = new HashMap<>();
+                for (String index : indices) {
+                    checks.put(index, new IndexChecks(docs.get(index), -1, 0, null));
+                }
+                listener.onResponse(checks);
+                return;
+            }
+            GroupedActionListener<Tuple<String, IndexChecks>> group = new GroupedActionListener<>(ActionListener.wrap(all -> {
+                Map<String, IndexChecks> checks = new HashMap<>();
+                for (Tuple<String, IndexChecks> indexChecks : all) {
+                    checks.put(indexChecks.v1(), indexChecks.v2());
+                }
+                listener.onResponse(checks);
+            }, listener::onFailure), indices.length, Collections.emptyList());
+            for (String index : indices) {
+                client.prepareSearch(index)
+                        .setQuery(QueryBuilders.functionScoreQuery(ScoreFunctionBuilders.randomFunction(index)))
+                        .setSize(sampleSize)
+                        .execute(ActionListener.wrap(sample -> {
+                            Map<String, byte[]> sampled = new HashMap<>();
+                            for (SearchHit hit : sample.getHits().getHits()) {
+                                sampled.put(hit.getType() + "#" + hit.getId(), BytesReference.toBytes(hit.getSourceRef()));
+                            }
+                            group.onResponse(new Tuple<>(index, new IndexChecks(docs.get(index), -1, sampleSize,
+                                    IndexChecks.sampleHash(sampled))));
+                        }, group::onFailure));
+            }
+        }, listener::onFailure));
+    }
+
+    /**
+     * @return index name -> bytes of the files of the index in the snapshot.
+     */
+    public Map<String, Long> snapshotSizes(final String repository, final String snapshot) throws IOException {
+        SnapshotsStatusRequest request = new SnapshotsStatusRequest().repository(repository).snapshots(new String[]{snapshot});
+        SnapshotsStatusResponse response = await(client.admin().cluster().snapshotsStatus(request));
+        Map<String, Long> sizes = new HashMap<>();
+        for (SnapshotStatus status : response.getSnapshots()) {
+            for (Map.Entry<String, SnapshotIndexStatus> index : status.getIndices().entrySet()) {
+                sizes.put(index.getKey(), index.getValue().getStats().getTotalSize());
+            }
+        }
+        return sizes;
+    }
+
+    /**
+     * @return index name -> bytes of the files restored into its primaries, read right after the restore
+     * (a relocated primary no longer shows its restore). Only indices with every primary restored are listed.
+     */
+    public Map<String, Long> restoredSizes(final String... indices) throws IOException {
+        RecoveryResponse response = await(client.admin().indices().recoveries(new RecoveryRequest(indices)));
+        Map<String, Long> sizes = new HashMap<>();
+        for (Map.Entry<String, List<RecoveryState>> index : response.shardRecoveryStates().entrySet()) {
+            long size = 0;
+            boolean complete = true;
+            for (RecoveryState state : index.getValue()) {
+                if (!state.getPrimary()) {
+                    continue;
+                }
+                if (state.getRecoverySource().getType() != RecoverySource.Type.SNAPSHOT) {
+                    complete = false;
+                    break;
+                }
+                size += state.getIndex().totalBytes();
+            }
+            if (complete) {
+                sizes.put(index.getKey(), size);
+            }
+        }
+        return sizes;
+    }
+
+    /**
+     * Primary shard bytes of the indices, grouped by the node holding the shard.
+     * @param indices
+     * @return index name -> node id -> bytes.
+     */
+    public Map<String, Map<String, Long>> getPrimaryShardBytes(final String... indices) throws IOException {
+        IndicesStatsRequest request = new IndicesStatsRequest().indices(indices).clear().store(true);
+        IndicesStatsResponse response = await(client.admin().indices().stats(request));
+        Map<String, Map<String, Long>> bytes = new HashMap<>();
+        for (ShardStats shard : response.getShards()) {
+            ShardRouting routing = shard.getShardRouting();
+            if (!routing.primary() || routing.currentNodeId() == null || shard.getStats().getStore() == null) {
+                continue;
+            }
+            bytes.computeIfAbsent(routing.getIndexName(), k -> new HashMap<>())
+                    .merge(routing.currentNodeId(), shard.getStats().getStore().sizeInBytes(), Long::sum);
+        }
+        return bytes;
+    }
+
+    /**
+     * Request to take a snapshot. Blocks till the snapshot is complete, the cluster runs only one
+     * snapshot at a time, so the next one can be started as soon as this returns.
+     * @param indices
      * @return
      */
-    public void takeSnapshot(final String repository, final String snapshotName, final String index) throws IOException {
+    public void takeSnapshot(final String repository, final String snapshotName, final String... indices) throws IOException {
+        PlainActionFuture<Void> future = PlainActionFuture.newFuture();
+        takeSnapshot(repository, snapshotName, indices, future);
+        await(future);
+    }
+
+    /**
+     * Takes a snapshot, the listener is called once it is complete.
+     */
+    public void takeSnapshot(final String repository, final String snapshotName, final String[] indices,
+                             final ActionListener<Void> listener) {
         IndicesOptions indicesOptions = IndicesOptions.fromOptions(true, true,
                 true, false, IndicesOptions.lenientExpandOpen());
 
         CreateSnapshotRequest createSnapshotRequest = new CreateSnapshotRequest(repository, snapshotName)
-                .indices(index)
+                .indices(indices)
                 .includeGlobalState(false)
-                .indicesOptions(indicesOptions);
+                .indicesOptions(indicesOptions)
+                .waitForCompletion(true);
 
-        CreateSnapshotResponse createSnapshotResponse = client.admin().cluster().createSnapshot(createSnapshotRequest).actionGet();
-        if (RestStatus.ACCEPTED.getStatus() != createSnapshotResponse.status().getStatus()) {
-            throw new IOException("Snapshot creation failed.");
-        }
+        client.admin().cluster().createSnapshot(createSnapshotRequest, ActionListener.wrap(response -> {
+            SnapshotInfo snapshotInfo = response.getSnapshotInfo();
+            if (snapshotInfo == null || snapshotInfo.state() != SnapshotState.SUCCESS) {
+                listener.onFailure(new IOException("Snapshot creation failed."));
+            } else {
+                listener.onResponse(null);
+            }
+        }, listener::onFailure));
     }
 
     /**
      * Checks - if repository is present.
      * @return
      */
-    public boolean hasRepository(final String repository) {
+    public boolean hasRepository(final String repository) throws IOException {
         try {
             VerifyRepositoryRequest request = new VerifyRepositoryRequest().name(repository);
-            VerifyRepositoryResponse response = client.admin().cluster().verifyRepository(request).actionGet();
+            VerifyRepositoryResponse response = await(client.admin().cluster().verifyRepository(request));
             if (response.getNodes() == null || response.getNodes().length == 0)
                 return false;
         } catch (RepositoryMissingException ex) {
@@ -156,8 +622,39 @@ public class ElasticClient {
      * @param location if type is fs its folder , if type is gcs its bucket name.
      * @return
      */
-    public boolean createRepository(final String type, final String repository, final String location) {
-        Map<String, Object> settings = new HashMap<>();
+    public boolean createRepository(final String type, final String repository, final String location)
+            throws IOException {
+        return createRepository(type, repository, location, Collections.emptyMap());
+    }
+
+    /**
+     * Create or update repository, with extra repository settings (e.g. throttles).
+     *
+     * @param type
+     * @param location if type is fs its folder , if type is gcs its bucket name.
+     * @param extraSettings
+     * @return
+     */
+    public boolean createRepository(final String type, final String repository, final String location,
+                                    final Map<String, Object> extraSettings) throws IOException {
+        try {
+            return createRepository(type, repository, location, extraSettings, true);
+        } finally {
+            registrations.incrementAndGet();
+        }
+    }
+
+    /**
+     * @return a counter that moves each time a repository is registered by createRepository, which resets
+     * the throttles set by updateRepositoryThrottle.
+     */
+    public long repositoryGeneration() {
+        return registrations.get();
+    }
+
+    private boolean createRepository(final String type, final String repository, final String location,
+                                     final Map<String, Object> extraSettings, final boolean verify) throws IOException {
+        Map<String, Object> settings = new HashMap<>(extraSettings);
 
         if("fs".equals(type)) {
             settings.put("location", location);
@@ -170,9 +667,48 @@ public class ElasticClient {
         PutRepositoryRequest request = new PutRepositoryRequest()
                 .type(type)
                 .name(repository)
-                .settings(settings);
+                .settings(settings)
+                .verify(verify);
+
+        return await(client.admin().cluster().putRepository(request)).isAcknowledged();
+    }
+
+    /**
+     * Updates the snapshot and restore throttles of an existing repository. The repository is registered
+     * again with the new settings, without verification. Snapshots and restores already running keep
+     * the rate limiter of the repository they started with, the new rates apply to the next ones.
+     * @param snapshotBytesPerSec max_snapshot_bytes_per_sec, or -1 to keep the default.
+     * @param restoreBytesPerSec max_restore_bytes_per_sec, or -1 to keep the default.
+     * @return
+     */
+    public boolean updateRepositoryThrottle(final String type, final String repository, final String location,
+                                            final long snapshotBytesPerSec, final long restoreBytesPerSec)
+            throws IOException {
+        Map<String, Object> settings = new HashMap<>();
+        if (snapshotBytesPerSec > 0) {
+            settings.put("max_snapshot_bytes_per_sec", snapshotBytesPerSec + "b");
+        }
+        if (restoreBytesPerSec > 0) {
+            settings.put("max_restore_bytes_per_sec", restoreBytesPerSec + "b");
+        }
+        return createRepository(type, repository, location, settings, false);
+    }
 
-        return client.admin().cluster().putRepository(request).actionGet().isAcknowledged();
+    /**
+     * Sets a persistent cluster setting, kept over full cluster restarts.
+     * @param key
+     * @param value null removes the setting.
+     * @return
+     */
+    public boolean updatePersistentSetting(final String key, final String value) throws IOException {
+        Settings.Builder settings = Settings.builder();
+        if (value == null) {
+            settings.putNull(key);
+        } else {
+            settings.put(key, value);
+        }
+        return await(client.admin().cluster().prepareUpdateSettings().setPersistentSettings(settings).execute())
+                .isAcknowledged();
     }
 
     /**
@@ -180,9 +716,30 @@ public class ElasticClient {
      * @param repository
      * @return
      */
-    public boolean deleteRepository(final String repository) {
+    public boolean deleteRepository(final String repository) throws IOException {
         DeleteRepositoryRequest request = new DeleteRepositoryRequest().name(repository);
-        return client.admin().cluster().deleteRepository(request).actionGet().isAcknowledged();
+        return await(client.admin().cluster().deleteRepository(request)).isAcknowledged();
+    }
+
+    /**
+     * Closes the indices that exist in the cluster. A snapshot can be restored over a closed index,
+     * the restore then copies only the files that differ.
+     * @param indices
+     * @return
+     */
+    public boolean closeIndices(final String... indices) throws IOException {
+        MetaData metaData = await(client.admin().cluster().prepareState().clear().setMetaData(true).execute())
+                .getState().metaData();
+        List<String> existing = new ArrayList<>();
+        for (String index : indices) {
+            if (metaData.hasIndex(index)) {
+                existing.add(index);
+            }
+        }
+        if (existing.isEmpty()) {
+            return true;
+        }
+        return await(client.admin().indices().prepareClose(existing.toArray(new String[0])).execute()).isAcknowledged();
     }
 
     /**
@@ -191,24 +748,55 @@ public class ElasticClient {
      * @param snapshot
      * @return
      */
-    public boolean deleteSnapshot(final String repository, final String snapshot) {
+    public boolean deleteSnapshot(final String repository, final String snapshot) throws IOException {
+        PlainActionFuture<Boolean> future = PlainActionFuture.newFuture();
+        deleteSnapshot(repository, snapshot, future);
+        return await(future);
+    }
+
+    public void deleteSnapshot(final String repository, final String snapshot, final ActionListener<Boolean> listener) {
         DeleteSnapshotRequest request = new DeleteSnapshotRequest().repository(repository).snapshot(snapshot);
-        return client.admin().cluster().deleteSnapshot(request).actionGet().isAcknowledged();
+        client.admin().cluster().deleteSnapshot(request,
+                ActionListener.wrap(response -> listener.onResponse(response.isAcknowledged()), listener::onFailure));
     }
 
     /**
-     * Restores snapshot.
+     * Restores snapshot. Blocks till the primaries are restored, the cluster runs only one restore
+     * at a time, so the next one can be started as soon as this returns.
      * @param repository
      * @param snapshot
      * @return
      */
-    public boolean restoreSnapshot(final String repository, final String snapshot) {
-        RestoreSnapshotRequest request = new RestoreSnapshotRequest().repository(repository).snapshot(snapshot);
-        RestoreSnapshotResponse response = client.admin().cluster().restoreSnapshot(request).actionGet();
-        if (RestStatus.ACCEPTED.getStatus() == response.status().getStatus()) {
-            return true;
-        }
-        return false;
+    public boolean restoreSnapshot(final String repository, final String snapshot) throws IOException {
+        return restoreSnapshot(repository, snapshot, Settings.EMPTY);
+    }
+
+    /**
+     * @param indexSettings overrides the index settings of the snapshot.
+     */
+    public boolean restoreSnapshot(final String repository, final String snapshot, final Settings indexSettings)
+            throws IOException {
+        PlainActionFuture<Boolean> future = PlainActionFuture.newFuture();
+        restoreSnapshot(repository, snapshot, indexSettings, future);
+        return await(future);
+    }
+
+    /**
+     * Restores snapshot, the listener gets true once the primaries are restored without failures.
+     */
+    public void restoreSnapshot(final String repository, final String snapshot, final ActionListener<Boolean> listener) {
+        restoreSnapshot(repository, snapshot, Settings.EMPTY, listener);
+    }
+
+    public void restoreSnapshot(final String repository, final String snapshot, final Settings indexSettings,
+                                final ActionListener<Boolean> listener) {
+        RestoreSnapshotRequest request = new RestoreSnapshotRequest().repository(repository).snapshot(snapshot)
+                .indexSettings(indexSettings)
+                .waitForCompletion(true);
+        client.admin().cluster().restoreSnapshot(request, ActionListener.wrap(response -> {
+            RestoreInfo restoreInfo = response.getRestoreInfo();
+            listener.onResponse(restoreInfo != null && restoreInfo.failedShards() == 0);
+        }, listener::onFailure));
     }
 
     /**
@@ -216,64 +804,214 @@ public class ElasticClient {
      * @param repository
      * @return
      */
-    public List<String> listSnapshots(final String repository){
+    public List<String> listSnapshots(final String repository) throws IOException {
+        return listSnapshots(repository, "");
+    }
+
+    /**
+     * List the snapshots in the repository with names starting with the prefix.
+     * @param repository
+     * @param prefix
+     * @return
+     */
+    public List<String> listSnapshots(final String repository, final String prefix) throws IOException {
+        return new ArrayList<>(listSnapshotIndices(repository, prefix).keySet());
+    }
+
+    /**
+     * List the snapshots in the repository with names starting with the prefix, with the indices each one holds.
+     * @param repository
+     * @param prefix
+     * @return snapshot name -> indices, in the repository order.
+     */
+    public Map<String, List<String>> listSnapshotIndices(final String repository, final String prefix)
+            throws IOException {
         String[] ss = {"_all"};
         GetSnapshotsRequest request = new GetSnapshotsRequest().repository(repository).snapshots(ss);
-        GetSnapshotsResponse response = client.admin().cluster().getSnapshots(request).actionGet();
-        List<String> list = new ArrayList<>();
-        List<SnapshotInfo> ssInfo = response.getSnapshots();
-        for(SnapshotInfo info : ssInfo){
-            list.add(info.snapshotId().getName());
+        GetSnapshotsResponse response = await(client.admin().cluster().getSnapshots(request));
+        Map<String, List<String>> snapshots = new LinkedHashMap<>();
+        for(SnapshotInfo info : response.getSnapshots()){
+            if(info.snapshotId().getName().startsWith(prefix)) {
+                snapshots.put(info.snapshotId().getName(), info.indices());
+            }
+        }
+        return snapshots;
+    }
+
+    /**
+     * @return the snapshot, running or complete, null if the repository does not hold it.
+     */
+    public SnapshotInfo getSnapshotInfo(final String repository, final String snapshot) throws IOException {
+        GetSnapshotsRequest request = new GetSnapshotsRequest().repository(repository).snapshots(new String[]{snapshot});
+        try {
+            List<SnapshotInfo> snapshots = await(client.admin().cluster().getSnapshots(request)).getSnapshots();
+            return snapshots.isEmpty() ? null : snapshots.get(0);
+        } catch (SnapshotMissingException ex) {
+            return null;
         }
-        return list;
     }
+
     /**
      * @param repository
      * @param snapshot
      * @return
      */
-    public boolean snapshotsStatus(final String repository, final String snapshot) {
+    public boolean snapshotsStatus(final String repository, final String snapshot) throws IOException {
         String[] ss = {snapshot};
         SnapshotsStatusRequest request = new SnapshotsStatusRequest().repository(repository).snapshots(ss);
-        SnapshotsStatusResponse response = client.admin().cluster().snapshotsStatus(request).actionGet();
+        SnapshotsStatusResponse response = await(client.admin().cluster().snapshotsStatus(request));
         return (response.getSnapshots().size() == 0 ) ? false : response.getSnapshots().get(0).getState().completed();
     }
 
+    /**
+     * Shard level progress of the snapshots running in the repository right now.
+     * @param repository
+     * @return
+     */
+    public TransferProgress snapshotProgress(final String repository) throws IOException {
+        SnapshotsStatusRequest request = new SnapshotsStatusRequest().repository(repository);
+        SnapshotsStatusResponse response = await(client.admin().cluster().snapshotsStatus(request));
+        int shards = 0;
+        long done = 0;
+        long total = 0;
+        for (SnapshotStatus status : response.getSnapshots()) {
+            shards += status.getShards().size();
+            done += status.getStats().getProcessedSize();
+            total += status.getStats().getTotalSize();
+        }
+        return new TransferProgress(shards, done, total);
+    }
+
+    /**
+     * Progress of the primaries being restored from a snapshot right now, from the recovery stats.
+     * @return
+     */
+    public TransferProgress restoreProgress() throws IOException {
+        RecoveryRequest request = new RecoveryRequest();
+        request.activeOnly(true);
+        return restoredBytes(await(client.admin().indices().recoveries(request)));
+    }
+
+    /**
+     * Bytes recovered from the snapshot by the primaries of the indices.
+     * @param indices
+     * @return
+     */
+    public long restoredBytes(final String... indices) throws IOException {
+        PlainActionFuture<Long> future = PlainActionFuture.newFuture();
+        restoredBytes(indices, future);
+        return await(future);
+    }
+
+    public void restoredBytes(final String[] indices, final ActionListener<Long> listener) {
+        RecoveryRequest request = new RecoveryRequest(indices);
+        client.admin().indices().recoveries(request,
+                ActionListener.wrap(response -> listener.onResponse(restoredBytes(response).doneBytes), listener::onFailure));
+    }
+
+    private TransferProgress restoredBytes(RecoveryResponse response) {
+        int shards = 0;
+        long done = 0;
+        long total = 0;
+        for (List<RecoveryState> states : response.shardRecoveryStates().values()) {
+            for (RecoveryState state : states) {
+                if (state.getRecoverySource().getType() != RecoverySource.Type.SNAPSHOT) {
+                    continue;
+                }
+                shards++;
+                done += state.getIndex().recoveredBytes();
+                total += state.getIndex().totalBytes();
+            }
+        }
+        return new TransferProgress(shards, done, total);
+    }
+
     /**
      *
      * @param repository
      * @param snapshot
      * @return
      */
-    public int snapshotsCount(final String repository, final String snapshot) {
+    public int snapshotsCount(final String repository, final String snapshot) throws IOException {
         String[] ss = {snapshot};
         GetSnapshotsRequest request = new GetSnapshotsRequest().repository(repository).snapshots(ss);
-        GetSnapshotsResponse response = client.admin().cluster().getSnapshots(request).actionGet();
+        GetSnapshotsResponse response = await(client.admin().cluster().getSnapshots(request));
         return response.getSnapshots().size();
     }
 
     /**
-     * Blocks till the cluster turns to green.
-     * @param index
+     * Blocks till all the indices turn to green.
+     * @param indices
+     */
+    public void waitForIndexGreenStatus(String... indices) throws IOException {
+        PlainActionFuture<Void> future = PlainActionFuture.newFuture();
+        waitForIndexGreenStatus(indices, future);
+        await(future);
+    }
+
+    /**
+     * The listener is called once all the indices are green. The master holds the health request till
+     * then, no thread waits here.
+     * @param indices
      */
-    public void waitForIndexGreenStatus(String index) {
-        while (true) {
-            ClusterHealthResponse response = client.admin().cluster().prepareHealth(index).get();
-            ClusterHealthStatus status = response.getIndices().get(index).getStatus();
-            if (!status.equals(ClusterHealthStatus.GREEN)) {
-                try {
-                    Thread.sleep(1000);
-                } catch (InterruptedException ex) {
-                    //ignore
+    public void waitForIndexGreenStatus(final String[] indices, final ActionListener<Void> listener) {
+        client.admin().cluster().prepareHealth(indices).setWaitForGreenStatus()
+                .setTimeout(TimeValue.timeValueMillis(greenWaitIntervalMSecs))
+                .execute(ActionListener.wrap(response -> {
+                    if (response.isTimedOut()) {
+                        waitForIndexGreenStatus(indices, listener);
+                    } else {
+                        listener.onResponse(null);
+                    }
+                }, listener::onFailure));
+    }
+
+    /**
+     * Samples indexing, write thread pool and disk counters of all nodes.
+     * @return
+     */
+    public NodeLoad sampleLoad() throws IOException {
+        NodesStatsResponse response = await(client.admin().cluster().prepareNodesStats()
+                .setIndices(new CommonStatsFlags(CommonStatsFlags.Flag.Indexing))
+                .setThreadPool(true)
+                .setFs(true)
+                .execute());
+        long indexCount = 0;
+        long indexTime = 0;
+        long maxWriteQueue = 0;
+        long ioKilobytes = 0;
+        long maxSearchQueue = 0;
+        long writeRejected = 0;
+        long searchRejected = 0;
+        for (NodeStats node : response.getNodes()) {
+            if (node.getIndices() != null && node.getIndices().getIndexing() != null) {
+                indexCount += node.getIndices().getIndexing().getTotal().getIndexCount();
+                indexTime += node.getIndices().getIndexing().getTotal().getIndexTime().millis();
+            }
+            if (node.getThreadPool() != null) {
+                long writeQueue = 0;
+                for (ThreadPoolStats.Stats pool : node.getThreadPool()) {
+                    if (ThreadPool.Names.BULK.equals(pool.getName()) || ThreadPool.Names.INDEX.equals(pool.getName())) {
+                        writeQueue += pool.getQueue();
+                        writeRejected += pool.getRejected();
+                    } else if (ThreadPool.Names.SEARCH.equals(pool.getName())) {
+                        maxSearchQueue = Math.max(maxSearchQueue, pool.getQueue());
+                        searchRejected += pool.getRejected();
+                    }
                 }
-            } else {
-                break;
+                maxWriteQueue = Math.max(maxWriteQueue, writeQueue);
+            }
+            if (node.getFs() != null && node.getFs().getIoStats() != null) {
+                ioKilobytes += node.getFs().getIoStats().getTotalReadKilobytes()
+                        + node.getFs().getIoStats().getTotalWriteKilobytes();
             }
         }
+        return new NodeLoad(System.currentTimeMillis(), indexCount, indexTime, maxWriteQueue, ioKilobytes,
+                maxSearchQueue, writeRejected, searchRejected);
     }
 
     public void isPluginLoaded(final String name) throws IOException {
-        NodesInfoResponse response = client.admin().cluster().prepareNodesInfo().setPlugins(true).get();
+        NodesInfoResponse response = await(client.admin().cluster().prepareNodesInfo().setPlugins(true).execute());
         boolean pluginFound = false;
         for (NodeInfo nodeInfo : response.getNodes()) {
             for (PluginInfo pluginInfo : nodeInfo.getPlugins().getPluginInfos()) {
@@ -287,4 +1025,27 @@ public class ElasticClient {
             throw new IOException("Plugin not found: "+name);
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Waits for the future, failures the listener got as IOException are thrown as such. An interrupt, e.g. the
+     * stop of a sync loop, is thrown as IOException too, with the interrupt flag kept for the caller to see.
+     * Every blocking call of this class goes through here, none throws IllegalStateException on an interrupt.
+     */
+    private static <T> T await(ActionFuture<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted.", ex);
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+}
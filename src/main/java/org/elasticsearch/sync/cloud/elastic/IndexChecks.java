@@ -0,0 +1,124 @@
+package org.elasticsearch.sync.cloud.elastic;
+
+import org.elasticsearch.common.hash.MessageDigests;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Figures of an index the source records at snapshot time and the sink compares after the restore:
+ * documents per primary shard, the bytes of the snapshot files, and a hash over a sample of documents.
+ * The sample is the top documents of a random_score query seeded with the index name, the score comes
+ * from the document uid, so both clusters pick the same documents. A figure not recorded is not compared.
+ */
+public class IndexChecks {
+
+    //shard -> documents, empty if not recorded.
+    private final Map<Integer, Long> shardDocs;
+    //-1 if not recorded.
+    private final long sizeInBytes;
+    private final int sampleSize;
+    //null if not recorded.
+    private final String sampleHash;
+
+    public IndexChecks(Map<Integer, Long> shardDocs, long sizeInBytes, int sampleSize, String sampleHash) {
+        this.shardDocs = shardDocs;
+        this.sizeInBytes = sizeInBytes;
+        this.sampleSize = sampleSize;
+        this.sampleHash = sampleHash;
+    }
+
+    public IndexChecks withSizeInBytes(long sizeInBytes) {
+        return new IndexChecks(shardDocs, sizeInBytes, sampleSize, sampleHash);
+    }
+
+    /**
+     * Drops the documents and the sample, e.g. the index was written to while it was snapshotted.
+     */
+    public IndexChecks sizeOnly() {
+        return new IndexChecks(Collections.emptyMap(), sizeInBytes, 0, null);
+    }
+
+    public Map<Integer, Long> getShardDocs() {
+        return shardDocs;
+    }
+
+    public long getSizeInBytes() {
+        return sizeInBytes;
+    }
+
+    public int getSampleSize() {
+        return sampleSize;
+    }
+
+    public String getSampleHash() {
+        return sampleHash;
+    }
+
+    /**
+     * @param actual figures of the restored index.
+     * @return a line for each figure that differs, empty if the index matches.
+     */
+    public List<String> mismatches(final IndexChecks actual) {
+        List<String> mismatches = new ArrayList<>();
+        for (Map.Entry<Integer, Long> shard : shardDocs.entrySet()) {
+            Long docs = actual.shardDocs.get(shard.getKey());
+            if (!shard.getValue().equals(docs)) {
+                mismatches.add("shard [" + shard.getKey() + "] has " + docs + " documents, expected " + shard.getValue());
+            }
+        }
+        if (sizeInBytes >= 0 && actual.sizeInBytes >= 0 && sizeInBytes != actual.sizeInBytes) {
+            mismatches.add("store has " + actual.sizeInBytes + " bytes, expected " + sizeInBytes);
+        }
+        if (sampleHash != null && !sampleHash.equals(actual.sampleHash)) {
+            mismatches.add("sample of " + sampleSize + " documents differs");
+        }
+        return mismatches;
+    }
+
+    /**
+     * @param docs uid -> source of the sampled documents.
+     */
+    public static String sampleHash(final Map<String, byte[]> docs) {
+        MessageDigest digest = MessageDigests.sha1();
+        //ordered by uid, the order of equal scores may differ between the clusters.
+        for (Map.Entry<String, byte[]> doc : new TreeMap<>(docs).entrySet()) {
+            digest.update(doc.getKey().getBytes(StandardCharsets.UTF_8));
+            digest.update(doc.getValue());
+        }
+        return MessageDigests.toHexString(digest.digest());
+    }
+
+    public Map<String, Object> toMap() {
+        Map<String, Object> map = new LinkedHashMap<>();
+        Map<String, Long> shards = new TreeMap<>();
+        for (Map.Entry<Integer, Long> shard : shardDocs.entrySet()) {
+            shards.put(shard.getKey().toString(), shard.getValue());
+        }
+        map.put("shardDocs", shards);
+        map.put("sizeInBytes", sizeInBytes);
+        map.put("sampleSize", sampleSize);
+        map.put("sampleHash", sampleHash);
+        return map;
+    }
+
+    public static IndexChecks fromMap(final Map<?, ?> map) {
+        Map<Integer, Long> shardDocs = new HashMap<>();
+        if (map.get("shardDocs") instanceof Map) {
+            for (Map.Entry<?, ?> shard : ((Map<?, ?>) map.get("shardDocs")).entrySet()) {
+                shardDocs.put(Integer.parseInt(shard.getKey().toString()), ((Number) shard.getValue()).longValue());
+            }
+        }
+        Object size = map.get("sizeInBytes");
+        Object sampleSize = map.get("sampleSize");
+        return new IndexChecks(shardDocs, size == null ? -1 : ((Number) size).longValue(),
+                sampleSize == null ? 0 : ((Number) sampleSize).intValue(), (String) map.get("sampleHash"));
+    }
+}
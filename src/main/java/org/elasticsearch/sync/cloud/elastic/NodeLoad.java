@@ -0,0 +1,52 @@
+package org.elasticsearch.sync.cloud.elastic;
+
+/**
+ * Cumulative load counters of the cluster, summed over the nodes at one point in time.
+ * Rates are the difference of two samples.
+ */
+public class NodeLoad {
+
+    public final long timestamp;
+    public final long indexCount;
+    public final long indexTimeInMillis;
+    //largest write (bulk + index) thread pool queue of any node.
+    public final long maxWriteQueue;
+    public final long ioKilobytes;
+    //largest search thread pool queue of any node.
+    public final long maxSearchQueue;
+    //rejected write (bulk + index) and search tasks, all nodes.
+    public final long writeRejected;
+    public final long searchRejected;
+
+    public NodeLoad(long timestamp, long indexCount, long indexTimeInMillis, long maxWriteQueue, long ioKilobytes) {
+        this(timestamp, indexCount, indexTimeInMillis, maxWriteQueue, ioKilobytes, 0, 0, 0);
+    }
+
+    public NodeLoad(long timestamp, long indexCount, long indexTimeInMillis, long maxWriteQueue, long ioKilobytes,
+                    long maxSearchQueue, long writeRejected, long searchRejected) {
+        this.timestamp = timestamp;
+        this.indexCount = indexCount;
+        this.indexTimeInMillis = indexTimeInMillis;
+        this.maxWriteQueue = maxWriteQueue;
+        this.ioKilobytes = ioKilobytes;
+        this.maxSearchQueue = maxSearchQueue;
+        this.writeRejected = writeRejected;
+        this.searchRejected = searchRejected;
+    }
+
+    /**
+     * @return average indexing latency per document since the previous sample.
+     */
+    public double indexLatencyMillisSince(NodeLoad previous) {
+        long count = indexCount - previous.indexCount;
+        return count <= 0 ? 0 : (double) (indexTimeInMillis - previous.indexTimeInMillis) / count;
+    }
+
+    /**
+     * @return disk read + write bytes per second since the previous sample.
+     */
+    public long ioBytesPerSecSince(NodeLoad previous) {
+        long millis = timestamp - previous.timestamp;
+        return millis <= 0 ? 0 : (ioKilobytes - previous.ioKilobytes) * 1024 * 1000 / millis;
+    }
+}
@@ -0,0 +1,67 @@
+package org.elasticsearch.sync.cloud.elastic;
+
+import org.elasticsearch.common.blobstore.BlobContainer;
+import org.elasticsearch.common.blobstore.BlobPath;
+import org.elasticsearch.common.blobstore.BlobStore;
+import org.elasticsearch.common.inject.Inject;
+import org.elasticsearch.repositories.RepositoriesService;
+import org.elasticsearch.repositories.Repository;
+import org.elasticsearch.repositories.blobstore.BlobStoreRepository;
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.security.AccessController;
+import java.security.PrivilegedExceptionAction;
+
+/**
+ * Direct blob access to a registered repository (fs, gcs, s3), for blobs of cloudsync itself next to the
+ * snapshots. The repository keeps its blob store to itself, it is reached through reflection, which needs
+ * the "suppressAccessChecks" permission of plugin-security.policy.
+ *
+ * The plugin creates one instance per node, the RepositoriesService is set by {@link Binder} once
+ * the node is built.
+ */
+public class RepositoryAccess {
+
+    private volatile RepositoriesService repositoriesService;
+
+    /**
+     * @param repository registered repository name.
+     * @param path path under the base path of the repository.
+     * @return container for the blobs under the path.
+     */
+    public BlobContainer blobContainer(final String repository, final String path) throws IOException {
+        if (repositoriesService == null) {
+            throw new IOException("cloud-sync repositories are not available yet.");
+        }
+        Repository repo = repositoriesService.repository(repository);
+        if (!(repo instanceof BlobStoreRepository)) {
+            throw new IOException("cloud-sync repository [" + repository + "] is not a blob store repository.");
+        }
+        try {
+            return AccessController.doPrivileged((PrivilegedExceptionAction<BlobContainer>) () -> {
+                BlobStore blobStore = (BlobStore) invoke(repo, "blobStore");
+                BlobPath basePath = (BlobPath) invoke(repo, "basePath");
+                return blobStore.blobContainer(basePath.add(path));
+            });
+        } catch (Exception ex) {
+            throw new IOException("cloud-sync failed to access blob store of repository [" + repository + "].", ex);
+        }
+    }
+
+    private static Object invoke(Repository repo, String name) throws Exception {
+        Method method = BlobStoreRepository.class.getDeclaredMethod(name);
+        method.setAccessible(true);
+        return method.invoke(repo);
+    }
+
+    /**
+     * Created by the node injector, hands the RepositoriesService over to the plugin's instance.
+     */
+    public static class Binder {
+        @Inject
+        public Binder(RepositoryAccess access, RepositoriesService repositoriesService) {
+            access.repositoriesService = repositoriesService;
+        }
+    }
+}
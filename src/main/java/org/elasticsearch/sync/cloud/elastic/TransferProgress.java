@@ -0,0 +1,17 @@
+package org.elasticsearch.sync.cloud.elastic;
+
+/**
+ * Bytes copied so far by the snapshots or restores running right now, summed over their shards.
+ */
+public class TransferProgress {
+
+    public final int shards;
+    public final long doneBytes;
+    public final long totalBytes;
+
+    public TransferProgress(int shards, long doneBytes, long totalBytes) {
+        this.shards = shards;
+        this.doneBytes = doneBytes;
+        this.totalBytes = totalBytes;
+    }
+}
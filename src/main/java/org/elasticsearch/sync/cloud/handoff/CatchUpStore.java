@@ -0,0 +1,282 @@
+package org.elasticsearch.sync.cloud.handoff;
+
+import org.elasticsearch.common.blobstore.BlobContainer;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.io.Streams;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.common.xcontent.XContentFactory;
+import org.elasticsearch.common.xcontent.XContentHelper;
+import org.elasticsearch.common.xcontent.XContentType;
+import org.elasticsearch.common.xcontent.json.JsonXContent;
+import org.elasticsearch.search.SearchHit;
+import org.elasticsearch.search.SearchHitField;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.NoSuchFileException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static org.elasticsearch.common.xcontent.XContentFactory.jsonBuilder;
+
+/**
+ * Blobs the source and the sink copy live writes with, after the snapshot of an index is restored.
+ * The source keeps a cursor-INDEX blob per index still catching up: the time from which documents are
+ * not on the sink yet. Each round it exports the documents from the cursor on as gzipped bulk bodies
+ * (batch-INDEX-ROUND-SEQ), then writes round-INDEX-ROUND listing them and moves the cursor. Rounds hold index
+ * actions only, deletes on the source are not copied. The sink
+ * bulk loads a round, then deletes its batches and the round blob. The source exports the next round of
+ * an index only once the previous one is gone, so the sink is never more than one round behind.
+ */
+public class CatchUpStore {
+
+    public static final String path = "cloudsync_catchup";
+    private static final String cursorPrefix = "cursor-";
+    private static final String roundPrefix = "round-";
+    private static final String batchPrefix = "batch-";
+
+    private final BlobContainer container;
+
+    public CatchUpStore(final BlobContainer container) {
+        this.container = container;
+    }
+
+    /**
+     * Source: starts, or starts over, the catch-up of an index from the time given.
+     */
+    public void begin(final String index, final long from) throws IOException {
+        writeCursor(new Cursor(index, from, 0));
+    }
+
+    public void writeCursor(final Cursor cursor) throws IOException {
+        deleteIfExists(cursorPrefix + cursor.getIndex());
+        writeBytes(cursorPrefix + cursor.getIndex(), cursor.toJson().getBytes(StandardCharsets.UTF_8));
+    }
+
+    public List<Cursor> readCursors() throws IOException {
+        List<Cursor> cursors = new ArrayList<>();
+        for (String name : container.listBlobsByPrefix(cursorPrefix).keySet()) {
+            cursors.add(Cursor.fromJson(readString(name)));
+        }
+        return cursors;
+    }
+
+    /**
+     * Source: the index is caught up, or gone.
+     */
+    public void finish(final String index) throws IOException {
+        deleteIfExists(cursorPrefix + index);
+    }
+
+    public void writeBatch(final String index, final long round, final int seq, final SearchHit[] hits) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (OutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(toBulk(hits));
+        }
+        String name = batchName(index, round, seq);
+        deleteIfExists(name);
+        writeBytes(name, out.toByteArray());
+    }
+
+    /**
+     * @return the bulk body of the batch.
+     */
+    public byte[] readBatch(final String index, final long round, final int seq) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (InputStream in = new GZIPInputStream(container.readBlob(batchName(index, round, seq)))) {
+            Streams.copy(in, out);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Source: the batches of the round are written, the sink can load them.
+     */
+    public void writeRound(final Round round) throws IOException {
+        String name = roundName(round.getIndex(), round.getRound());
+        deleteIfExists(name);
+        writeBytes(name, round.toJson().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @return rounds written by the source and not loaded by the sink yet.
+     */
+    public List<Round> readRounds() throws IOException {
+        List<Round> rounds = new ArrayList<>();
+        for (String name : container.listBlobsByPrefix(roundPrefix).keySet()) {
+            rounds.add(Round.fromJson(readString(name)));
+        }
+        return rounds;
+    }
+
+    /**
+     * Sink: the round is loaded.
+     */
+    public void deleteRound(final Round round) throws IOException {
+        for (int seq = 0; seq < round.getBatches(); seq++) {
+            deleteIfExists(batchName(round.getIndex(), round.getRound(), seq));
+        }
+        deleteIfExists(roundName(round.getIndex(), round.getRound()));
+    }
+
+    /**
+     * One index action and the source (as a single line of json) per hit. The routing is the _routing metadata
+     * field of the hit, returned by the search when the document has one.
+     */
+    static byte[] toBulk(final SearchHit[] hits) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (SearchHit hit : hits) {
+            XContentBuilder action = jsonBuilder().startObject().startObject("index")
+                    .field("_index", hit.getIndex())
+                    .field("_type", hit.getType())
+                    .field("_id", hit.getId());
+            SearchHitField routing = hit.getFields().get("_routing");
+            if (routing != null) {
+                action.field("_routing", routing.getValue().toString());
+            }
+            action.endObject().endObject().bytes().writeTo(out);
+            out.write('\n');
+            BytesReference source = hit.getSourceRef();
+            XContentType type = XContentFactory.xContentType(source);
+            out.write(XContentHelper.convertToJson(source, true, false, type).getBytes(StandardCharsets.UTF_8));
+            out.write('\n');
+        }
+        return out.toByteArray();
+    }
+
+    private static String batchName(final String index, final long round, final int seq) {
+        return batchPrefix + index + "-" + round + "-" + seq;
+    }
+
+    private static String roundName(final String index, final long round) {
+        return roundPrefix + index + "-" + round;
+    }
+
+    private void deleteIfExists(final String name) throws IOException {
+        try {
+            container.deleteBlob(name);
+        } catch (NoSuchFileException ex) {
+            //already gone.
+        }
+    }
+
+    private void writeBytes(final String name, final byte[] bytes) throws IOException {
+        container.writeBlob(name, new ByteArrayInputStream(bytes), bytes.length);
+    }
+
+    private String readString(final String name) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (InputStream in = container.readBlob(name)) {
+            Streams.copy(in, out);
+        }
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private static Map<String, Object> toMap(final String json) {
+        return XContentHelper.convertToMap(JsonXContent.jsonXContent, json, false);
+    }
+
+    /**
+     * Documents of the index written from "from" on (millis) are not on the sink yet.
+     */
+    public static class Cursor {
+        private final String index;
+        private final long from;
+        private final long round;
+
+        public Cursor(String index, long from, long round) {
+            this.index = index;
+            this.from = from;
+            this.round = round;
+        }
+
+        static Cursor fromJson(final String json) {
+            Map<String, Object> map = toMap(json);
+            return new Cursor((String) map.get("index"), ((Number) map.get("from")).longValue(),
+                    ((Number) map.get("round")).longValue());
+        }
+
+        String toJson() throws IOException {
+            return jsonBuilder().startObject()
+                    .field("index", index)
+                    .field("from", from)
+                    .field("round", round)
+                    .endObject().string();
+        }
+
+        public String getIndex() {
+            return index;
+        }
+
+        public long getFrom() {
+            return from;
+        }
+
+        public long getRound() {
+            return round;
+        }
+    }
+
+    /**
+     * Batches of one export of an index, the documents written up to "to" (millis).
+     */
+    public static class Round {
+        private final String index;
+        private final long round;
+        private final int batches;
+        private final long docs;
+        private final long to;
+
+        public Round(String index, long round, int batches, long docs, long to) {
+            this.index = index;
+            this.round = round;
+            this.batches = batches;
+            this.docs = docs;
+            this.to = to;
+        }
+
+        static Round fromJson(final String json) {
+            Map<String, Object> map = toMap(json);
+            return new Round((String) map.get("index"), ((Number) map.get("round")).longValue(),
+                    ((Number) map.get("batches")).intValue(), ((Number) map.get("docs")).longValue(),
+                    ((Number) map.get("to")).longValue());
+        }
+
+        String toJson() throws IOException {
+            return jsonBuilder().startObject()
+                    .field("index", index)
+                    .field("round", round)
+                    .field("batches", batches)
+                    .field("docs", docs)
+                    .field("to", to)
+                    .endObject().string();
+        }
+
+        public String getIndex() {
+            return index;
+        }
+
+        public long getRound() {
+            return round;
+        }
+
+        public int getBatches() {
+            return batches;
+        }
+
+        public long getDocs() {
+            return docs;
+        }
+
+        public long getTo() {
+            return to;
+        }
+    }
+}
@@ -0,0 +1,247 @@
+package org.elasticsearch.sync.cloud.handoff;
+
+import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.common.xcontent.XContentHelper;
+import org.elasticsearch.common.xcontent.json.JsonXContent;
+import org.elasticsearch.sync.cloud.elastic.IndexChecks;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.elasticsearch.common.xcontent.XContentFactory.jsonBuilder;
+
+/**
+ * Snapshots the source made ready for the sink, in snapshot order. Published by the source as a
+ * new generation on every change. Lists the named sinks of the source, empty without a fan-out.
+ *
+ * {
+ *     "generation" : 12,
+ *     "sinks" : ["us_east", "eu_west"],
+ *     "snapshots" : [ {"name" : "snapshot_logs-1", "indices" : ["logs-1"], "sizeInBytes" : 1024, "startTime" : 1546300800000,
+ *                      "settings" : {"logs-1" : {"index.number_of_replicas" : "1"}}, "writeBlocked" : ["logs-1"],
+ *                      "checks" : {"logs-1" : {"shardDocs" : {"0" : 10}, "sizeInBytes" : 1024, "sampleSize" : 100, "sampleHash" : "..."}}} ]
+ * }
+ */
+final public class HandoffManifest {
+
+    private final long generation;
+    private final Map<String, Entry> snapshots;
+    private final List<String> sinks;
+
+    public HandoffManifest(long generation, Collection<Entry> snapshots) {
+        this(generation, snapshots, Collections.emptyList());
+    }
+
+    public HandoffManifest(long generation, Collection<Entry> snapshots, Collection<String> sinks) {
+        this.generation = generation;
+        this.sinks = Collections.unmodifiableList(new ArrayList<>(sinks));
+        this.snapshots = new LinkedHashMap<>();
+        for (Entry entry : snapshots) {
+            this.snapshots.put(entry.getName(), entry);
+        }
+    }
+
+    public static HandoffManifest empty() {
+        return new HandoffManifest(0, Collections.emptyList());
+    }
+
+    @SuppressWarnings("unchecked")
+    public static HandoffManifest fromJson(String json) {
+        Map<String, Object> mapValue = XContentHelper.convertToMap(JsonXContent.jsonXContent, json, true);
+        List<Entry> entries = new ArrayList<>();
+        for (Map<String, Object> entry : (List<Map<String, Object>>) mapValue.get("snapshots")) {
+            entries.add(Entry.fromMap(entry));
+        }
+        List<String> sinks = (List<String>) mapValue.get("sinks");
+        return new HandoffManifest(((Number) mapValue.get("generation")).longValue(), entries,
+                sinks == null ? Collections.emptyList() : sinks);
+    }
+
+    public long getGeneration() {
+        return generation;
+    }
+
+    public Collection<Entry> getSnapshots() {
+        return Collections.unmodifiableCollection(snapshots.values());
+    }
+
+    /**
+     * @return the named sinks of the source, empty if the source has none.
+     */
+    public List<String> getSinks() {
+        return sinks;
+    }
+
+    public boolean contains(String snapshot) {
+        return snapshots.containsKey(snapshot);
+    }
+
+    public long getSizeInBytes() {
+        long size = 0;
+        for (Entry entry : snapshots.values()) {
+            size += entry.getSizeInBytes();
+        }
+        return size;
+    }
+
+    /**
+     * @return the next generation, with the snapshot added.
+     */
+    public HandoffManifest add(Entry entry) {
+        List<Entry> entries = new ArrayList<>(snapshots.values());
+        entries.add(entry);
+        return new HandoffManifest(generation + 1, entries, sinks);
+    }
+
+    /**
+     * @return the next generation without the snapshots, or this if none of them is listed.
+     */
+    public HandoffManifest remove(Collection<String> names) {
+        List<Entry> entries = new ArrayList<>(snapshots.values());
+        if (!entries.removeIf(entry -> names.contains(entry.getName()))) {
+            return this;
+        }
+        return new HandoffManifest(generation + 1, entries, sinks);
+    }
+
+    /**
+     * @return the next generation with the named sinks, or this if it lists them already.
+     */
+    public HandoffManifest withSinks(Collection<String> names) {
+        if (sinks.equals(new ArrayList<>(names))) {
+            return this;
+        }
+        return new HandoffManifest(generation + 1, snapshots.values(), names);
+    }
+
+    public String toJson() throws IOException {
+        XContentBuilder builder = jsonBuilder().startObject()
+                .field("generation", generation)
+                .field("sinks", sinks)
+                .startArray("snapshots");
+        for (Entry entry : snapshots.values()) {
+            entry.toXContent(builder);
+        }
+        return builder.endArray().endObject().string();
+    }
+
+    public static class Entry {
+        private final String name;
+        private final List<String> indices;
+        private final long sizeInBytes;
+        //time the snapshot started on the source, 0 if not known.
+        private final long startTime;
+        //index -> settings of the index on the source, see RestoreProfile.
+        private final Map<String, Map<String, String>> settings;
+        //indices the source write blocked for the snapshot, the block is removed after the restore.
+        private final List<String> writeBlocked;
+        //index -> figures recorded at snapshot time, the sink verifies the restored index against them.
+        private final Map<String, IndexChecks> checks;
+
+        public Entry(String name, List<String> indices, long sizeInBytes) {
+            this(name, indices, sizeInBytes, 0, Collections.emptyMap(), Collections.emptyList(), Collections.emptyMap());
+        }
+
+        public Entry(String name, List<String> indices, long sizeInBytes, long startTime,
+                     Map<String, Map<String, String>> settings, List<String> writeBlocked, Map<String, IndexChecks> checks) {
+            this.name = name;
+            this.indices = indices;
+            this.sizeInBytes = sizeInBytes;
+            this.startTime = startTime;
+            this.settings = settings;
+            this.writeBlocked = writeBlocked;
+            this.checks = checks;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public List<String> getIndices() {
+            return indices;
+        }
+
+        public long getSizeInBytes() {
+            return sizeInBytes;
+        }
+
+        public long getStartTime() {
+            return startTime;
+        }
+
+        public Map<String, Map<String, String>> getSettings() {
+            return settings;
+        }
+
+        public List<String> getWriteBlocked() {
+            return writeBlocked;
+        }
+
+        public Map<String, IndexChecks> getChecks() {
+            return checks;
+        }
+
+        @SuppressWarnings("unchecked")
+        static Entry fromMap(Map<String, Object> entry) {
+            Object startTime = entry.get("startTime");
+            Map<String, Map<String, String>> settings = new HashMap<>();
+            if (entry.get("settings") instanceof Map) {
+                for (Map.Entry<String, Object> index : ((Map<String, Object>) entry.get("settings")).entrySet()) {
+                    Map<String, String> values = new HashMap<>();
+                    for (Map.Entry<String, Object> value : ((Map<String, Object>) index.getValue()).entrySet()) {
+                        values.put(value.getKey(), value.getValue().toString());
+                    }
+                    settings.put(index.getKey(), values);
+                }
+            }
+            List<String> writeBlocked = (List<String>) entry.get("writeBlocked");
+            Map<String, IndexChecks> checks = new HashMap<>();
+            if (entry.get("checks") instanceof Map) {
+                for (Map.Entry<String, Object> index : ((Map<String, Object>) entry.get("checks")).entrySet()) {
+                    checks.put(index.getKey(), IndexChecks.fromMap((Map<?, ?>) index.getValue()));
+                }
+            }
+            return new Entry((String) entry.get("name"), (List<String>) entry.get("indices"),
+                    ((Number) entry.get("sizeInBytes")).longValue(), startTime == null ? 0 : ((Number) startTime).longValue(),
+                    settings, writeBlocked == null ? Collections.emptyList() : writeBlocked, checks);
+        }
+
+        static Entry fromJson(String json) {
+            return fromMap(XContentHelper.convertToMap(JsonXContent.jsonXContent, json, true));
+        }
+
+        void toXContent(XContentBuilder builder) throws IOException {
+            builder.startObject()
+                    .field("name", name)
+                    .field("indices", indices)
+                    .field("sizeInBytes", sizeInBytes)
+                    .field("startTime", startTime)
+                    .field("settings", settings)
+                    .field("writeBlocked", writeBlocked)
+                    .startObject("checks");
+            for (Map.Entry<String, IndexChecks> index : checks.entrySet()) {
+                builder.field(index.getKey(), index.getValue().toMap());
+            }
+            builder.endObject().endObject();
+        }
+
+        String toJson() throws IOException {
+            XContentBuilder builder = jsonBuilder();
+            toXContent(builder);
+            return builder.string();
+        }
+
+        /**
+         * @return settings of the index on the source, empty if not recorded.
+         */
+        public Map<String, String> getSettings(String index) {
+            return settings.getOrDefault(index, Collections.emptyMap());
+        }
+    }
+}
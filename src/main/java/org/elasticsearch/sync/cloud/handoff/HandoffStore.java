@@ -0,0 +1,218 @@
+package org.elasticsearch.sync.cloud.handoff;
+
+import org.elasticsearch.common.blobstore.BlobContainer;
+import org.elasticsearch.common.io.Streams;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.NoSuchFileException;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Blobs the source and the sink hand snapshots over with, next to the snapshots in the repository.
+ * The source writes every manifest generation as a new blob (manifest-N) and deletes the older ones, the
+ * sink writes an ack-SNAPSHOT blob once a snapshot is restored and deleted, the source drops it from the
+ * next manifest and deletes the ack. Named sinks of a fan-out write a sinkack-SINK-SNAPSHOT blob instead and
+ * leave the snapshot in the repository, the source deletes it once every sink acked. A snapshot failing
+ * verification on a sink gets a sinkfail-SINK-SNAPSHOT blob instead of an ack. While a snapshot is taken, the
+ * source keeps an inflight-SNAPSHOT blob for a restarted source to publish it with. Each side polls with one listing
+ * of a few blobs, whatever the number of snapshots in the repository.
+ */
+public class HandoffStore {
+
+    public static final String path = "cloudsync_handoff";
+    private static final String manifestPrefix = "manifest-";
+    private static final String ackPrefix = "ack-";
+    //sinkack-SINK-SNAPSHOT, written by the named sinks of a fan-out.
+    private static final String sinkAckPrefix = "sinkack-";
+    //sinkfail-SINK-SNAPSHOT, SINK is empty for the unnamed sink.
+    private static final String failPrefix = "sinkfail-";
+    private static final String inFlightPrefix = "inflight-";
+
+    private final BlobContainer container;
+
+    public HandoffStore(final BlobContainer container) {
+        this.container = container;
+    }
+
+    /**
+     * @return generation of the latest manifest, -1 if none was published.
+     */
+    public long latestGeneration() throws IOException {
+        long latest = -1;
+        for (String name : container.listBlobsByPrefix(manifestPrefix).keySet()) {
+            try {
+                latest = Math.max(latest, Long.parseLong(name.substring(manifestPrefix.length())));
+            } catch (NumberFormatException ex) {
+                //not a manifest.
+            }
+        }
+        return latest;
+    }
+
+    /**
+     * @return the latest manifest, null if none was published.
+     */
+    public HandoffManifest readLatest() throws IOException {
+        long generation = latestGeneration();
+        return generation < 0 ? null : read(generation);
+    }
+
+    public HandoffManifest read(final long generation) throws IOException {
+        return HandoffManifest.fromJson(readString(manifestPrefix + generation));
+    }
+
+    /**
+     * Writes the manifest, then deletes the older generations.
+     */
+    public void publish(final HandoffManifest manifest) throws IOException {
+        writeString(manifestPrefix + manifest.getGeneration(), manifest.toJson());
+        for (String name : container.listBlobsByPrefix(manifestPrefix).keySet()) {
+            if (!name.equals(manifestPrefix + manifest.getGeneration())) {
+                deleteIfExists(name);
+            }
+        }
+    }
+
+    /**
+     * Sink: the snapshot is restored and deleted from the repository.
+     */
+    public void ack(final String snapshot) throws IOException {
+        deleteIfExists(ackPrefix + snapshot);
+        writeString(ackPrefix + snapshot, snapshot);
+    }
+
+    public Set<String> readAcks() throws IOException {
+        Set<String> acks = new HashSet<>();
+        for (String name : container.listBlobsByPrefix(ackPrefix).keySet()) {
+            acks.add(name.substring(ackPrefix.length()));
+        }
+        return acks;
+    }
+
+    /**
+     * Source: the acks are consumed, the snapshots left the manifest.
+     */
+    public void clearAcks(final Collection<String> snapshots) throws IOException {
+        for (String snapshot : snapshots) {
+            deleteIfExists(ackPrefix + snapshot);
+        }
+    }
+
+    /**
+     * Named sink: the snapshot is restored, the source deletes it once every sink acked it.
+     */
+    public void ack(final String snapshot, final String sink) throws IOException {
+        deleteIfExists(sinkAckPrefix + sink + "-" + snapshot);
+        writeString(sinkAckPrefix + sink + "-" + snapshot, snapshot);
+    }
+
+    /**
+     * @return snapshot -> named sinks that acked it.
+     */
+    public Map<String, Set<String>> readSinkAcks() throws IOException {
+        Map<String, Set<String>> acks = new HashMap<>();
+        for (String name : container.listBlobsByPrefix(sinkAckPrefix).keySet()) {
+            int separator = name.indexOf('-', sinkAckPrefix.length());
+            if (separator > 0) {
+                acks.computeIfAbsent(name.substring(separator + 1), snapshot -> new HashSet<>())
+                        .add(name.substring(sinkAckPrefix.length(), separator));
+            }
+        }
+        return acks;
+    }
+
+    /**
+     * Source: the snapshots are released, the acks of the sinks are consumed.
+     */
+    public void clearSinkAcks(final Collection<String> snapshots, final Collection<String> sinks) throws IOException {
+        for (String snapshot : snapshots) {
+            for (String sink : sinks) {
+                deleteIfExists(sinkAckPrefix + sink + "-" + snapshot);
+            }
+        }
+    }
+
+    /**
+     * Sink: the restored snapshot failed verification. It is kept in the repository and not acked, the sink
+     * skips it, also after a restart, till the marker is deleted.
+     * @param sink null for the unnamed sink.
+     * @param reason what did not match, kept in the marker.
+     */
+    public void fail(final String snapshot, final String sink, final String reason) throws IOException {
+        deleteIfExists(failName(snapshot, sink));
+        writeString(failName(snapshot, sink), reason);
+    }
+
+    /**
+     * @param sink null for the unnamed sink.
+     * @return snapshot -> reason, of the snapshots the sink failed to verify.
+     */
+    public Map<String, String> readFailures(final String sink) throws IOException {
+        String prefix = failName("", sink);
+        Map<String, String> failures = new HashMap<>();
+        for (String name : container.listBlobsByPrefix(prefix).keySet()) {
+            failures.put(name.substring(prefix.length()), readString(name));
+        }
+        return failures;
+    }
+
+    public void clearFailure(final String snapshot, final String sink) throws IOException {
+        deleteIfExists(failName(snapshot, sink));
+    }
+
+    /**
+     * Source: the snapshot of the entry is about to be taken. Records the indices write blocked for it and
+     * the checks read before it, which a restarted source publishes it with. Deleted once it is published.
+     */
+    public void writeInFlight(final HandoffManifest.Entry entry) throws IOException {
+        deleteIfExists(inFlightPrefix + entry.getName());
+        writeString(inFlightPrefix + entry.getName(), entry.toJson());
+    }
+
+    /**
+     * @return the record of the snapshot, null if none was written.
+     */
+    public HandoffManifest.Entry readInFlight(final String snapshot) throws IOException {
+        if (!container.blobExists(inFlightPrefix + snapshot)) {
+            return null;
+        }
+        return HandoffManifest.Entry.fromJson(readString(inFlightPrefix + snapshot));
+    }
+
+    public void clearInFlight(final String snapshot) throws IOException {
+        deleteIfExists(inFlightPrefix + snapshot);
+    }
+
+    private static String failName(final String snapshot, final String sink) {
+        return failPrefix + (sink == null ? "" : sink) + "-" + snapshot;
+    }
+
+    private void deleteIfExists(final String name) throws IOException {
+        try {
+            container.deleteBlob(name);
+        } catch (NoSuchFileException ex) {
+            //already gone.
+        }
+    }
+
+    private void writeString(final String name, final String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        container.writeBlob(name, new ByteArrayInputStream(bytes), bytes.length);
+    }
+
+    private String readString(final String name) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (InputStream in = container.readBlob(name)) {
+            Streams.copy(in, out);
+        }
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+}
@@ -2,20 +2,114 @@ package org.elasticsearch.sync.cloud.start;
 
 import org.elasticsearch.sync.cloud.elastic.ElasticClient;
 
+import org.apache.logging.log4j.Logger;
+import org.elasticsearch.common.logging.ESLoggerFactory;
+
 import java.io.IOException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+public abstract class AbstractStartThread implements Runnable {
 
-public abstract class AbstractStartThread {
+    private static final Logger startLogger = ESLoggerFactory.getLogger(AbstractStartThread.class);
+    //wait of a new loop for the loops it replaces to exit.
+    static final long handoverMillis = 60000;
+    //wait after a failed iteration of a loop, doubled on each failure in a row.
+    static final long minRetryMillis = 10000;
+    static final long maxRetryMillis = 300000;
 
     protected final  String repository = "cloudsync_backup";
     protected final String snapshotNamePrefix = "snapshot_";
+    //incremental mode, snapshots kept in the storage as base for the next sync of the same indices.
+    protected final String baseSnapshotNamePrefix = "base_";
     protected final StartInfo startInfo;
     protected final ElasticClient client;
+    private volatile boolean stopped = false;
+    //pool thread running the loop, guarded by this.
+    private Thread thread;
+    private final CountDownLatch exited = new CountDownLatch(1);
 
     public AbstractStartThread(final ElasticClient client, final StartInfo startInfo){
         this.startInfo = startInfo;
         this.client = client;
     }
 
+    /**
+     * Runs this on the executor, it holds one of its threads till the loop exits.
+     */
+    public void start(final Executor executor) {
+        start(executor, Collections.emptyList(), () -> {});
+    }
+
+    /**
+     * Runs this on the executor once the loops it replaces exited, waiting at most handoverMillis for them.
+     * @param onExit run if the loop exits without a stop, e.g. it could not start.
+     */
+    public void start(final Executor executor, final Collection<AbstractStartThread> previous, final Runnable onExit) {
+        executor.execute(() -> {
+            synchronized (this) {
+                thread = Thread.currentThread();
+            }
+            try {
+                for (AbstractStartThread loop : previous) {
+                    if (!stopped && !loop.awaitExit(handoverMillis)) {
+                        startLogger.warn("cloud-sync previous {} did not exit within {} ms, starting anyway.",
+                                loop.getClass().getSimpleName(), handoverMillis);
+                    }
+                }
+                if (!stopped) {
+                    run();
+                }
+            } catch (InterruptedException ex) {
+                //stopped during the handover.
+            } finally {
+                synchronized (this) {
+                    thread = null;
+                    //a stop must not interrupt the next task of the pool thread.
+                    Thread.interrupted();
+                }
+                exited.countDown();
+                if (!stopped) {
+                    onExit.run();
+                }
+            }
+        });
+    }
+
+    /**
+     * Asks the loop to exit, it does after the call in progress (e.g. a running snapshot) returns.
+     * See {@link #awaitExit} to wait for it.
+     */
+    public void stop() {
+        stopped = true;
+        synchronized (this) {
+            if (thread != null) {
+                thread.interrupt();
+            }
+        }
+    }
+
+    /**
+     * @return true if the loop exited within the wait. A loop never started does not exit.
+     */
+    public boolean awaitExit(final long millis) throws InterruptedException {
+        return exited.await(millis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @return the wait before the next try of a loop that failed, after the given wait (0 on the first failure).
+     */
+    static long nextRetryMillis(final long previous) {
+        return previous <= 0 ? minRetryMillis : Math.min(maxRetryMillis, previous * 2);
+    }
+
+    protected boolean isStopped() {
+        return stopped;
+    }
+
     protected void createRepository() throws IOException {
         boolean hasRepository = client.hasRepository(repository);
         if(!hasRepository){
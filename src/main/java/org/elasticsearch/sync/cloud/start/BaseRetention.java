@@ -0,0 +1,52 @@
+package org.elasticsearch.sync.cloud.start;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Which base snapshots of the incremental mode the source deletes. Every index keeps its newest base, a base
+ * goes once each of its indices is held by a newer one. A base of a batch may be superseded index by index,
+ * by several newer bases of other batches.
+ * Bases are named base_INDEX_MILLIS, the time they were taken orders them.
+ */
+public final class BaseRetention {
+
+    private BaseRetention() {
+    }
+
+    /**
+     * @param bases base snapshot -> its indices, as listed in the repository.
+     * @return the bases none of whose indices has it as newest base.
+     */
+    public static Set<String> obsolete(final Map<String, List<String>> bases) {
+        List<String> newestFirst = new ArrayList<>(bases.keySet());
+        newestFirst.sort(Comparator.comparingLong(BaseRetention::takenAt).thenComparing(Comparator.naturalOrder()).reversed());
+        //index -> its newest base.
+        Map<String, String> newest = new HashMap<>();
+        for (String base : newestFirst) {
+            for (String index : bases.get(base)) {
+                newest.putIfAbsent(index, base);
+            }
+        }
+        Set<String> kept = new HashSet<>(newest.values());
+        Set<String> obsolete = new HashSet<>(bases.keySet());
+        obsolete.removeAll(kept);
+        return obsolete;
+    }
+
+    /**
+     * @return the millis at the end of the base name, 0 if it has none.
+     */
+    static long takenAt(final String base) {
+        try {
+            return Long.parseLong(base.substring(base.lastIndexOf('_') + 1));
+        } catch (NumberFormatException ex) {
+            return 0;
+        }
+    }
+}
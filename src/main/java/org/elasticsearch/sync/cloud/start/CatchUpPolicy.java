@@ -0,0 +1,75 @@
+package org.elasticsearch.sync.cloud.start;
+
+import java.util.InputMismatchException;
+import java.util.Map;
+
+/**
+ * Copies the documents written to an index after its snapshot, for indices still written during the
+ * migration. Set on both the source and the sink. Only documents indexed (or indexed again) are copied: a
+ * document deleted after the snapshot stays on the sink.
+ *
+ * "catch_up" : {
+ *     "timestamp_field" : "@timestamp",   time the document was written, set by the writers.
+ *     "max_lag_ms" : 60000,              the index is caught up once the sink is this close behind the source.
+ *     "margin_ms" : 10000,               (source) documents stamped this close to now may not be searchable yet:
+ *                                        a round stops this short of now and the next one starts this far back.
+ *     "batch_docs" : 5000,               (source) documents per batch blob.
+ *     "workers" : 2                      (sink) bulk requests loading batches in parallel.
+ * }
+ */
+public final class CatchUpPolicy {
+
+    private final String timestampField;
+    private final long maxLagMillis;
+    private final long marginMillis;
+    private final int batchDocs;
+    private final int workers;
+
+    public CatchUpPolicy(String timestampField, long maxLagMillis, long marginMillis, int batchDocs, int workers) {
+        if (timestampField == null || timestampField.isEmpty()) {
+            throw new InputMismatchException("cloud-sync Invalid catch_up. Provide the timestamp_field.");
+        }
+        if (maxLagMillis < 1 || batchDocs < 1 || workers < 1) {
+            throw new InputMismatchException("cloud-sync Invalid catch_up. Provide max_lag_ms, batch_docs and workers >= 1.");
+        }
+        //the cursor trails now by the margin at least, a larger margin would never catch up.
+        if (marginMillis < 0 || marginMillis >= maxLagMillis) {
+            throw new InputMismatchException("cloud-sync Invalid catch_up. Provide margin_ms >= 0 and below max_lag_ms.");
+        }
+        this.timestampField = timestampField;
+        this.maxLagMillis = maxLagMillis;
+        this.marginMillis = marginMillis;
+        this.batchDocs = batchDocs;
+        this.workers = workers;
+    }
+
+    public static CatchUpPolicy fromMap(Map<?, ?> map) {
+        long maxLagMillis = map.containsKey("max_lag_ms") ? Long.parseLong(map.get("max_lag_ms").toString()) : 60000;
+        return new CatchUpPolicy(
+                map.containsKey("timestamp_field") ? map.get("timestamp_field").toString() : null,
+                maxLagMillis,
+                map.containsKey("margin_ms") ? Long.parseLong(map.get("margin_ms").toString()) : Math.min(10000, maxLagMillis / 2),
+                map.containsKey("batch_docs") ? Integer.parseInt(map.get("batch_docs").toString()) : 5000,
+                map.containsKey("workers") ? Integer.parseInt(map.get("workers").toString()) : 2);
+    }
+
+    public String getTimestampField() {
+        return timestampField;
+    }
+
+    public long getMaxLagMillis() {
+        return maxLagMillis;
+    }
+
+    public long getMarginMillis() {
+        return marginMillis;
+    }
+
+    public int getBatchDocs() {
+        return batchDocs;
+    }
+
+    public int getWorkers() {
+        return workers;
+    }
+}
@@ -0,0 +1,113 @@
+package org.elasticsearch.sync.cloud.start;
+
+import org.apache.logging.log4j.Logger;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.common.logging.ESLoggerFactory;
+import org.elasticsearch.sync.cloud.elastic.ElasticClient;
+import org.elasticsearch.sync.cloud.elastic.RepositoryAccess;
+import org.elasticsearch.sync.cloud.handoff.CatchUpStore;
+import org.elasticsearch.sync.cloud.status.SyncStats;
+
+import java.io.IOException;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Background thread to bulk load the catch-up rounds exported by the source. Runs next to the sink
+ * thread when "catch_up" is set. The batches of a round are read one at a time and loaded by up to
+ * "workers" bulk requests in parallel, a batch is read only once a worker is free. See {@link CatchUpStore}.
+ */
+public class CatchUpSinkThread extends AbstractStartThread {
+
+    private final Logger logger = ESLoggerFactory.getLogger(CatchUpSinkThread.class);
+    private static final int sleepIntervalMSecs = 10000;
+
+    private final CatchUpPolicy policy;
+    private final SyncStats stats;
+    private final RepositoryAccess repositoryAccess;
+
+    public CatchUpSinkThread(final ElasticClient client, final StartInfo startInfo, final SyncStats stats,
+                             final RepositoryAccess repositoryAccess) {
+        super(client, startInfo);
+        this.policy = startInfo.getCatchUp();
+        this.stats = stats;
+        this.repositoryAccess = repositoryAccess;
+    }
+
+    @Override
+    public void run() {
+        CatchUpStore store;
+        try {
+            createRepository();
+            store = new CatchUpStore(repositoryAccess.blobContainer(repository, CatchUpStore.path));
+        } catch (IOException ex) {
+            logger.error("cloud-sync failed to create repository on the sink cluster. Exiting the catch-up thread.", ex);
+            return;
+        }
+        logger.info("cloud-sync starting catch-up load thread.");
+
+        while (!isStopped()) {
+            try {
+                List<CatchUpStore.Round> rounds = store.readRounds();
+                rounds.sort(Comparator.comparing(CatchUpStore.Round::getIndex).thenComparingLong(CatchUpStore.Round::getRound));
+                for (CatchUpStore.Round round : rounds) {
+                    if (isStopped()) {
+                        break;
+                    }
+                    load(store, round);
+                }
+                if (rounds.isEmpty()) {
+                    Thread.sleep(sleepIntervalMSecs);
+                }
+            } catch (InterruptedException ex) {
+                break;
+            } catch (Exception ex) {
+                if (!isStopped()) {
+                    //the round stays in the repository and is loaded again, documents are indexed by id.
+                    logger.error("cloud-sync catch-up load failed.", ex);
+                    try {
+                        Thread.sleep(sleepIntervalMSecs);
+                    } catch (InterruptedException ie) {
+                        break;
+                    }
+                }
+            }
+        }
+        logger.info("cloud-sync catch-up load thread exited.");
+    }
+
+    private void load(final CatchUpStore store, final CatchUpStore.Round round) throws IOException, InterruptedException {
+        long start = System.currentTimeMillis();
+        Semaphore workers = new Semaphore(policy.getWorkers());
+        AtomicReference<Exception> failure = new AtomicReference<>();
+        long bytes = 0;
+        for (int seq = 0; seq < round.getBatches() && failure.get() == null; seq++) {
+            workers.acquire();
+            byte[] body;
+            try {
+                body = store.readBatch(round.getIndex(), round.getRound(), seq);
+            } catch (IOException ex) {
+                workers.release();
+                throw ex;
+            }
+            bytes += body.length;
+            client.bulkLoad(body, ActionListener.wrap(docs -> workers.release(), ex -> {
+                failure.compareAndSet(null, ex);
+                workers.release();
+            }));
+        }
+        //all bulk requests of the round are done.
+        workers.acquire(policy.getWorkers());
+        workers.release(policy.getWorkers());
+        if (failure.get() != null) {
+            throw new IOException("Failed to load catch-up round " + round.getRound() + " of index [" + round.getIndex() + "].",
+                    failure.get());
+        }
+        store.deleteRound(round);
+        stats.record(SyncStats.Phase.CATCH_UP, System.currentTimeMillis() - start, bytes);
+        logger.info("cloud-sync loaded catch-up round {} of index [{}], {} documents, {} ms behind the source.",
+                round.getRound(), round.getIndex(), round.getDocs(), System.currentTimeMillis() - round.getTo());
+    }
+}
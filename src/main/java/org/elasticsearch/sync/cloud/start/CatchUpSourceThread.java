@@ -0,0 +1,121 @@
+package org.elasticsearch.sync.cloud.start;
+
+import org.apache.logging.log4j.Logger;
+import org.elasticsearch.common.logging.ESLoggerFactory;
+import org.elasticsearch.index.IndexNotFoundException;
+import org.elasticsearch.sync.cloud.elastic.ElasticClient;
+import org.elasticsearch.sync.cloud.elastic.RepositoryAccess;
+import org.elasticsearch.sync.cloud.handoff.CatchUpStore;
+
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Background thread to export the documents written to an index after its snapshot, in rounds, till
+ * the sink is less than max_lag_ms behind. Runs next to the source thread when "catch_up" is set, the
+ * source thread starts the catch-up of the indices the sink acknowledged. Deletes are not copied, see
+ * {@link CatchUpPolicy}. See {@link CatchUpStore}.
+ */
+public class CatchUpSourceThread extends AbstractStartThread {
+
+    private final Logger logger = ESLoggerFactory.getLogger(CatchUpSourceThread.class);
+    private static final int sleepIntervalMsecs = 10000;
+
+    private final CatchUpPolicy policy;
+    private final RepositoryAccess repositoryAccess;
+
+    public CatchUpSourceThread(final ElasticClient client, final StartInfo startInfo, final RepositoryAccess repositoryAccess) {
+        super(client, startInfo);
+        this.policy = startInfo.getCatchUp();
+        this.repositoryAccess = repositoryAccess;
+    }
+
+    @Override
+    public void run() {
+        CatchUpStore store;
+        try {
+            createRepository();
+            store = new CatchUpStore(repositoryAccess.blobContainer(repository, CatchUpStore.path));
+        } catch (IOException ex) {
+            logger.error("cloud-sync failed to create repository on the source cluster. Exiting the catch-up thread.", ex);
+            return;
+        }
+        logger.info("cloud-sync starting catch-up export thread.");
+
+        while (!isStopped()) {
+            try {
+                boolean exported = false;
+                Set<String> pending = new HashSet<>();
+                for (CatchUpStore.Round round : store.readRounds()) {
+                    pending.add(round.getIndex());
+                }
+                for (CatchUpStore.Cursor cursor : store.readCursors()) {
+                    if (isStopped()) {
+                        break;
+                    }
+                    //the sink did not load the last round yet.
+                    if (pending.contains(cursor.getIndex())) {
+                        continue;
+                    }
+                    exported |= exportRound(store, cursor);
+                }
+                if (!exported) {
+                    Thread.sleep(sleepIntervalMsecs);
+                }
+            } catch (InterruptedException ex) {
+                break;
+            } catch (Exception ex) {
+                if (!isStopped()) {
+                    logger.error("cloud-sync catch-up export failed.", ex);
+                    try {
+                        Thread.sleep(sleepIntervalMsecs);
+                    } catch (InterruptedException ie) {
+                        break;
+                    }
+                }
+            }
+        }
+        logger.info("cloud-sync catch-up export thread exited.");
+    }
+
+    /**
+     * Exports the documents written since the cursor. Once the sink is close enough, exports the last round, up to
+     * now, and ends the catch-up of the index.
+     * @return true if a round was written.
+     */
+    private boolean exportRound(final CatchUpStore store, final CatchUpStore.Cursor cursor) throws IOException {
+        String index = cursor.getIndex();
+        long now = System.currentTimeMillis();
+        long lag = now - cursor.getFrom();
+        boolean last = lag <= policy.getMaxLagMillis();
+        //documents stamped just before now may not be searchable yet, or still on their way: the window stops
+        //margin_ms short of now and the next one starts margin_ms back. The overlap is indexed again by id.
+        long from = Math.max(0, cursor.getFrom() - policy.getMarginMillis());
+        long to = last ? now : now - policy.getMarginMillis();
+        long round = cursor.getRound() + 1;
+        int[] batches = {0};
+        long docs;
+        try {
+            client.refresh(index);
+            docs = client.exportRange(index, policy.getTimestampField(), from, to, policy.getBatchDocs(),
+                    hits -> store.writeBatch(index, round, batches[0]++, hits));
+        } catch (IndexNotFoundException ex) {
+            logger.info("cloud-sync index [{}] is gone, ending its catch-up.", index);
+            store.finish(index);
+            return false;
+        }
+        if (batches[0] > 0) {
+            store.writeRound(new CatchUpStore.Round(index, round, batches[0], docs, to));
+        }
+        if (last) {
+            logger.info("cloud-sync index [{}] caught up, the sink is {} ms behind. Writes can move to the sink once "
+                    + "the last round ({} documents) is loaded.", index, lag, docs);
+            store.finish(index);
+        } else {
+            store.writeCursor(new CatchUpStore.Cursor(index, to, round));
+            logger.info("cloud-sync catch-up round {} of index [{}], {} documents.", round, index, docs);
+        }
+        return batches[0] > 0;
+    }
+}
@@ -0,0 +1,42 @@
+package org.elasticsearch.sync.cloud.start;
+
+/**
+ * Limits the snapshots the source keeps in the storage at one time. The sink drains the storage,
+ * the source fills it. The window is bounded both by snapshot count and by total index size, so a
+ * handful of small indices does not block the source the same way one multi-terabyte index does.
+ */
+public final class InFlightBudget {
+
+    private final int maxSnapshots;
+    private final long maxBytes;
+
+    public InFlightBudget(final int maxSnapshots, final long maxBytes) {
+        this.maxSnapshots = maxSnapshots;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * @param snapshots snapshots currently in the storage.
+     * @param bytes total size of the indices in those snapshots.
+     * @param nextSizeInBytes size of the index the source wants to snapshot next.
+     * @return true if the next snapshot fits in the window.
+     */
+    public boolean hasRoom(final int snapshots, final long bytes, final long nextSizeInBytes) {
+        if (snapshots >= maxSnapshots) {
+            return false;
+        }
+        //an empty window always takes the next snapshot, else an index bigger than maxBytes never syncs.
+        if (snapshots == 0) {
+            return true;
+        }
+        return bytes + nextSizeInBytes <= maxBytes;
+    }
+
+    public int getMaxSnapshots() {
+        return maxSnapshots;
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+}
@@ -0,0 +1,46 @@
+package org.elasticsearch.sync.cloud.start;
+
+import org.elasticsearch.snapshots.SnapshotState;
+
+/**
+ * What the source does on start with a snapshot its state shows SNAPSHOT_INPROGRESS for, i.e. the
+ * previous source stopped between the two state writes around the snapshot. Decided from the snapshot
+ * in the repository and the acks of the sink, so a complete snapshot is never taken again.
+ */
+public final class InFlightReconciler {
+
+    public enum Outcome {
+        //the snapshot is complete: mark the indices SNAPSHOTED and hand it over to the sink.
+        PUBLISH,
+        //the snapshot still runs, e.g. it carried on after a master fail-over: wait, then decide again.
+        WAIT,
+        //the sink restored and acked it already: mark the indices SNAPSHOTED.
+        DONE,
+        //failed, partial, or never started: delete what is left of it and mark the indices READY.
+        REQUEUE
+    }
+
+    private InFlightReconciler() {
+    }
+
+    /**
+     * @param state state of the snapshot in the repository, null if the repository does not hold it.
+     * @param acked true if the sink acked the snapshot.
+     */
+    public static Outcome decide(final SnapshotState state, final boolean acked) {
+        if (acked) {
+            return Outcome.DONE;
+        }
+        if (state == null) {
+            return Outcome.REQUEUE;
+        }
+        switch (state) {
+            case SUCCESS:
+                return Outcome.PUBLISH;
+            case IN_PROGRESS:
+                return Outcome.WAIT;
+            default:
+                return Outcome.REQUEUE;
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package org.elasticsearch.sync.cloud.start;
+
+import org.apache.logging.log4j.Logger;
+import org.elasticsearch.common.logging.ESLoggerFactory;
+import org.elasticsearch.snapshots.SnapshotInfo;
+import org.elasticsearch.snapshots.SnapshotState;
+import org.elasticsearch.sync.cloud.elastic.IndexChecks;
+import org.elasticsearch.sync.cloud.handoff.HandoffManifest;
+import org.elasticsearch.sync.cloud.handoff.HandoffStore;
+import org.elasticsearch.sync.cloud.utils.IndexInfo;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Resumes what the previous source left in flight, on start of the source. Batches the state shows
+ * SNAPSHOT_INPROGRESS for are decided by {@link InFlightReconciler}. Complete snapshots whose indices are
+ * SNAPSHOTED but missing from the manifest (stopped before the publish) are handed over too. A snapshot is
+ * published with the write blocks and checks the previous source recorded before taking it, see
+ * {@link HandoffStore#writeInFlight}, and its write blocks are removed from the source indices.
+ */
+public class InFlightRecovery {
+
+    /**
+     * The source cluster and its repository, see ElasticClient.
+     */
+    public interface Source {
+        /**
+         * @return the snapshot in the repository, null if the repository does not hold it.
+         */
+        SnapshotInfo getSnapshotInfo(String snapshot) throws IOException;
+
+        /**
+         * @return snapshot -> indices, of the sync snapshots in the repository.
+         */
+        Map<String, List<String>> listSnapshotIndices() throws IOException;
+
+        void deleteSnapshot(String snapshot) throws IOException;
+
+        void removeWriteBlock(String index) throws IOException;
+
+        /**
+         * @return the checks of the snapshotted indices, from those read before the snapshot.
+         */
+        Map<String, IndexChecks> completeChecks(String snapshot, String[] indices, Map<String, IndexChecks> before)
+                throws IOException;
+
+        /**
+         * @return index -> settings of the source, see RestoreProfile.
+         */
+        Map<String, Map<String, String>> getSettings(String[] indices) throws IOException;
+    }
+
+    private final Logger logger = ESLoggerFactory.getLogger(InFlightRecovery.class);
+
+    private final Source source;
+    private final StateRegistry registry;
+    private final HandoffStore handoff;
+    //wait before deciding again on a snapshot still running.
+    private final long waitMillis;
+
+    public InFlightRecovery(final Source source, final StateRegistry registry, final HandoffStore handoff,
+                            final long waitMillis) {
+        this.source = source;
+        this.registry = registry;
+        this.handoff = handoff;
+        this.waitMillis = waitMillis;
+    }
+
+    /**
+     * @param acks snapshots the sink acknowledged.
+     * @return the manifest, with the recovered snapshots added and published.
+     */
+    public HandoffManifest reconcile(HandoffManifest manifest, final Set<String> acks)
+            throws IOException, InterruptedException {
+        Map<String, List<IndexInfo>> inFlight = new LinkedHashMap<>();
+        for (IndexInfo indexInfo : registry.inState(IndexInfo.State.SNAPSHOT_INPROGRESS)) {
+            inFlight.computeIfAbsent(indexInfo.getSnapshot(), snapshot -> new ArrayList<>()).add(indexInfo);
+        }
+        for (Map.Entry<String, List<IndexInfo>> snapshot : inFlight.entrySet()) {
+            String name = snapshot.getKey();
+            List<IndexInfo> batch = snapshot.getValue();
+            while (true) {
+                SnapshotInfo info = name == null ? null : source.getSnapshotInfo(name);
+                InFlightReconciler.Outcome outcome = InFlightReconciler.decide(info == null ? null : info.state(),
+                        acks.contains(name));
+                logger.info("cloud-sync in-flight snapshot [{}] of {} indices: {}.", name, batch.size(), outcome);
+                if (outcome == InFlightReconciler.Outcome.WAIT) {
+                    Thread.sleep(waitMillis);
+                    continue;
+                }
+                if (outcome == InFlightReconciler.Outcome.REQUEUE) {
+                    if (info != null) {
+                        source.deleteSnapshot(name);
+                    }
+                    registry.move(batch, IndexInfo.State.READY, null);
+                    release(name);
+                } else {
+                    registry.move(batch, IndexInfo.State.SNAPSHOTED, name);
+                    if (outcome == InFlightReconciler.Outcome.PUBLISH && !manifest.contains(name)) {
+                        manifest = publish(manifest, name, batch, info.startTime());
+                    } else {
+                        release(name);
+                    }
+                }
+                break;
+            }
+        }
+
+        List<String> unlisted = new ArrayList<>();
+        for (String name : source.listSnapshotIndices().keySet()) {
+            if (!manifest.contains(name) && !acks.contains(name) && !inFlight.containsKey(name)) {
+                unlisted.add(name);
+            }
+        }
+        if (!unlisted.isEmpty()) {
+            Map<String, List<IndexInfo>> snapshotted = new LinkedHashMap<>();
+            for (IndexInfo indexInfo : registry.ofSnapshots(unlisted)) {
+                if (indexInfo.getState() == IndexInfo.State.SNAPSHOTED) {
+                    snapshotted.computeIfAbsent(indexInfo.getSnapshot(), snapshot -> new ArrayList<>()).add(indexInfo);
+                }
+            }
+            for (Map.Entry<String, List<IndexInfo>> snapshot : snapshotted.entrySet()) {
+                SnapshotInfo info = source.getSnapshotInfo(snapshot.getKey());
+                if (info != null && info.state() == SnapshotState.SUCCESS) {
+                    logger.info("cloud-sync snapshot [{}] was not handed over to the sink, publishing it.", snapshot.getKey());
+                    manifest = publish(manifest, snapshot.getKey(), snapshot.getValue(), info.startTime());
+                }
+            }
+        }
+        return manifest;
+    }
+
+    /**
+     * Hands the complete snapshot over with what the previous source recorded before taking it. The checks
+     * are completed while the indices are still write blocked, then the blocks are removed.
+     */
+    private HandoffManifest publish(final HandoffManifest manifest, final String snapshot, final List<IndexInfo> batch,
+                                    final long startTime) throws IOException {
+        HandoffManifest.Entry recorded = handoff.readInFlight(snapshot);
+        List<String> indices = new ArrayList<>(batch.size());
+        long sizeInBytes = 0;
+        for (IndexInfo indexInfo : batch) {
+            indices.add(indexInfo.getName());
+            sizeInBytes += indexInfo.getSizeInBytes();
+        }
+        String[] names = indices.toArray(new String[0]);
+        List<String> writeBlocked = recorded == null ? Collections.emptyList() : recorded.getWriteBlocked();
+        Map<String, IndexChecks> checks = recorded == null || recorded.getChecks().isEmpty() ? Collections.emptyMap()
+                : source.completeChecks(snapshot, names, recorded.getChecks());
+        for (String index : writeBlocked) {
+            source.removeWriteBlock(index);
+        }
+        HandoffManifest next = manifest.add(new HandoffManifest.Entry(snapshot, indices, sizeInBytes, startTime,
+                source.getSettings(names), writeBlocked, checks));
+        //the state changes behind the manifest are written first.
+        registry.flush();
+        handoff.publish(next);
+        handoff.clearInFlight(snapshot);
+        return next;
+    }
+
+    /**
+     * The snapshot is not handed over: removes the write blocks recorded for it from the source indices.
+     */
+    private void release(final String snapshot) throws IOException {
+        if (snapshot == null) {
+            return;
+        }
+        HandoffManifest.Entry recorded = handoff.readInFlight(snapshot);
+        if (recorded == null) {
+            return;
+        }
+        for (String index : recorded.getWriteBlocked()) {
+            source.removeWriteBlock(index);
+        }
+        handoff.clearInFlight(snapshot);
+    }
+}
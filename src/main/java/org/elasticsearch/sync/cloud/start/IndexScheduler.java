@@ -0,0 +1,57 @@
+package org.elasticsearch.sync.cloud.start;
+
+import org.elasticsearch.sync.cloud.utils.IndexInfo;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * READY indices of the source, in the order of the scheduling policy. Loaded once from the state and
+ * drained as snapshots are taken, so picking the next index is O(log n) instead of a re-sort of
+ * the whole list for every snapshot.
+ */
+public class IndexScheduler {
+
+    private final PriorityQueue<IndexInfo> queue;
+
+    public IndexScheduler(final Comparator<IndexInfo> comparator) {
+        this.queue = new PriorityQueue<>(comparator);
+    }
+
+    public void addAll(final Collection<IndexInfo> ready) {
+        queue.addAll(ready);
+    }
+
+    /**
+     * Takes up to max indices off the head of the queue.
+     */
+    public List<IndexInfo> poll(final int max) {
+        List<IndexInfo> head = new ArrayList<>(Math.min(max, queue.size()));
+        while (head.size() < max && !queue.isEmpty()) {
+            head.add(queue.poll());
+        }
+        return head;
+    }
+
+    /**
+     * Puts indices taken by {@link #poll} back, e.g. those left out of a snapshot batch.
+     */
+    public void putBack(final Collection<IndexInfo> indices) {
+        queue.addAll(indices);
+    }
+
+    public boolean isEmpty() {
+        return queue.isEmpty();
+    }
+
+    public int size() {
+        return queue.size();
+    }
+
+    public void clear() {
+        queue.clear();
+    }
+}
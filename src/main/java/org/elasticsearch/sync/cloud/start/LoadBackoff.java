@@ -0,0 +1,79 @@
+package org.elasticsearch.sync.cloud.start;
+
+import org.elasticsearch.sync.cloud.elastic.NodeLoad;
+
+import java.util.InputMismatchException;
+import java.util.Map;
+
+/**
+ * Holds the next snapshot back while the source nodes reject or queue up live writes or searches.
+ * The delay doubles for every overloaded sample, and is reset by the first healthy one.
+ *
+ * "backoff" : {
+ *     "max_write_rejections" : 0,      new bulk + index rejections allowed between two samples, all nodes.
+ *     "max_search_rejections" : 0,     new search rejections allowed between two samples, all nodes.
+ *     "max_write_queue" : 200,         bulk + index thread pool queue, per node.
+ *     "max_search_queue" : 500,        search thread pool queue, per node.
+ *     "initial_delay_ms" : 10000,
+ *     "max_delay_ms" : 300000
+ * }
+ */
+public final class LoadBackoff {
+
+    private final long maxWriteRejections;
+    private final long maxSearchRejections;
+    private final long maxWriteQueue;
+    private final long maxSearchQueue;
+    private final long initialDelayMillis;
+    private final long maxDelayMillis;
+
+    public LoadBackoff(long maxWriteRejections, long maxSearchRejections, long maxWriteQueue, long maxSearchQueue,
+                       long initialDelayMillis, long maxDelayMillis) {
+        if (initialDelayMillis <= 0 || maxDelayMillis < initialDelayMillis) {
+            throw new InputMismatchException("cloud-sync Invalid backoff. Provide 0 < initial_delay_ms <= max_delay_ms.");
+        }
+        this.maxWriteRejections = maxWriteRejections;
+        this.maxSearchRejections = maxSearchRejections;
+        this.maxWriteQueue = maxWriteQueue;
+        this.maxSearchQueue = maxSearchQueue;
+        this.initialDelayMillis = initialDelayMillis;
+        this.maxDelayMillis = maxDelayMillis;
+    }
+
+    public static LoadBackoff fromMap(Map<?, ?> map) {
+        return new LoadBackoff(
+                toLong(map, "max_write_rejections", 0),
+                toLong(map, "max_search_rejections", 0),
+                toLong(map, "max_write_queue", 200),
+                toLong(map, "max_search_queue", 500),
+                toLong(map, "initial_delay_ms", 10000),
+                toLong(map, "max_delay_ms", 300000));
+    }
+
+    private static long toLong(Map<?, ?> map, String key, long defaultValue) {
+        return map.containsKey(key) ? Long.parseLong(map.get(key).toString()) : defaultValue;
+    }
+
+    /**
+     * @param delayMillis delay returned for the previous sample, 0 at first.
+     * @param previous sample before load, null for the first one (rejections are then not compared).
+     * @param load latest sample.
+     * @return millis to wait before the next sample, 0 if the nodes are within the limits.
+     */
+    public long nextDelay(final long delayMillis, final NodeLoad previous, final NodeLoad load) {
+        if (!isOverloaded(previous, load)) {
+            return 0;
+        }
+        return delayMillis <= 0 ? initialDelayMillis : Math.min(maxDelayMillis, delayMillis * 2);
+    }
+
+    boolean isOverloaded(final NodeLoad previous, final NodeLoad load) {
+        if (load.maxWriteQueue > maxWriteQueue || load.maxSearchQueue > maxSearchQueue) {
+            return true;
+        }
+        //counters are per node since its start, a restarted node makes them go down.
+        return previous != null
+                && (load.writeRejected - previous.writeRejected > maxWriteRejections
+                || load.searchRejected - previous.searchRejected > maxSearchRejections);
+    }
+}
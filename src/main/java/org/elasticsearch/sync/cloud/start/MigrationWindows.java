@@ -0,0 +1,185 @@
+package org.elasticsearch.sync.cloud.start;
+
+import java.time.DayOfWeek;
+import java.time.Instant;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.InputMismatchException;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Time windows in which the source takes snapshots slower, or not at all. Outside of every window the
+ * sync runs at full speed.
+ *
+ * "timezone" : "America/Denver",   (optional) zone of the window times, UTC if not set.
+ * "windows" : [
+ *     {"days" : ["mon", "tue", "wed", "thu", "fri"], "start" : "08:00", "end" : "18:00", "action" : "throttle", "max_rate" : "20mb"},
+ *     {"start" : "22:00", "end" : "02:00", "action" : "pause"}
+ * ]
+ * "days" defaults to every day. A window with end before start runs over midnight, it belongs to the day it starts on.
+ * If windows overlap, pause wins over throttle, and the lowest max_rate wins.
+ * Windows are checked before each snapshot: a snapshot running when a window opens is not paused, and
+ * finishes at the rate it started with.
+ */
+public final class MigrationWindows {
+
+    public enum Action {
+        RUN, THROTTLE, PAUSE
+    }
+
+    private static final MigrationWindows none = new MigrationWindows(ZoneId.of("UTC"), Collections.emptyList());
+
+    private final ZoneId zone;
+    private final List<Window> windows;
+
+    public MigrationWindows(final ZoneId zone, final List<Window> windows) {
+        this.zone = zone;
+        this.windows = windows;
+    }
+
+    public static MigrationWindows none() {
+        return none;
+    }
+
+    public static MigrationWindows fromList(final List<?> list, final String timezone) {
+        ZoneId zone;
+        try {
+            zone = timezone == null ? ZoneId.of("UTC") : ZoneId.of(timezone);
+        } catch (Exception ex) {
+            throw new InputMismatchException("cloud-sync Invalid timezone [" + timezone + "].");
+        }
+        List<Window> windows = new ArrayList<>();
+        for (Object item : list) {
+            if (!(item instanceof Map)) {
+                throw new InputMismatchException("cloud-sync Invalid windows. Provide a list of objects.");
+            }
+            windows.add(Window.fromMap((Map<?, ?>) item));
+        }
+        return new MigrationWindows(zone, windows);
+    }
+
+    public boolean isEmpty() {
+        return windows.isEmpty();
+    }
+
+    /**
+     * @return what the source should do at the time, RUN outside of every window.
+     */
+    public Action actionAt(final long millis) {
+        Action action = Action.RUN;
+        for (Window window : matching(millis)) {
+            if (window.action == Action.PAUSE) {
+                return Action.PAUSE;
+            }
+            action = Action.THROTTLE;
+        }
+        return action;
+    }
+
+    /**
+     * @return lowest max_rate of the throttle windows at the time, -1 if none applies.
+     */
+    public long maxRateAt(final long millis) {
+        long rate = -1;
+        for (Window window : matching(millis)) {
+            if (window.action == Action.THROTTLE && window.maxBytesPerSec > 0) {
+                rate = rate < 0 ? window.maxBytesPerSec : Math.min(rate, window.maxBytesPerSec);
+            }
+        }
+        return rate;
+    }
+
+    private List<Window> matching(final long millis) {
+        if (windows.isEmpty()) {
+            return Collections.emptyList();
+        }
+        ZonedDateTime time = Instant.ofEpochMilli(millis).atZone(zone);
+        List<Window> matching = new ArrayList<>();
+        for (Window window : windows) {
+            if (window.contains(time.getDayOfWeek(), time.toLocalTime())) {
+                matching.add(window);
+            }
+        }
+        return matching;
+    }
+
+    static final class Window {
+        private final Set<DayOfWeek> days;
+        private final LocalTime start;
+        private final LocalTime end;
+        private final Action action;
+        //throttle only, -1 keeps the rate of the repository.
+        private final long maxBytesPerSec;
+
+        Window(Set<DayOfWeek> days, LocalTime start, LocalTime end, Action action, long maxBytesPerSec) {
+            this.days = days;
+            this.start = start;
+            this.end = end;
+            this.action = action;
+            this.maxBytesPerSec = maxBytesPerSec;
+        }
+
+        static Window fromMap(final Map<?, ?> map) {
+            Set<DayOfWeek> days = EnumSet.allOf(DayOfWeek.class);
+            if (map.get("days") instanceof List) {
+                days = EnumSet.noneOf(DayOfWeek.class);
+                for (Object day : (List<?>) map.get("days")) {
+                    days.add(toDay(day.toString()));
+                }
+            }
+            Action action;
+            if ("pause".equals(map.get("action"))) {
+                action = Action.PAUSE;
+            } else if ("throttle".equals(map.get("action"))) {
+                action = Action.THROTTLE;
+            } else {
+                throw new InputMismatchException("cloud-sync Invalid window action [" + map.get("action") + "]. Provide pause or throttle.");
+            }
+            long maxRate = StartInfo.toBytes(map.get("max_rate"), "max_rate", -1);
+            if (action == Action.THROTTLE && maxRate <= 0) {
+                throw new InputMismatchException("cloud-sync Invalid window. A throttle window needs a positive max_rate.");
+            }
+            return new Window(days, toTime(map.get("start")), toTime(map.get("end")), action, maxRate);
+        }
+
+        boolean contains(final DayOfWeek day, final LocalTime time) {
+            if (start.equals(end)) {
+                //whole day.
+                return days.contains(day);
+            }
+            if (start.isBefore(end)) {
+                return days.contains(day) && !time.isBefore(start) && time.isBefore(end);
+            }
+            //over midnight, the part after midnight belongs to the day before.
+            return (days.contains(day) && !time.isBefore(start))
+                    || (days.contains(day.minus(1)) && time.isBefore(end));
+        }
+
+        private static LocalTime toTime(final Object value) {
+            if (value == null) {
+                throw new InputMismatchException("cloud-sync Invalid window. Provide start and end as HH:mm.");
+            }
+            try {
+                return LocalTime.parse(value.toString());
+            } catch (DateTimeParseException ex) {
+                throw new InputMismatchException("cloud-sync Invalid window time [" + value + "]. Provide HH:mm.");
+            }
+        }
+
+        private static DayOfWeek toDay(final String value) {
+            for (DayOfWeek day : DayOfWeek.values()) {
+                if (day.name().toLowerCase().startsWith(value.toLowerCase()) && value.length() >= 3) {
+                    return day;
+                }
+            }
+            throw new InputMismatchException("cloud-sync Invalid window day [" + value + "].");
+        }
+    }
+}
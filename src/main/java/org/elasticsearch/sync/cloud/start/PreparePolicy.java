@@ -0,0 +1,71 @@
+package org.elasticsearch.sync.cloud.start;
+
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.sync.cloud.utils.IndexInfo;
+
+import java.util.InputMismatchException;
+import java.util.Map;
+
+/**
+ * Prepares cold indices before their snapshot: a write block, a flush and a force merge, so the snapshot
+ * uploads (and the sink restores) a few large segment files instead of thousands of small ones. The write
+ * block is removed from the source index once the snapshot is taken, and from the restored index by the sink.
+ *
+ * "prepare" : {
+ *     "min_age" : "7d",           indices created at least this long ago are cold.
+ *     "max_num_segments" : 1,     segments per shard after the force merge, 0 to only block and flush.
+ *     "max_rate" : "50mb"         (optional) index bytes merged per second, the source waits between merges to keep to it.
+ * }
+ */
+public final class PreparePolicy {
+
+    public static final String writeBlockKey = "index.blocks.write";
+
+    private final long minAgeMillis;
+    private final int maxNumSegments;
+    private final long maxBytesPerSec;
+
+    public PreparePolicy(long minAgeMillis, int maxNumSegments, long maxBytesPerSec) {
+        if (minAgeMillis < 0 || maxNumSegments < 0) {
+            throw new InputMismatchException("cloud-sync Invalid prepare. Provide min_age and max_num_segments >= 0.");
+        }
+        this.minAgeMillis = minAgeMillis;
+        this.maxNumSegments = maxNumSegments;
+        this.maxBytesPerSec = maxBytesPerSec;
+    }
+
+    public static PreparePolicy fromMap(Map<?, ?> map) {
+        return new PreparePolicy(
+                map.containsKey("min_age") ? TimeValue.parseTimeValue(map.get("min_age").toString(), "min_age").millis()
+                        : TimeValue.timeValueHours(24 * 7).millis(),
+                map.containsKey("max_num_segments") ? Integer.parseInt(map.get("max_num_segments").toString()) : 1,
+                StartInfo.toBytes(map.get("max_rate"), "max_rate", -1));
+    }
+
+    /**
+     * @return true if the index is old enough to prepare. Indices of unknown creation time are not.
+     */
+    public boolean isCold(final IndexInfo index, final long now) {
+        return index.getCreationDate() > 0 && now - index.getCreationDate() >= minAgeMillis;
+    }
+
+    public boolean isMerging() {
+        return maxNumSegments > 0;
+    }
+
+    public int getMaxNumSegments() {
+        return maxNumSegments;
+    }
+
+    /**
+     * @param bytes index bytes merged.
+     * @param tookMillis time the merge took.
+     * @return millis to wait before the next merge, so merges average max_rate.
+     */
+    public long pauseMillis(final long bytes, final long tookMillis) {
+        if (maxBytesPerSec <= 0) {
+            return 0;
+        }
+        return Math.max(0, bytes * 1000 / maxBytesPerSec - tookMillis);
+    }
+}
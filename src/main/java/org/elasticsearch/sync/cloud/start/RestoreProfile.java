@@ -0,0 +1,124 @@
+package org.elasticsearch.sync.cloud.start;
+
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.TimeValue;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.InputMismatchException;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Index settings the sink restores with, so the restore and the green wait skip the replicas and the
+ * refreshes. Once the primaries are restored, the indices get their target settings: those of the
+ * source, recorded in the manifest, with the replicas of the age tier the index falls in.
+ *
+ * "restore_profile" : {
+ *     "replicas" : 0,                           replicas during the restore.
+ *     "refresh_interval" : "-1",                refresh interval during the restore.
+ *     "require" : {"box_type" : "ingest"},      (optional) index.routing.allocation.require.* during the restore.
+ *     "tiers" : [ {"min_age" : "30d", "replicas" : 0}, {"min_age" : "7d", "replicas" : 1} ]
+ *                                               (optional) replicas by index age, the oldest matching tier wins.
+ * }
+ */
+public final class RestoreProfile {
+
+    public static final String replicasKey = "index.number_of_replicas";
+    public static final String refreshKey = "index.refresh_interval";
+    public static final String creationDateKey = "index.creation_date";
+    private static final String requirePrefix = "index.routing.allocation.require.";
+    //settings of the source the target settings start from.
+    public static final String[] sourceKeys = {replicasKey, refreshKey};
+
+    private final int replicas;
+    private final String refreshInterval;
+    private final Map<String, String> require;
+    //oldest first.
+    private final List<Tier> tiers;
+
+    public RestoreProfile(int replicas, String refreshInterval, Map<String, String> require, List<Tier> tiers) {
+        if (replicas < 0) {
+            throw new InputMismatchException("cloud-sync Invalid restore_profile. Provide replicas >= 0.");
+        }
+        this.replicas = replicas;
+        this.refreshInterval = refreshInterval;
+        this.require = require;
+        this.tiers = new ArrayList<>(tiers);
+        this.tiers.sort(Comparator.comparingLong((Tier tier) -> tier.minAgeMillis).reversed());
+    }
+
+    public static RestoreProfile fromMap(Map<?, ?> map) {
+        Map<String, String> require = new HashMap<>();
+        if (map.get("require") instanceof Map) {
+            for (Map.Entry<?, ?> attribute : ((Map<?, ?>) map.get("require")).entrySet()) {
+                require.put(attribute.getKey().toString(), attribute.getValue().toString());
+            }
+        }
+        List<Tier> tiers = new ArrayList<>();
+        if (map.get("tiers") instanceof List) {
+            for (Object item : (List<?>) map.get("tiers")) {
+                if (!(item instanceof Map) || !((Map<?, ?>) item).containsKey("min_age") || !((Map<?, ?>) item).containsKey("replicas")) {
+                    throw new InputMismatchException("cloud-sync Invalid restore_profile tier. Provide min_age and replicas.");
+                }
+                Map<?, ?> tier = (Map<?, ?>) item;
+                tiers.add(new Tier(TimeValue.parseTimeValue(tier.get("min_age").toString(), "min_age").millis(),
+                        Integer.parseInt(tier.get("replicas").toString())));
+            }
+        }
+        return new RestoreProfile(
+                map.containsKey("replicas") ? Integer.parseInt(map.get("replicas").toString()) : 0,
+                map.containsKey("refresh_interval") ? map.get("refresh_interval").toString() : "-1",
+                require, tiers);
+    }
+
+    /**
+     * @return index settings overrides of the restore request.
+     */
+    public Settings restoreSettings() {
+        Settings.Builder settings = Settings.builder()
+                .put(replicasKey, replicas)
+                .put(refreshKey, refreshInterval);
+        for (Map.Entry<String, String> attribute : require.entrySet()) {
+            settings.put(requirePrefix + attribute.getKey(), attribute.getValue());
+        }
+        return settings.build();
+    }
+
+    /**
+     * @param source settings of the index on the source (see {@link #sourceKeys}), empty if not known.
+     * @param ageMillis age of the index, -1 if not known.
+     * @return settings to update the restored index with, a null value resets the setting to its default.
+     */
+    public Map<String, String> targetSettings(final Map<String, String> source, final long ageMillis) {
+        Map<String, String> target = new HashMap<>();
+        target.put(replicasKey, source.getOrDefault(replicasKey, "1"));
+        target.put(refreshKey, source.get(refreshKey));
+        for (String attribute : require.keySet()) {
+            target.put(requirePrefix + attribute, null);
+        }
+        if (ageMillis >= 0) {
+            for (Tier tier : tiers) {
+                if (ageMillis >= tier.minAgeMillis) {
+                    target.put(replicasKey, Integer.toString(tier.replicas));
+                    break;
+                }
+            }
+        }
+        return target;
+    }
+
+    static final class Tier {
+        private final long minAgeMillis;
+        private final int replicas;
+
+        Tier(long minAgeMillis, int replicas) {
+            if (replicas < 0) {
+                throw new InputMismatchException("cloud-sync Invalid restore_profile tier. Provide replicas >= 0.");
+            }
+            this.minAgeMillis = minAgeMillis;
+            this.replicas = replicas;
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package org.elasticsearch.sync.cloud.start;
+
+import org.elasticsearch.common.regex.Regex;
+import org.elasticsearch.sync.cloud.utils.IndexInfo;
+
+import java.util.Comparator;
+import java.util.InputMismatchException;
+import java.util.Map;
+
+/**
+ * Order in which the source snapshots READY indices. Every policy falls back to the
+ * index name (descending), so the order is stable between runs.
+ */
+public enum SchedulingPolicy {
+
+    //reverse index name, for daily indices the latest day first.
+    NAME("name"),
+    //clears the count of many small indices early.
+    SMALLEST_FIRST("smallest_first"),
+    //keeps the bandwidth full with large transfers.
+    LARGEST_FIRST("largest_first"),
+    //hot data lands on the sink first.
+    NEWEST_FIRST("newest_first"),
+    //highest weight of the matching "priorities" patterns first.
+    WEIGHTED("weighted");
+
+    private final String value;
+
+    SchedulingPolicy(String value) {
+        this.value = value;
+    }
+
+    public String getValue() {
+        return value;
+    }
+
+    public static SchedulingPolicy fromString(String value) {
+        for (SchedulingPolicy policy : values()) {
+            if (policy.value.equals(value)) {
+                return policy;
+            }
+        }
+        throw new InputMismatchException("cloud-sync Invalid schedule [" + value + "].");
+    }
+
+    /**
+     * @param priorities index pattern -> weight, used by the weighted policy.
+     */
+    public Comparator<IndexInfo> comparator(final Map<String, Integer> priorities) {
+        Comparator<IndexInfo> byName = (a, b) -> b.getName().compareTo(a.getName());
+        switch (this) {
+            case SMALLEST_FIRST:
+                return Comparator.comparing(IndexInfo::getSizeInBytes).thenComparing(byName);
+            case LARGEST_FIRST:
+                return Comparator.comparing(IndexInfo::getSizeInBytes).reversed().thenComparing(byName);
+            case NEWEST_FIRST:
+                return Comparator.comparingLong(IndexInfo::getCreationDate).reversed().thenComparing(byName);
+            case WEIGHTED:
+                return Comparator.<IndexInfo>comparingInt(i -> weight(i.getName(), priorities)).reversed().thenComparing(byName);
+            default:
+                return byName;
+        }
+    }
+
+    /**
+     * @return the highest weight of the patterns matching the index, 0 if none match.
+     */
+    static int weight(final String index, final Map<String, Integer> priorities) {
+        int weight = 0;
+        boolean matched = false;
+        for (Map.Entry<String, Integer> priority : priorities.entrySet()) {
+            if (Regex.simpleMatch(priority.getKey(), index) && (!matched || priority.getValue() > weight)) {
+                weight = priority.getValue();
+                matched = true;
+            }
+        }
+        return weight;
+    }
+}
@@ -0,0 +1,98 @@
+package org.elasticsearch.sync.cloud.start;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.InputMismatchException;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Named sinks a source run hands its snapshots to, e.g. one per cloud region. Every snapshot is counted
+ * against each registered sink and released once all of them acked its restore: the source then deletes
+ * it from the repository and drops it from the manifest. The sinks do not delete the snapshots themselves,
+ * so the source takes and uploads each snapshot once, whatever the number of sinks. The manifest lists the
+ * sinks, a sink that is not one of them does not restore.
+ *
+ * "sinks" : ["us_east", "eu_west"]   (source) names of the sinks, each sink is started with its "sink_name".
+ */
+public final class SinkFanOut {
+
+    //no '-', the name is the part of the ack blob before the snapshot name.
+    private static final Pattern namePattern = Pattern.compile("[a-z0-9_]+");
+
+    private final Set<String> sinks;
+
+    public SinkFanOut(Collection<String> sinks) {
+        if (sinks.isEmpty()) {
+            throw new InputMismatchException("cloud-sync Invalid sinks. Provide at least one sink name.");
+        }
+        for (String sink : sinks) {
+            checkName(sink);
+        }
+        this.sinks = Collections.unmodifiableSet(new LinkedHashSet<>(sinks));
+    }
+
+    public static SinkFanOut fromList(List<?> list) {
+        Set<String> sinks = new LinkedHashSet<>();
+        for (Object sink : list) {
+            sinks.add(String.valueOf(sink));
+        }
+        return new SinkFanOut(sinks);
+    }
+
+    public static void checkName(final String sink) {
+        if (sink == null || !namePattern.matcher(sink).matches()) {
+            throw new InputMismatchException("cloud-sync Invalid sink name [" + sink + "]. Use lowercase letters, digits and '_'.");
+        }
+    }
+
+    /**
+     * Checks a sink against the named sinks of the source, as listed in its manifest. An unnamed sink would
+     * delete every snapshot it restores before the named sinks restored it, the acks of a named sink would
+     * never be consumed by a source without it.
+     * @param sinkName null for an unnamed sink.
+     * @param named sinks listed in the manifest, empty if the source has none.
+     */
+    public static void checkSink(final String sinkName, final Collection<String> named) {
+        if (sinkName == null && !named.isEmpty()) {
+            throw new InputMismatchException("cloud-sync Invalid sink. The source hands its snapshots to the sinks "
+                    + named + ", start the sink with one of them as sink_name.");
+        }
+        if (sinkName != null && !named.contains(sinkName)) {
+            throw new InputMismatchException("cloud-sync Invalid sink_name [" + sinkName + "]. The sinks of the source are "
+                    + named + ".");
+        }
+    }
+
+    public Set<String> getSinks() {
+        return sinks;
+    }
+
+    /**
+     * @param acks snapshot -> sinks that acked it.
+     * @return the registered sinks yet to ack the snapshot, the reference count of the snapshot.
+     */
+    public Set<String> pending(final String snapshot, final Map<String, Set<String>> acks) {
+        Set<String> pending = new LinkedHashSet<>(sinks);
+        pending.removeAll(acks.getOrDefault(snapshot, Collections.emptySet()));
+        return pending;
+    }
+
+    /**
+     * @param acks snapshot -> sinks that acked it.
+     * @return the snapshots every registered sink acked.
+     */
+    public Set<String> released(final Map<String, Set<String>> acks) {
+        Set<String> released = new HashSet<>();
+        for (String snapshot : acks.keySet()) {
+            if (pending(snapshot, acks).isEmpty()) {
+                released.add(snapshot);
+            }
+        }
+        return released;
+    }
+}
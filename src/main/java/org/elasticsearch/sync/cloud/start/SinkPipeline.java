@@ -0,0 +1,50 @@
+package org.elasticsearch.sync.cloud.start;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Background stages of the sink. The cluster restores one snapshot at a time, but once the primaries of a
+ * snapshot are restored, waiting for its replicas (green) and deleting it from the storage can overlap with
+ * the restore of the next snapshot. At most maxStages snapshots are restoring or in the background at a time:
+ * the sink takes a slot with {@link #acquire} before it closes the indices and starts the restore, and blocks
+ * there till an earlier snapshot completes. The stages themselves are run by {@link SinkStages}, they hold no
+ * thread while the cluster works and release the slot when complete or failed.
+ */
+public class SinkPipeline {
+
+    private final Semaphore permits;
+    //snapshots with a stage still running, the sink must not restore these again.
+    private final Set<String> pending = ConcurrentHashMap.newKeySet();
+
+    public SinkPipeline(final int maxStages) {
+        this.permits = new Semaphore(maxStages);
+    }
+
+    public boolean isPending(final String snapshot) {
+        return pending.contains(snapshot);
+    }
+
+    /**
+     * Takes a slot for the snapshot, before its restore starts. Blocks while maxStages snapshots hold one.
+     * @return releases the slot, once however often it runs. Run it if the restore is not started, or from the
+     * last background stage.
+     */
+    public Runnable acquire(final String snapshot) throws InterruptedException {
+        permits.acquire();
+        pending.add(snapshot);
+        AtomicBoolean completed = new AtomicBoolean();
+        return () -> {
+            if (completed.compareAndSet(false, true)) {
+                pending.remove(snapshot);
+                permits.release();
+            }
+        };
+    }
+
+    public int pendingCount() {
+        return pending.size();
+    }
+}
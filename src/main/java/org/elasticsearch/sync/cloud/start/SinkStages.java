@@ -0,0 +1,221 @@
+package org.elasticsearch.sync.cloud.start;
+
+import org.apache.logging.log4j.Logger;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.common.logging.ESLoggerFactory;
+import org.elasticsearch.sync.cloud.handoff.HandoffManifest;
+import org.elasticsearch.sync.cloud.status.SyncStats;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The stages of each snapshot on the sink, and the one it reached: the restore, the steps on the restored
+ * indices, the green wait, the verification and the delete. A failed stage is run again alone after a growing
+ * wait, a snapshot restored once is never restored again over its open indices. The stages after the restore
+ * run in the background, holding the slot of the snapshot in the {@link SinkPipeline}.
+ * Runs on the sink thread, the background stages complete on other threads.
+ */
+public class SinkStages {
+
+    public enum Stage {
+        RESTORE, SETTLE, GREEN, VERIFY, DELETE
+    }
+
+    /**
+     * The sink cluster, see StartAtSinkThread.
+     */
+    public interface Sink {
+        /**
+         * Closes the indices of an incremental sync and restores the primaries.
+         * @return false if the snapshot was not restored, the restore is tried again on the next pass.
+         */
+        boolean restore(HandoffManifest.Entry snapshot) throws IOException;
+
+        /**
+         * @return index -> bytes restored, read before the steps on the restored indices.
+         */
+        Map<String, Long> restoredSizes(HandoffManifest.Entry snapshot) throws IOException;
+
+        /**
+         * The steps on the restored indices before the green wait, e.g. the write blocks and target settings.
+         * @return bytes restored.
+         */
+        long settle(HandoffManifest.Entry snapshot) throws IOException;
+
+        void waitForGreen(HandoffManifest.Entry snapshot, ActionListener<Void> listener);
+
+        /**
+         * The listener gets the figures that differ from the checks of the source, see {@link HandoffManifest.Entry#getChecks}.
+         */
+        void verify(HandoffManifest.Entry snapshot, Map<String, Long> restoredSizes, ActionListener<List<String>> listener);
+
+        void delete(HandoffManifest.Entry snapshot, ActionListener<Boolean> listener);
+
+        /**
+         * The snapshot went through its stages, to be acked.
+         */
+        void finished(String snapshot);
+
+        /**
+         * The restored indices do not match the source, the snapshot is kept.
+         */
+        void mismatched(String snapshot, String reason);
+    }
+
+    /**
+     * What a snapshot reached. Changed by one stage at a time, the slot of the snapshot orders them.
+     */
+    private static class Progress {
+        volatile Stage stage = Stage.RESTORE;
+        volatile long restoreStart;
+        volatile Map<String, Long> restoredSizes = Collections.emptyMap();
+        volatile long bytes;
+        //wait after the last failure, 0 till a stage fails.
+        volatile long retryMillis;
+        volatile long retryAt;
+    }
+
+    private final Logger logger = ESLoggerFactory.getLogger(SinkStages.class);
+
+    private final Sink sink;
+    private final SyncStats stats;
+    //false for a named sink of a fan-out, the source deletes once all sinks acked.
+    private final boolean deletes;
+    private final long minRetryMillis;
+    private final Map<String, Progress> progress = new ConcurrentHashMap<>();
+
+    public SinkStages(final Sink sink, final SyncStats stats, final boolean deletes, final long minRetryMillis) {
+        this.sink = sink;
+        this.stats = stats;
+        this.deletes = deletes;
+        this.minRetryMillis = minRetryMillis;
+    }
+
+    /**
+     * @return the stage the snapshot runs next.
+     */
+    public Stage stageOf(final String snapshot) {
+        Progress reached = progress.get(snapshot);
+        return reached == null ? Stage.RESTORE : reached.stage;
+    }
+
+    /**
+     * @return false while the wait after a failed stage of the snapshot runs.
+     */
+    public boolean isDue(final String snapshot) {
+        Progress reached = progress.get(snapshot);
+        return reached == null || System.currentTimeMillis() >= reached.retryAt;
+    }
+
+    /**
+     * Forgets the snapshots no longer in the manifest.
+     */
+    public void retain(final Set<String> snapshots) {
+        progress.keySet().retainAll(snapshots);
+    }
+
+    /**
+     * Runs the snapshot from the stage it reached: the restore and the steps on the restored indices here,
+     * then the stages in the background.
+     * @param done releases the slot of the snapshot in the pipeline, run by the last stage.
+     * @return true if the background stages were started, false if done is left to the caller.
+     */
+    public boolean run(final HandoffManifest.Entry snapshot, final Runnable done) {
+        String name = snapshot.getName();
+        Progress reached = progress.computeIfAbsent(name, key -> new Progress());
+        try {
+            if (reached.stage == Stage.RESTORE) {
+                reached.restoreStart = System.currentTimeMillis();
+                if (!sink.restore(snapshot)) {
+                    return false;
+                }
+                reached.stage = Stage.SETTLE;
+            }
+            if (reached.stage == Stage.SETTLE) {
+                //before the target settings, a relocated primary no longer shows its restore.
+                reached.restoredSizes = snapshot.getChecks().isEmpty() ? Collections.emptyMap()
+                        : sink.restoredSizes(snapshot);
+                reached.bytes = sink.settle(snapshot);
+                stats.record(SyncStats.Phase.RESTORE, System.currentTimeMillis() - reached.restoreStart, reached.bytes);
+                reached.stage = Stage.GREEN;
+            }
+        } catch (IOException | RuntimeException ex) {
+            failed(name, reached, ex);
+            return false;
+        }
+        next(snapshot, reached, done);
+        return true;
+    }
+
+    private void next(final HandoffManifest.Entry snapshot, final Progress reached, final Runnable done) {
+        String name = snapshot.getName();
+        long start = System.currentTimeMillis();
+        switch (reached.stage) {
+            case GREEN:
+                sink.waitForGreen(snapshot, ActionListener.wrap(green -> {
+                    stats.record(SyncStats.Phase.GREEN, System.currentTimeMillis() - start, reached.bytes);
+                    reached.stage = Stage.VERIFY;
+                    next(snapshot, reached, done);
+                }, ex -> failed(name, reached, ex, done)));
+                break;
+            case VERIFY:
+                if (snapshot.getChecks().isEmpty()) {
+                    reached.stage = Stage.DELETE;
+                    next(snapshot, reached, done);
+                    break;
+                }
+                sink.verify(snapshot, reached.restoredSizes, ActionListener.wrap(mismatches -> {
+                    stats.record(SyncStats.Phase.VERIFY, System.currentTimeMillis() - start, reached.bytes);
+                    if (!mismatches.isEmpty()) {
+                        progress.remove(name);
+                        sink.mismatched(name, String.join("; ", mismatches));
+                        done.run();
+                        return;
+                    }
+                    reached.stage = Stage.DELETE;
+                    next(snapshot, reached, done);
+                }, ex -> failed(name, reached, ex, done)));
+                break;
+            case DELETE:
+                if (!deletes) {
+                    //the other sinks may not have restored it yet.
+                    completed(name, done);
+                    break;
+                }
+                sink.delete(snapshot, ActionListener.wrap(deleted -> {
+                    stats.record(SyncStats.Phase.DELETE, System.currentTimeMillis() - start, reached.bytes);
+                    completed(name, done);
+                }, ex -> failed(name, reached, ex, done)));
+                break;
+            default:
+                throw new IllegalStateException("cloud-sync Invalid stage [" + reached.stage + "] of snapshot [" + name + "].");
+        }
+    }
+
+    private void completed(final String snapshot, final Runnable done) {
+        progress.remove(snapshot);
+        sink.finished(snapshot);
+        done.run();
+    }
+
+    private void failed(final String snapshot, final Progress reached, final Exception ex, final Runnable done) {
+        failed(snapshot, reached, ex);
+        done.run();
+    }
+
+    /**
+     * The stage is run again after the wait, the stages before it are not.
+     */
+    private void failed(final String snapshot, final Progress reached, final Exception ex) {
+        reached.retryMillis = reached.retryMillis <= 0 ? minRetryMillis
+                : Math.min(AbstractStartThread.maxRetryMillis, reached.retryMillis * 2);
+        reached.retryAt = System.currentTimeMillis() + reached.retryMillis;
+        logger.error("cloud-sync " + reached.stage + " stage of snapshot [" + snapshot + "] failed, retrying in "
+                + reached.retryMillis + " ms.", ex);
+    }
+}
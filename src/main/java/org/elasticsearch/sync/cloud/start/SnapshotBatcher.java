@@ -0,0 +1,91 @@
+package org.elasticsearch.sync.cloud.start;
+
+import org.elasticsearch.sync.cloud.utils.IndexInfo;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Packs READY indices into one snapshot up to a target size. Every snapshot pays a fixed cost on both
+ * clusters (cluster state updates, repository metadata, a restore/green/delete round on the sink), so
+ * small indices are cheaper to move together.
+ *
+ * Snapshot throughput is bound per node, so the batch also keeps the primaries it takes balanced over the
+ * data nodes: an index is skipped for this batch if it would put more than its share of the batch on a node.
+ */
+public final class SnapshotBatcher {
+
+    private final long batchSizeInBytes;
+
+    public SnapshotBatcher(final long batchSizeInBytes) {
+        this.batchSizeInBytes = batchSizeInBytes;
+    }
+
+    /**
+     * @param ready READY indices, in the order they should be synced.
+     * @param primaryBytes per index, the primary shard bytes held by each node. Indices missing here are
+     *                     packed by size only.
+     * @return the indices for the next snapshot. Never empty if ready is not empty.
+     */
+    public List<IndexInfo> nextBatch(final List<IndexInfo> ready, final Map<String, Map<String, Long>> primaryBytes) {
+        if (ready.isEmpty()) {
+            return Collections.emptyList();
+        }
+        IndexInfo first = ready.get(0);
+        List<IndexInfo> batch = new ArrayList<>();
+        batch.add(first);
+
+        Set<String> nodes = new HashSet<>();
+        for (IndexInfo indexInfo : ready) {
+            nodes.addAll(nodeBytes(indexInfo, primaryBytes).keySet());
+        }
+        Map<String, Long> load = new HashMap<>(nodeBytes(first, primaryBytes));
+        long perNodeCap = Math.max(batchSizeInBytes / Math.max(1, nodes.size()), max(load));
+        long total = first.getSizeInBytes();
+
+        for (int i = 1; i < ready.size() && total < batchSizeInBytes; i++) {
+            IndexInfo candidate = ready.get(i);
+            if (total + candidate.getSizeInBytes() > batchSizeInBytes) {
+                continue;
+            }
+            Map<String, Long> candidateBytes = nodeBytes(candidate, primaryBytes);
+            if (!fits(load, candidateBytes, perNodeCap)) {
+                continue;
+            }
+            for (Map.Entry<String, Long> entry : candidateBytes.entrySet()) {
+                load.merge(entry.getKey(), entry.getValue(), Long::sum);
+            }
+            total += candidate.getSizeInBytes();
+            batch.add(candidate);
+        }
+        return batch;
+    }
+
+    private static boolean fits(Map<String, Long> load, Map<String, Long> candidateBytes, long perNodeCap) {
+        for (Map.Entry<String, Long> entry : candidateBytes.entrySet()) {
+            long current = load.getOrDefault(entry.getKey(), 0L);
+            if (current + entry.getValue() > perNodeCap) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static Map<String, Long> nodeBytes(IndexInfo indexInfo, Map<String, Map<String, Long>> primaryBytes) {
+        Map<String, Long> bytes = primaryBytes.get(indexInfo.getName());
+        return bytes == null ? Collections.emptyMap() : bytes;
+    }
+
+    private static long max(Map<String, Long> load) {
+        long max = 0;
+        for (Long bytes : load.values()) {
+            max = Math.max(max, bytes);
+        }
+        return max;
+    }
+}
@@ -1,56 +1,334 @@
 package org.elasticsearch.sync.cloud.start;
 
 import org.apache.logging.log4j.Logger;
+import org.elasticsearch.action.ActionListener;
 import org.elasticsearch.common.logging.ESLoggerFactory;
+import org.elasticsearch.snapshots.ConcurrentSnapshotExecutionException;
+import org.elasticsearch.snapshots.SnapshotMissingException;
 import org.elasticsearch.sync.cloud.elastic.ElasticClient;
+import org.elasticsearch.sync.cloud.elastic.IndexChecks;
+import org.elasticsearch.sync.cloud.elastic.RepositoryAccess;
+import org.elasticsearch.sync.cloud.handoff.HandoffManifest;
+import org.elasticsearch.sync.cloud.handoff.HandoffStore;
+import org.elasticsearch.sync.cloud.status.SyncStats;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Background thread to restore snapshots. Runs only on the sink (cluster).
- *
+ * Restores run one after the other, the green wait and the snapshot delete of
+ * each restore run in the background {@link SinkPipeline}, which holds a slot for each snapshot from
+ * before its restore till its last stage. With a {@link RestoreProfile}, the target
+ * settings are applied once the primaries are restored, before the green wait. Snapshots with checks recorded
+ * by the source are verified after the green wait, a snapshot failing verification is not deleted and gets a
+ * failure marker, skipped till the marker is deleted. A failed stage of a snapshot is retried alone after a
+ * growing wait, see {@link SinkStages}, the other snapshots go on.
+ * A restore refused while the delete of a previous snapshot runs (one of them at a time in the cluster) is
+ * tried again once the delete ends, without that wait.
+ * Snapshots to restore are read from the manifest of the source, see {@link HandoffStore}. A named sink
+ * of a {@link SinkFanOut} acks with its name and leaves the delete to the source. A sink the manifest does not
+ * list, e.g. an unnamed one while the source has named sinks, does not restore.
  */
-public class StartAtSinkThread extends AbstractStartThread implements Runnable {
+public class StartAtSinkThread extends AbstractStartThread {
 
     private final Logger logger = ESLoggerFactory.getLogger(StartAtSinkThread.class);
     private static final int sleepIntervalMSecs = 10000;
 
-    public StartAtSinkThread(final ElasticClient client, final StartInfo startInfo){
+    private final SinkPipeline pipeline;
+    private final SinkStages stages;
+    private final SyncStats stats;
+    private final RepositoryAccess repositoryAccess;
+    //null, if indices are restored with the settings of the source.
+    private final RestoreProfile profile;
+    //null, if this sink deletes the snapshots it restored.
+    private final String sinkName;
+    //deleted by a stage, the ack is written by this thread.
+    private final Set<String> finished = ConcurrentHashMap.newKeySet();
+    //acked, but maybe still in the manifest.
+    private final Set<String> done = ConcurrentHashMap.newKeySet();
+    //restored, but not verified (snapshot -> reason), the marker is written by this thread.
+    private final Map<String, String> failing = new ConcurrentHashMap<>();
+    //failure marker written. Kept in the storage, not acked.
+    private final Map<String, String> failed = new ConcurrentHashMap<>();
+
+    public StartAtSinkThread(final ElasticClient client, final StartInfo startInfo, final SyncStats stats,
+                             final RepositoryAccess repositoryAccess){
         super(client,startInfo);
+        this.pipeline = new SinkPipeline(startInfo.getMaxSinkStages());
+        this.stats = stats;
+        this.repositoryAccess = repositoryAccess;
+        this.profile = startInfo.getRestoreProfile();
+        this.sinkName = startInfo.getSinkName();
+        this.stages = new SinkStages(new SinkStages.Sink() {
+            @Override
+            public boolean restore(HandoffManifest.Entry snapshot) throws IOException {
+                return StartAtSinkThread.this.restore(snapshot);
+            }
+
+            @Override
+            public Map<String, Long> restoredSizes(HandoffManifest.Entry snapshot) throws IOException {
+                return client.restoredSizes(snapshot.getIndices().toArray(new String[0]));
+            }
+
+            @Override
+            public long settle(HandoffManifest.Entry snapshot) throws IOException {
+                return StartAtSinkThread.this.settle(snapshot);
+            }
+
+            @Override
+            public void waitForGreen(HandoffManifest.Entry snapshot, ActionListener<Void> listener) {
+                client.waitForIndexGreenStatus(snapshot.getIndices().toArray(new String[0]), listener);
+            }
+
+            @Override
+            public void verify(HandoffManifest.Entry snapshot, Map<String, Long> restoredSizes,
+                               ActionListener<List<String>> listener) {
+                StartAtSinkThread.this.verify(snapshot, restoredSizes, listener);
+            }
+
+            @Override
+            public void delete(HandoffManifest.Entry snapshot, ActionListener<Boolean> listener) {
+                client.deleteSnapshot(repository, snapshot.getName(), listener);
+            }
+
+            @Override
+            public void finished(String snapshot) {
+                finished.add(snapshot);
+            }
+
+            @Override
+            public void mismatched(String snapshot, String reason) {
+                failing.put(snapshot, reason);
+            }
+        }, stats, sinkName == null, minRetryMillis);
+        stats.setPendingStages(pipeline::pendingCount);
+        stats.setFailedSnapshots(() -> {
+            Map<String, String> failures = new HashMap<>(failed);
+            failures.putAll(failing);
+            return failures;
+        });
     }
 
     @Override
     public void run() {
-        try {
-            createRepository();
-        } catch (IOException ex){
-            logger.error("cloud-sync failed to create repository on the sink cluster. Exiting the snapshot restore thread.");
-            return;
-        }
         logger.info("cloud-sync starting snapshot restore thread.");
-
-        while (true) {
+        HandoffStore handoff = null;
+        long manifestGeneration = -1;
+        HandoffManifest manifest = HandoffManifest.empty();
+        long retryMillis = 0;
+        while (!isStopped()) {
             try {
-                List<String> snapshotNames = client.listSnapshots(repository);
-                for(String ssName : snapshotNames){
-                    String index = getIndexName(ssName);
-
-                    boolean ack = client.restoreSnapshot(repository, ssName);
-                    if(ack) {
-                        client.waitForIndexGreenStatus(index);
-                        client.deleteSnapshot(repository, ssName);
+                if (handoff == null) {
+                    createRepository();
+                    handoff = new HandoffStore(repositoryAccess.blobContainer(repository, HandoffStore.path));
+                }
+                long generation = client.getEvents().generation();
+                for (String ssName : finished) {
+                    if (sinkName == null) {
+                        handoff.ack(ssName);
+                    } else {
+                        handoff.ack(ssName, sinkName);
+                    }
+                    done.add(ssName);
+                    finished.remove(ssName);
+                }
+                for (Map.Entry<String, String> ss : failing.entrySet()) {
+                    handoff.fail(ss.getKey(), sinkName, ss.getValue());
+                    failed.put(ss.getKey(), ss.getValue());
+                    failing.remove(ss.getKey());
+                }
+                //one listing of the handoff blobs, the manifest is read only when the source published a new one.
+                long latest = handoff.latestGeneration();
+                if (latest != manifestGeneration && latest >= 0) {
+                    manifest = handoff.read(latest);
+                    manifestGeneration = latest;
+                    done.addAll(readAcks(handoff));
+                    done.retainAll(names(manifest));
+                    loadFailures(handoff, names(manifest));
+                    stages.retain(names(manifest));
+                }
+                //checked on every pass, nothing is restored till the source lists this sink.
+                if (manifestGeneration >= 0) {
+                    SinkFanOut.checkSink(sinkName, manifest.getSinks());
+                }
+                boolean restored = false;
+                //a snapshot holds one index, or a batch of them.
+                for(HandoffManifest.Entry ss : manifest.getSnapshots()){
+                    if (isStopped()) {
+                        break;
+                    }
+                    String ssName = ss.getName();
+                    if (pipeline.isPending(ssName) || finished.contains(ssName) || done.contains(ssName)
+                            || failing.containsKey(ssName) || failed.containsKey(ssName) || !stages.isDue(ssName)) {
+                        continue;
                     }
+                    //the slot bounds the snapshots restoring or in a background stage, taken before the restore.
+                    Runnable stageDone = pipeline.acquire(ssName);
+                    boolean started = false;
+                    try {
+                        started = stages.run(ss, stageDone);
+                    } finally {
+                        if (!started) {
+                            stageDone.run();
+                        }
+                    }
+                    restored |= started;
+                }
+                //new snapshots come from the source cluster, the interval is the fallback for that.
+                if (!restored) {
+                    client.getEvents().awaitChange(generation, sleepIntervalMSecs);
                 }
-                Thread.sleep(sleepIntervalMSecs);
+                retryMillis = 0;
+            } catch (InterruptedException ex) {
+                break;
             } catch (Exception ex) {
-                logger.error("cloud-sync Restore of snapshot failed !!!",ex);
+                if (isStopped()) {
+                    break;
+                }
+                //e.g. the storage or the sink cluster is unavailable.
+                retryMillis = nextRetryMillis(retryMillis);
+                logger.error("cloud-sync Restore of snapshot failed !!! Retrying in " + retryMillis + " ms.", ex);
+                try {
+                    Thread.sleep(retryMillis);
+                } catch (InterruptedException ie) {
+                    break;
+                }
+            }
+        }
+        logger.info("cloud-sync snapshot restore thread exited.");
+    }
+
+    /**
+     * Closes the indices of an incremental sync and restores the snapshot.
+     * @return false if the snapshot was not restored.
+     */
+    private boolean restore(final HandoffManifest.Entry ss) throws IOException {
+        String ssName = ss.getName();
+        String[] indices = ss.getIndices().toArray(new String[0]);
+        //incremental, restore over the previous sync of the indices.
+        if (startInfo.isIncremental() && !client.closeIndices(indices)) {
+            logger.error("cloud-sync failed to close indices of snapshot [{}] before restore.", ssName);
+            return false;
+        }
+        try {
+            return profile == null ? client.restoreSnapshot(repository, ssName)
+                    : client.restoreSnapshot(repository, ssName, profile.restoreSettings());
+        } catch (SnapshotMissingException ex) {
+            //deleted before a restart of the sink, before its ack was written.
+            logger.info("cloud-sync snapshot [{}] of the manifest is gone, acknowledging it.", ssName);
+            finished.add(ssName);
+            return false;
+        } catch (ConcurrentSnapshotExecutionException ex) {
+            //the delete stage of a previous snapshot, the end of the delete wakes the thread up.
+            logger.debug("cloud-sync restore of snapshot [{}] waits for a snapshot delete: {}", ssName, ex.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Removes the write blocks of the source and applies the target settings to the restored indices.
+     * @return bytes restored.
+     */
+    private long settle(final HandoffManifest.Entry ss) throws IOException {
+        for (String index : ss.getWriteBlocked()) {
+            //blocked by the source for the snapshot only.
+            client.updateIndexSettings(index, Collections.singletonMap(PreparePolicy.writeBlockKey, null));
+        }
+        if (profile != null) {
+            applyTargetSettings(ss);
+        }
+        return client.restoredBytes(ss.getIndices().toArray(new String[0]));
+    }
+
+    /**
+     * Compares the restored indices with the figures the source recorded at snapshot time, see {@link IndexChecks}.
+     * The listener gets the figures that differ, per index. If any, the snapshot is kept in the storage and not acked.
+     */
+    private void verify(final HandoffManifest.Entry snapshot, final Map<String, Long> restoredSizes,
+                        final ActionListener<List<String>> listener) {
+        Map<String, IndexChecks> expected = snapshot.getChecks();
+        int sampleSize = 0;
+        for (IndexChecks checks : expected.values()) {
+            sampleSize = Math.max(sampleSize, checks.getSampleSize());
+        }
+        client.readChecks(expected.keySet().toArray(new String[0]), sampleSize, ActionListener.wrap(actual -> {
+            List<String> failures = new ArrayList<>();
+            for (Map.Entry<String, IndexChecks> index : expected.entrySet()) {
+                IndexChecks restored = actual.get(index.getKey());
+                List<String> mismatches = restored == null ? Collections.singletonList("index is missing")
+                        : index.getValue().mismatches(restored.withSizeInBytes(restoredSizes.getOrDefault(index.getKey(), -1L)));
+                if (!mismatches.isEmpty()) {
+                    logger.error("cloud-sync restored index [{}] of snapshot [{}] does not match the source: {}. "
+                            + "The snapshot is kept.", index.getKey(), snapshot.getName(), mismatches);
+                    failures.add(index.getKey() + ": " + String.join(", ", mismatches));
+                }
+            }
+            listener.onResponse(failures);
+        }, listener::onFailure));
+    }
+
+    /**
+     * The primaries are restored with the profile, the indices get the settings of the source and the
+     * replicas of their age tier. Replicas recover during the green wait.
+     */
+    private void applyTargetSettings(final HandoffManifest.Entry snapshot) throws IOException {
+        String[] indices = snapshot.getIndices().toArray(new String[0]);
+        Map<String, Map<String, String>> created = client.getIndexSettings(indices, RestoreProfile.creationDateKey);
+        long now = System.currentTimeMillis();
+        for (String index : indices) {
+            String creationDate = created.getOrDefault(index, Collections.emptyMap()).get(RestoreProfile.creationDateKey);
+            long age = creationDate == null ? -1 : now - Long.parseLong(creationDate);
+            Map<String, String> target = profile.targetSettings(snapshot.getSettings(index), age);
+            if (!client.updateIndexSettings(index, target)) {
+                logger.error("cloud-sync failed to update the settings of restored index [{}] to {}.", index, target);
+            }
+        }
+    }
+
+    /**
+     * Reads the failure markers of this sink. Markers of snapshots no longer in the manifest are deleted.
+     */
+    private void loadFailures(final HandoffStore handoff, final Set<String> inManifest) throws IOException {
+        Map<String, String> markers = handoff.readFailures(sinkName);
+        failed.clear();
+        for (Map.Entry<String, String> marker : markers.entrySet()) {
+            if (inManifest.contains(marker.getKey())) {
+                failed.put(marker.getKey(), marker.getValue());
+            } else {
+                handoff.clearFailure(marker.getKey(), sinkName);
             }
         }
     }
 
-    private String getIndexName(String snapshot){
-        return snapshot.substring(snapshotNamePrefix.length(),snapshot.length());
+    /**
+     * @return the snapshots this sink acknowledged.
+     */
+    private Set<String> readAcks(final HandoffStore handoff) throws IOException {
+        if (sinkName == null) {
+            return handoff.readAcks();
+        }
+        Set<String> acks = new HashSet<>();
+        for (Map.Entry<String, Set<String>> snapshot : handoff.readSinkAcks().entrySet()) {
+            if (snapshot.getValue().contains(sinkName)) {
+                acks.add(snapshot.getKey());
+            }
+        }
+        return acks;
     }
 
-}
\ No newline at end of file
+    private static Set<String> names(HandoffManifest manifest) {
+        Set<String> names = new HashSet<>();
+        for (HandoffManifest.Entry entry : manifest.getSnapshots()) {
+            names.add(entry.getName());
+        }
+        return names;
+    }
+}
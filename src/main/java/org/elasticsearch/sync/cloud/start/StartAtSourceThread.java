@@ -3,88 +3,578 @@ package org.elasticsearch.sync.cloud.start;
 
 import org.apache.logging.log4j.Logger;
 import org.elasticsearch.common.logging.ESLoggerFactory;
+import org.elasticsearch.common.unit.ByteSizeValue;
+import org.elasticsearch.snapshots.SnapshotInfo;
+import org.elasticsearch.snapshots.SnapshotMissingException;
 import org.elasticsearch.sync.cloud.elastic.ElasticClient;
+import org.elasticsearch.sync.cloud.elastic.IndexChecks;
+import org.elasticsearch.sync.cloud.elastic.NodeLoad;
+import org.elasticsearch.sync.cloud.elastic.RepositoryAccess;
+import org.elasticsearch.sync.cloud.handoff.CatchUpStore;
+import org.elasticsearch.sync.cloud.handoff.HandoffManifest;
+import org.elasticsearch.sync.cloud.handoff.HandoffStore;
+import org.elasticsearch.sync.cloud.status.SyncStats;
 import org.elasticsearch.sync.cloud.utils.IndexInfo;
-import org.elasticsearch.sync.cloud.utils.Utils;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
 
 
-public class StartAtSourceThread extends AbstractStartThread implements Runnable  {
+public class StartAtSourceThread extends AbstractStartThread {
 
     private final Logger logger = ESLoggerFactory.getLogger(StartAtSourceThread.class);
     private static final int sleepIntervalMsecs = 10000;
+    //READY indices looked at when packing a batch.
+    private static final int maxBatchCandidates = 1000;
+    //how often a pause window is checked for its end.
+    private static final int windowCheckMsecs = 60000;
+    //window rate not applied since the repository was (maybe) registered again, any rate is applied.
+    private static final long unappliedRate = -2;
 
-    //'queue' size of the storage bucket. If current storage bucket size
-    // is equal to maxAllowedSnapshots. source wont add new snapshot to the storage.
-    private static final int maxAllowedSnapshots = 1;
+    //'queue' size of the storage bucket. If the snapshots in the storage use up the budget,
+    // source wont add new snapshot to the storage.
+    private final InFlightBudget budget;
+    //null, if each index gets its own snapshot.
+    private final SnapshotBatcher batcher;
+    //the state, loaded once, READY indices in snapshot order. Changes are flushed before the snapshot and the publish.
+    private final StateRegistry registry;
+    private final SyncStats stats;
+    private final RepositoryAccess repositoryAccess;
+    //null, if a single unnamed sink restores and deletes the snapshots.
+    private final SinkFanOut fanOut;
+    //snapshots handed over to the sink, published in the repository.
+    private HandoffStore handoff;
+    private HandoffManifest manifest;
+    //null, if documents written after the snapshots are not copied.
+    private CatchUpStore catchUp;
+    //snapshot rate set by a throttle window, -1 for the default rate of the repository.
+    private long windowRate = unappliedRate;
+    //last load sample and delay of the backoff.
+    private NodeLoad lastLoad;
+    private long backoffMillis = 0;
+    //incremental, a base was taken (or a previous run left bases) since the obsolete bases were deleted.
+    private boolean basesToPrune;
+    //every index is snapshotted, logged once.
+    private boolean idle = false;
 
 
-    public StartAtSourceThread(final ElasticClient client, final StartInfo startInfo){
+    public StartAtSourceThread(final ElasticClient client, final StartInfo startInfo, final SyncStats stats,
+                               final RepositoryAccess repositoryAccess){
         super(client,startInfo);
+        this.stats = stats;
+        this.repositoryAccess = repositoryAccess;
+        this.fanOut = startInfo.getSinks();
+        this.budget = new InFlightBudget(startInfo.getMaxInflightSnapshots(), startInfo.getMaxInflightBytes());
+        this.batcher = startInfo.isBatching() ? new SnapshotBatcher(startInfo.getBatchSizeInBytes()) : null;
+        this.registry = new StateRegistry(startInfo.getSchedule().comparator(startInfo.getPriorities()), client::writeState);
+        this.basesToPrune = startInfo.isIncremental();
     }
 
 
+    /**
+     * Loads the state and resumes what a previous run left in flight, then takes snapshots. A failure is
+     * logged and retried after a growing wait, with the state loaded again; only a stop ends the loop.
+     */
     @Override
     public void run() {
+        logger.info("cloud-sync starting snapshots thread on source thread.");
+        boolean resumed = false;
+        long retryMillis = 0;
+        while (!isStopped()) {
+            try {
+                if (!resumed) {
+                    createRepository();
+                    registry.load(client.readState());
+                    loadManifest();
+                    reconcile();
+                    resumed = true;
+                }
+                awaitGo();
+                if (isStopped()) {
+                    break;
+                }
+                if (!doSnapshot()) {
+                    awaitAcks();
+                }
+                retryMillis = 0;
+            } catch (InterruptedException ex) {
+                break;
+            } catch (Exception ex) {
+                if (isStopped()) {
+                    break;
+                }
+                retryMillis = nextRetryMillis(retryMillis);
+                logger.error("cloud-sync source thread failed, retrying in " + retryMillis + " ms.", ex);
+                //the next try starts from the state, in-flight snapshots are reconciled again.
+                flushState();
+                resumed = false;
+                //createRepository may register the repository again, without the rate of the window.
+                windowRate = unappliedRate;
+                try {
+                    Thread.sleep(retryMillis);
+                } catch (InterruptedException ie) {
+                    break;
+                }
+            }
+        }
+        flushState();
+        logger.info("cloud-sync snapshots thread exited.");
+    }
+
+    private void flushState() {
         try {
-            createRepository();
-        } catch (IOException ex){
-            logger.error("cloud-sync failed to create repository on the source cluster. Exiting the snapshot thread.", ex);
+            registry.flush();
+        } catch (Exception ex) {
+            logger.error("cloud-sync failed to write the state of the source.", ex);
+        }
+    }
+
+    /**
+     * Blocks while a pause window is open or the nodes are overloaded, see {@link MigrationWindows} and
+     * {@link LoadBackoff}. Without a throttle controller, this also sets the snapshot rate of a throttle window.
+     */
+    private void awaitGo() throws IOException, InterruptedException {
+        MigrationWindows windows = startInfo.getWindows();
+        LoadBackoff backoff = startInfo.getBackoff();
+        boolean paused = false;
+        while (!isStopped()) {
+            long now = System.currentTimeMillis();
+            MigrationWindows.Action action = windows.actionAt(now);
+            if (startInfo.getThrottle() == null) {
+                applyWindowRate(action == MigrationWindows.Action.THROTTLE ? windows.maxRateAt(now) : -1);
+            }
+            if (action == MigrationWindows.Action.PAUSE) {
+                if (!paused) {
+                    logger.info("cloud-sync pause window open, snapshots are on hold.");
+                    paused = true;
+                }
+                Thread.sleep(windowCheckMsecs);
+                continue;
+            }
+            if (backoff != null) {
+                NodeLoad load = client.sampleLoad();
+                backoffMillis = backoff.nextDelay(backoffMillis, lastLoad, load);
+                lastLoad = load;
+                if (backoffMillis > 0) {
+                    logger.info("cloud-sync source nodes overloaded, next snapshot in {} ms.", backoffMillis);
+                    Thread.sleep(backoffMillis);
+                    continue;
+                }
+            }
             return;
         }
-        logger.info("cloud-sync starting snapshots thread on source thread.");
+    }
 
-        while (true) {
-            try {
-                blockOnPending();
-                doSnapshot();
-                Thread.sleep(sleepIntervalMsecs);
-            } catch (IOException | InterruptedException ex) {
-                logger.error("cloud-sync source thread failed to take snapshot.", ex);
-                break;
+    /**
+     * Called between snapshots, the rate applies from the next snapshot on, see ElasticClient#updateRepositoryThrottle.
+     */
+    private void applyWindowRate(final long rate) throws IOException {
+        if (rate == windowRate) {
+            return;
+        }
+        logger.info("cloud-sync setting snapshot rate to {}.", rate > 0 ? new ByteSizeValue(rate) + "/s" : "the default");
+        if (client.updateRepositoryThrottle(startInfo.getStore(), repository, startInfo.getLocation(), rate, -1)) {
+            windowRate = rate;
+        }
+    }
+
+    /**
+     * Reads the last published manifest. Without one, e.g. on the first start, the manifest lists the
+     * snapshots already in the repository. Publishes it again if it does not list the named sinks of this run.
+     */
+    private void loadManifest() throws IOException {
+        handoff = new HandoffStore(repositoryAccess.blobContainer(repository, HandoffStore.path));
+        if (startInfo.getCatchUp() != null) {
+            catchUp = new CatchUpStore(repositoryAccess.blobContainer(repository, CatchUpStore.path));
+        }
+        manifest = handoff.readLatest();
+        if (manifest == null) {
+            Map<String, List<String>> snapshots = client.listSnapshotIndices(repository, snapshotNamePrefix);
+            Map<String, Long> sizes = new HashMap<>();
+            for (IndexInfo indexInfo : registry.ofSnapshots(snapshots.keySet())) {
+                sizes.merge(indexInfo.getSnapshot(), indexInfo.getSizeInBytes(), Long::sum);
+            }
+            List<HandoffManifest.Entry> entries = new ArrayList<>();
+            for (Map.Entry<String, List<String>> snapshot : snapshots.entrySet()) {
+                entries.add(new HandoffManifest.Entry(snapshot.getKey(), snapshot.getValue(),
+                        sizes.getOrDefault(snapshot.getKey(), 0L)));
+            }
+            manifest = new HandoffManifest(1, entries, sinks());
+            publish(manifest);
+        }
+        //the sinks check them against their sink_name.
+        HandoffManifest next = manifest.withSinks(sinks());
+        if (next != manifest) {
+            manifest = next;
+            publish(manifest);
+        }
+    }
+
+    /**
+     * Resumes what the previous source left in flight, see {@link InFlightRecovery}.
+     */
+    private void reconcile() throws IOException, InterruptedException {
+        InFlightRecovery recovery = new InFlightRecovery(new InFlightRecovery.Source() {
+            @Override
+            public SnapshotInfo getSnapshotInfo(String snapshot) throws IOException {
+                return client.getSnapshotInfo(repository, snapshot);
+            }
+
+            @Override
+            public Map<String, List<String>> listSnapshotIndices() throws IOException {
+                return client.listSnapshotIndices(repository, snapshotNamePrefix);
+            }
+
+            @Override
+            public void deleteSnapshot(String snapshot) throws IOException {
+                client.deleteSnapshot(repository, snapshot);
+            }
+
+            @Override
+            public void removeWriteBlock(String index) throws IOException {
+                client.updateIndexSettings(index, Collections.singletonMap(PreparePolicy.writeBlockKey, null));
+            }
+
+            @Override
+            public Map<String, IndexChecks> completeChecks(String snapshot, String[] indices,
+                                                           Map<String, IndexChecks> before) throws IOException {
+                return recordChecks(snapshot, indices, before);
+            }
+
+            @Override
+            public Map<String, Map<String, String>> getSettings(String[] indices) throws IOException {
+                return client.getIndexSettings(indices, RestoreProfile.sourceKeys);
             }
+        }, registry, handoff, sleepIntervalMsecs);
+        manifest = recovery.reconcile(manifest, readAcks());
+    }
+
+    private Collection<String> sinks() {
+        return fanOut == null ? Collections.emptyList() : fanOut.getSinks();
+    }
+
+    /**
+     * @return the snapshots the sink acknowledged, with named sinks those every sink acknowledged.
+     */
+    private Set<String> readAcks() throws IOException {
+        return fanOut == null ? handoff.readAcks() : fanOut.released(handoff.readSinkAcks());
+    }
+
+    /**
+     * Drops the snapshots the sink acknowledged from the manifest. Named sinks leave the snapshots
+     * in the repository, they are deleted here once every sink acknowledged them.
+     */
+    private void consumeAcks() throws IOException {
+        Set<String> acks = readAcks();
+        if (acks.isEmpty()) {
+            return;
+        }
+        if (fanOut != null) {
+            for (String snapshot : acks) {
+                try {
+                    client.deleteSnapshot(repository, snapshot);
+                } catch (SnapshotMissingException ex) {
+                    //deleted before a restart of the source, before the acks were cleared.
+                }
+                logger.info("cloud-sync snapshot [{}] restored by sinks {}, deleted.", snapshot, fanOut.getSinks());
+            }
+        }
+        HandoffManifest next = manifest.remove(acks);
+        if (next != manifest) {
+            for (HandoffManifest.Entry entry : manifest.getSnapshots()) {
+                if (acks.contains(entry.getName())) {
+                    stats.getProgress().complete(entry.getIndices().size(), entry.getSizeInBytes());
+                    beginCatchUp(entry);
+                }
+            }
+            publish(next);
+            manifest = next;
+        }
+        if (fanOut == null) {
+            handoff.clearAcks(acks);
+        } else {
+            handoff.clearSinkAcks(acks, fanOut.getSinks());
+        }
+    }
+
+    /**
+     * The indices of the snapshot are on the sink, {@link CatchUpSourceThread} copies what was written since.
+     */
+    private void beginCatchUp(final HandoffManifest.Entry entry) throws IOException {
+        if (catchUp == null || entry.getStartTime() <= 0) {
+            return;
+        }
+        for (String index : entry.getIndices()) {
+            catchUp.begin(index, entry.getStartTime());
         }
     }
 
     /**
-     * If more than the 'maxAllowedSnapshots' snapshots are present in the storage,
-     * this blocks till those are cleared. Similar to a bounded queue.
+     * If the snapshots handed over to the sink use up the in-flight budget,
+     * this blocks till the sink acknowledges enough of them. Similar to a bounded queue.
      */
-    private void blockOnPending() throws InterruptedException {
+    private void blockOnPending(final long nextSizeInBytes) throws IOException, InterruptedException {
         while(true) {
-            int count = client.snapshotsCount(repository, "_all");
-            if (count >= maxAllowedSnapshots) {
-                Thread.sleep(sleepIntervalMsecs);
+            long generation = client.getEvents().generation();
+            consumeAcks();
+            pruneBases();
+            if (!budget.hasRoom(manifest.getSnapshots().size(), manifest.getSizeInBytes(), nextSizeInBytes)) {
+                //the sink acks from the other cluster, the interval is the fallback for that.
+                client.getEvents().awaitChange(generation, sleepIntervalMsecs);
             } else {
                 break;
             }
         }
     }
 
-    private void doSnapshot() throws IOException {
-        String json = client.readState();
-        List<IndexInfo> listSS = Utils.toSnapshots(json);
-        List<IndexInfo> filtered = Utils.sortAndFilter(listSS, IndexInfo.State.READY);
-        if(filtered.size() == 0 ) {
-            logger.info("cloud-sync - no indices remaining to sync.");
-            throw new IOException("No indices remaining to sync.");
+    /**
+     * With every index snapshotted, the manifest still has to be drained: acks are consumed (catch-up begins,
+     * bases are pruned) till the sink restored everything.
+     */
+    private void awaitAcks() throws IOException, InterruptedException {
+        long generation = client.getEvents().generation();
+        consumeAcks();
+        pruneBases();
+        //the sink acks from the other cluster, the interval is the fallback for that.
+        client.getEvents().awaitChange(generation, sleepIntervalMsecs);
+    }
+
+    /**
+     * @return false if no index is left to snapshot.
+     */
+    private boolean doSnapshot() throws IOException, InterruptedException {
+        if (!registry.hasReady()) {
+            if (!idle) {
+                logger.info("cloud-sync - no indices remaining to sync.");
+                idle = true;
+            }
+            return false;
+        }
+        idle = false;
+
+        List<IndexInfo> batch = nextBatch();
+        String snapshot = snapshotNamePrefix + batch.get(0).getName();
+        String[] indices = new String[batch.size()];
+        long batchSizeInBytes = 0;
+        for (int i = 0; i < batch.size(); i++) {
+            indices[i] = batch.get(i).getName();
+            batchSizeInBytes += batch.get(i).getSizeInBytes();
         }
+        blockOnPending(batchSizeInBytes);
 
-        IndexInfo first = filtered.get(0);
         //update the state to in-progress
-        writeState(new IndexInfo(first.getName(),first.getSizeInBytes(), IndexInfo.State.SNAPSHOT_INPROGRESS), listSS);
+        batch = registry.move(batch, IndexInfo.State.SNAPSHOT_INPROGRESS, snapshot);
+        //a restart finds the snapshot through the state, see reconcile().
+        registry.flush();
+        stats.getProgress().move(IndexInfo.State.READY, IndexInfo.State.SNAPSHOT_INPROGRESS,
+                batch.size(), batchSizeInBytes);
 
-        //take snapshot
-        client.takeSnapshot(repository, snapshotNamePrefix +first.getName(),first.getName());
+        List<String> writeBlocked = new ArrayList<>();
+        Map<String, IndexChecks> before = null;
+        long start;
+        try {
+            prepare(snapshot, batch, writeBlocked);
+            if (startInfo.isVerifying()) {
+                client.refresh(indices);
+                before = client.readChecks(indices, startInfo.getVerifySampleSize());
+                recordInFlight(snapshot, batch, writeBlocked, before);
+            }
+            //take snapshot, returns once the snapshot is complete.
+            logger.info("cloud-sync taking snapshot [{}] of {} indices.", snapshot, indices.length);
+            start = System.currentTimeMillis();
+            client.takeSnapshot(repository, snapshot, indices);
+        } finally {
+            for (String index : writeBlocked) {
+                client.updateIndexSettings(index, Collections.singletonMap(PreparePolicy.writeBlockKey, null));
+            }
+        }
+        stats.record(SyncStats.Phase.SNAPSHOT, System.currentTimeMillis() - start, batchSizeInBytes);
 
         //update state to snapshot done
-        writeState(new IndexInfo(first.getName(),first.getSizeInBytes(), IndexInfo.State.SNAPSHOTED),listSS);
+        registry.move(batch, IndexInfo.State.SNAPSHOTED, snapshot);
+        stats.getProgress().move(IndexInfo.State.SNAPSHOT_INPROGRESS, IndexInfo.State.SNAPSHOTED,
+                batch.size(), batchSizeInBytes);
+        Map<String, IndexChecks> checks = before == null ? Collections.emptyMap() : recordChecks(snapshot, indices, before);
+        manifest = manifest.add(new HandoffManifest.Entry(snapshot, Arrays.asList(indices), batchSizeInBytes, start,
+                client.getIndexSettings(indices, RestoreProfile.sourceKeys), writeBlocked, checks));
+        publish(manifest);
+        handoff.clearInFlight(snapshot);
+
+        if (startInfo.isIncremental()) {
+            keepBase(snapshot, indices);
+        }
+        return true;
+    }
+
+    /**
+     * Write blocks, flushes and force merges the cold indices of the batch, see {@link PreparePolicy}.
+     * Merges run one index at a time, with a pause after each to keep to the merge rate.
+     * @param blocked gets the indices write blocked here, the block is removed once the snapshot is taken.
+     */
+    private void prepare(final String snapshot, final List<IndexInfo> batch, final List<String> blocked)
+            throws IOException, InterruptedException {
+        PreparePolicy policy = startInfo.getPrepare();
+        if (policy == null) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        List<IndexInfo> cold = new ArrayList<>();
+        for (IndexInfo indexInfo : batch) {
+            if (policy.isCold(indexInfo, now)) {
+                cold.add(indexInfo);
+            }
+        }
+        if (cold.isEmpty()) {
+            return;
+        }
+        String[] names = new String[cold.size()];
+        for (int i = 0; i < cold.size(); i++) {
+            names[i] = cold.get(i).getName();
+        }
+        Map<String, Map<String, String>> current = client.getIndexSettings(names, PreparePolicy.writeBlockKey);
+        List<String> toBlock = new ArrayList<>();
+        for (String index : names) {
+            Map<String, String> settings = current.getOrDefault(index, Collections.emptyMap());
+            if (!"true".equals(settings.get(PreparePolicy.writeBlockKey))) {
+                toBlock.add(index);
+            }
+        }
+        if (!toBlock.isEmpty()) {
+            //recorded first, a restarted source removes the blocks.
+            recordInFlight(snapshot, batch, toBlock, Collections.emptyMap());
+        }
+        for (String index : toBlock) {
+            if (client.updateIndexSettings(index, Collections.singletonMap(PreparePolicy.writeBlockKey, "true"))) {
+                blocked.add(index);
+            }
+        }
+        if (!client.flush(names)) {
+            logger.warn("cloud-sync flush of cold indices {} failed on some shards.", Arrays.toString(names));
+        }
+        if (!policy.isMerging()) {
+            return;
+        }
+        Map<String, Long> segments = client.getMaxSegmentsPerShard(names);
+        for (IndexInfo indexInfo : cold) {
+            if (isStopped() || segments.getOrDefault(indexInfo.getName(), 0L) <= policy.getMaxNumSegments()) {
+                continue;
+            }
+            logger.info("cloud-sync force merging cold index [{}] to {} segments per shard.",
+                    indexInfo.getName(), policy.getMaxNumSegments());
+            long start = System.currentTimeMillis();
+            if (!client.forceMerge(new String[]{indexInfo.getName()}, policy.getMaxNumSegments())) {
+                logger.warn("cloud-sync force merge of index [{}] failed on some shards.", indexInfo.getName());
+            }
+            Thread.sleep(policy.pauseMillis(indexInfo.getSizeInBytes(), System.currentTimeMillis() - start));
+        }
+    }
+
+    /**
+     * Records the write blocks and checks of the snapshot about to be taken, a restarted source publishes
+     * the snapshot with them, see {@link InFlightRecovery}.
+     */
+    private void recordInFlight(final String snapshot, final List<IndexInfo> batch, final List<String> writeBlocked,
+                                final Map<String, IndexChecks> before) throws IOException {
+        List<String> indices = new ArrayList<>(batch.size());
+        long sizeInBytes = 0;
+        for (IndexInfo indexInfo : batch) {
+            indices.add(indexInfo.getName());
+            sizeInBytes += indexInfo.getSizeInBytes();
+        }
+        handoff.writeInFlight(new HandoffManifest.Entry(snapshot, indices, sizeInBytes, 0, Collections.emptyMap(),
+                writeBlocked, before));
     }
 
-    private void writeState(IndexInfo modified, List<IndexInfo> list) throws IOException {
-        List<IndexInfo> listSS = Utils.replace(modified,list);
-        client.writeState(Utils.toJson(listSS));
+    /**
+     * Figures of the snapshotted indices for the sink to verify the restore with, see {@link IndexChecks}.
+     * Documents and sample are read before and after the snapshot, only the size is kept for an index
+     * that changed in between: the snapshot holds one of the two, the sink could not tell which.
+     */
+    private Map<String, IndexChecks> recordChecks(final String snapshot, final String[] indices,
+                                                  final Map<String, IndexChecks> before) throws IOException {
+        client.refresh(indices);
+        Map<String, IndexChecks> after = client.readChecks(indices, startInfo.getVerifySampleSize());
+        Map<String, Long> sizes = client.snapshotSizes(repository, snapshot);
+        Map<String, IndexChecks> checks = new HashMap<>();
+        for (String index : indices) {
+            IndexChecks indexChecks = after.get(index);
+            IndexChecks previous = before.get(index);
+            if (indexChecks == null) {
+                continue;
+            }
+            indexChecks = indexChecks.withSizeInBytes(sizes.getOrDefault(index, -1L));
+            if (previous == null || !previous.getShardDocs().equals(indexChecks.getShardDocs())
+                    || !Objects.equals(previous.getSampleHash(), indexChecks.getSampleHash())) {
+                logger.info("cloud-sync index [{}] was written while snapshotted, only its size is verified.", index);
+                indexChecks = indexChecks.sizeOnly();
+            }
+            checks.put(index, indexChecks);
+        }
+        return checks;
+    }
+
+    /**
+     * The sink deletes the snapshot once restored, which would also drop its files from the storage. A second
+     * snapshot of the same indices shares all of those files (no upload), and is kept till the next sync of the
+     * indices: the next snapshot then uploads only the segments written since.
+     * Older bases are deleted by {@link #pruneBases}.
+     */
+    private void keepBase(final String snapshot, final String[] indices) throws IOException {
+        String base = baseSnapshotNamePrefix + snapshot.substring(snapshotNamePrefix.length()) + "_" + System.currentTimeMillis();
+        client.takeSnapshot(repository, base, indices);
+        basesToPrune = true;
+        pruneBases();
+    }
+
+    /**
+     * Deletes the bases whose indices all have a newer base, see {@link BaseRetention}. A snapshot delete
+     * rewrites the index blobs of the repository the sink restores from, so bases are deleted only while the
+     * manifest is empty, i.e. the sink has nothing to restore.
+     */
+    private void pruneBases() throws IOException {
+        if (!basesToPrune || !manifest.getSnapshots().isEmpty()) {
+            return;
+        }
+        for (String base : BaseRetention.obsolete(client.listSnapshotIndices(repository, baseSnapshotNamePrefix))) {
+            try {
+                client.deleteSnapshot(repository, base);
+                logger.info("cloud-sync base snapshot [{}] is superseded by newer bases of its indices, deleted.", base);
+            } catch (SnapshotMissingException ex) {
+                //deleted by a previous run.
+            }
+        }
+        basesToPrune = false;
+    }
+
+    private List<IndexInfo> nextBatch() throws IOException {
+        if (batcher == null) {
+            return registry.poll(1);
+        }
+        List<IndexInfo> candidates = registry.poll(maxBatchCandidates);
+        String[] names = new String[candidates.size()];
+        for (int i = 0; i < candidates.size(); i++) {
+            names[i] = candidates.get(i).getName();
+        }
+        List<IndexInfo> batch = batcher.nextBatch(candidates, client.getPrimaryShardBytes(names));
+        List<IndexInfo> left = new ArrayList<>(candidates);
+        left.removeAll(batch);
+        registry.putBack(left);
+        return batch;
+    }
+
+    /**
+     * Publishes the manifest to the sink once the state changes behind it are written.
+     */
+    private void publish(final HandoffManifest next) throws IOException {
+        registry.flush();
+        handoff.publish(next);
     }
 }
@@ -1,10 +1,13 @@
 package org.elasticsearch.sync.cloud.start;
 
+import org.elasticsearch.common.unit.ByteSizeValue;
 import org.elasticsearch.common.xcontent.XContentHelper;
 import org.elasticsearch.common.xcontent.json.JsonXContent;
 
 import java.io.IOException;
+import java.util.HashMap;
 import java.util.InputMismatchException;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -14,6 +17,22 @@ import java.util.Map;
  *     "store" : "fs" / "aws-s3"/ "gcs"
  *     "indices" : "logs-*",
  *     "location": "/mount/backup", in case of s3 and gcs it bucket names.
+ *     "max_inflight_snapshots" : 1,  (optional) snapshots allowed in the storage before the source blocks.
+ *     "max_inflight_bytes" : "500gb" (optional) total index size allowed in the storage before the source blocks.
+ *     "batch_size" : "10gb" (optional) packs indices into snapshots of up to this size. One index per snapshot if not set.
+ *     "max_sink_stages" : 2 (optional, sink) snapshots restoring or waiting for green/delete in the background.
+ *     "incremental" : true (optional, source and sink) keeps a base snapshot of each index, re-syncs copy only new segments.
+ *     "schedule" : "name" (optional) order of the indices: name, smallest_first, largest_first, newest_first or weighted.
+ *     "priorities" : {"logs-prod-*" : 10} (optional) pattern weights for the weighted schedule.
+ *     "throttle" : {...} (optional) adapts the repository snapshot/restore rate to the cluster load, see {@link ThrottlePolicy}.
+ *     "windows" : [...] (optional, source) times to throttle or pause the snapshots, "timezone" for their times, see {@link MigrationWindows}.
+ *     "prepare" : {...} (optional, source) write blocks, flushes and force merges cold indices before their snapshot, see {@link PreparePolicy}.
+ *     "verify" : {"sample_size" : 100} (optional, source) records doc counts, sizes and a sample hash the sink verifies the restore with.
+ *     "restore_profile" : {...} (optional, sink) index settings of the restore and target settings after it, see {@link RestoreProfile}.
+ *     "catch_up" : {...} (optional, source and sink) copies documents written after the snapshot of an index, see {@link CatchUpPolicy}.
+ *     "backoff" : {...} (optional, source) holds snapshots back while the nodes reject or queue live requests, see {@link LoadBackoff}.
+ *     "sinks" : ["us_east", "eu_west"] (optional, source) named sinks each snapshot is restored by before it is deleted, see {@link SinkFanOut}.
+ *     "sink_name" : "us_east" (optional, sink) name of this sink in the "sinks" of the source.
  * }
  */
 
@@ -24,6 +43,30 @@ final public class StartInfo {
     private String indices;
     private String store;
     private String location;
+    private int maxInflightSnapshots = 1;
+    private long maxInflightBytes = Long.MAX_VALUE;
+    private long batchSizeInBytes = 0;
+    private int maxSinkStages = 2;
+    private boolean incremental = false;
+    private SchedulingPolicy schedule = SchedulingPolicy.NAME;
+    private Map<String, Integer> priorities = new HashMap<>();
+    //null, if the repository runs with fixed throttles.
+    private ThrottlePolicy throttle;
+    private MigrationWindows windows = MigrationWindows.none();
+    //null, if the source does not back off on load.
+    private LoadBackoff backoff;
+    //null, if documents written after the snapshot are not copied.
+    private CatchUpPolicy catchUp;
+    //null, if indices are restored with the settings of the source.
+    private RestoreProfile restoreProfile;
+    //null, if indices are snapshotted as they are.
+    private PreparePolicy prepare;
+    //documents hashed per index for the verification, -1 if the source records no checks.
+    private int verifySampleSize = -1;
+    //null, if a single unnamed sink restores and deletes the snapshots.
+    private SinkFanOut sinks;
+    //null, if this sink is not one of the named sinks of a fan-out.
+    private String sinkName;
     private String rawJson;
 
     public StartInfo(String json) throws IOException {
@@ -37,6 +80,22 @@ final public class StartInfo {
         if (!(StartInfo.SOURCE.equals(getMode()) || StartInfo.SINK.equals(getMode()))){
             throw new InputMismatchException("cloud-sync Invalid mode. Provide source or sink.");
         }
+        if (maxInflightSnapshots < 1) {
+            throw new InputMismatchException("cloud-sync Invalid max_inflight_snapshots. Provide a value >= 1.");
+        }
+        if (maxInflightBytes < 1) {
+            throw new InputMismatchException("cloud-sync Invalid max_inflight_bytes. Provide a positive size.");
+        }
+        if (maxSinkStages < 1) {
+            throw new InputMismatchException("cloud-sync Invalid max_sink_stages. Provide a value >= 1.");
+        }
+        if (batchSizeInBytes < 0) {
+            throw new InputMismatchException("cloud-sync Invalid batch_size. Provide a positive size.");
+        }
+        if (catchUp != null && (sinks != null || sinkName != null)) {
+            //a round is deleted once loaded, by the first sink.
+            throw new InputMismatchException("cloud-sync Invalid catch_up. Not supported with named sinks.");
+        }
     }
 
     private void parse(){
@@ -45,6 +104,70 @@ final public class StartInfo {
         this.indices = (String)mapValue.get("indices");
         this.store = (String)mapValue.get("store");
         this.location = (String)mapValue.get("location");
+        if (mapValue.containsKey("max_inflight_snapshots")) {
+            this.maxInflightSnapshots = Integer.parseInt(mapValue.get("max_inflight_snapshots").toString());
+        }
+        this.maxInflightBytes = toBytes(mapValue.get("max_inflight_bytes"), "max_inflight_bytes", maxInflightBytes);
+        if (mapValue.containsKey("max_sink_stages")) {
+            this.maxSinkStages = Integer.parseInt(mapValue.get("max_sink_stages").toString());
+        }
+        if (mapValue.containsKey("incremental")) {
+            this.incremental = Boolean.parseBoolean(mapValue.get("incremental").toString());
+        }
+        if (mapValue.containsKey("schedule")) {
+            this.schedule = SchedulingPolicy.fromString(mapValue.get("schedule").toString());
+        }
+        if (mapValue.get("priorities") instanceof Map) {
+            for (Map.Entry<?, ?> priority : ((Map<?, ?>) mapValue.get("priorities")).entrySet()) {
+                this.priorities.put(priority.getKey().toString(), Integer.parseInt(priority.getValue().toString()));
+            }
+        }
+        if (mapValue.get("throttle") instanceof Map) {
+            this.throttle = ThrottlePolicy.fromMap((Map<?, ?>) mapValue.get("throttle"));
+        }
+        if (mapValue.get("windows") instanceof List) {
+            this.windows = MigrationWindows.fromList((List<?>) mapValue.get("windows"), (String) mapValue.get("timezone"));
+        }
+        if (mapValue.get("backoff") instanceof Map) {
+            this.backoff = LoadBackoff.fromMap((Map<?, ?>) mapValue.get("backoff"));
+        }
+        if (mapValue.get("catch_up") instanceof Map) {
+            this.catchUp = CatchUpPolicy.fromMap((Map<?, ?>) mapValue.get("catch_up"));
+        }
+        if (mapValue.get("restore_profile") instanceof Map) {
+            this.restoreProfile = RestoreProfile.fromMap((Map<?, ?>) mapValue.get("restore_profile"));
+        }
+        if (mapValue.get("prepare") instanceof Map) {
+            this.prepare = PreparePolicy.fromMap((Map<?, ?>) mapValue.get("prepare"));
+        }
+        if (mapValue.get("verify") instanceof Map) {
+            Object sampleSize = ((Map<?, ?>) mapValue.get("verify")).get("sample_size");
+            this.verifySampleSize = sampleSize == null ? 100 : Integer.parseInt(sampleSize.toString());
+            if (verifySampleSize < 0) {
+                throw new InputMismatchException("cloud-sync Invalid verify sample_size. Provide a value >= 0.");
+            }
+        }
+        if (mapValue.get("sinks") instanceof List) {
+            this.sinks = SinkFanOut.fromList((List<?>) mapValue.get("sinks"));
+        }
+        if (mapValue.containsKey("sink_name")) {
+            this.sinkName = String.valueOf(mapValue.get("sink_name"));
+            SinkFanOut.checkName(sinkName);
+        }
+        this.batchSizeInBytes = toBytes(mapValue.get("batch_size"), "batch_size", batchSizeInBytes);
+    }
+
+    /**
+     * Sizes are accepted either as plain bytes (1073741824) or with a unit ("1gb").
+     */
+    public static long toBytes(Object value, String name, long defaultValue) {
+        if (value == null) {
+            return defaultValue;
+        }
+        if (value instanceof Number) {
+            return ((Number) value).longValue();
+        }
+        return ByteSizeValue.parseBytesSizeValue(value.toString(), name).getBytes();
     }
 
     public String getMode() {
@@ -63,6 +186,78 @@ final public class StartInfo {
         return location;
     }
 
+    public int getMaxInflightSnapshots() {
+        return maxInflightSnapshots;
+    }
+
+    public long getMaxInflightBytes() {
+        return maxInflightBytes;
+    }
+
+    public int getMaxSinkStages() {
+        return maxSinkStages;
+    }
+
+    public boolean isIncremental() {
+        return incremental;
+    }
+
+    public SchedulingPolicy getSchedule() {
+        return schedule;
+    }
+
+    public Map<String, Integer> getPriorities() {
+        return priorities;
+    }
+
+    public ThrottlePolicy getThrottle() {
+        return throttle;
+    }
+
+    public MigrationWindows getWindows() {
+        return windows;
+    }
+
+    public LoadBackoff getBackoff() {
+        return backoff;
+    }
+
+    public CatchUpPolicy getCatchUp() {
+        return catchUp;
+    }
+
+    public RestoreProfile getRestoreProfile() {
+        return restoreProfile;
+    }
+
+    public PreparePolicy getPrepare() {
+        return prepare;
+    }
+
+    public boolean isVerifying() {
+        return verifySampleSize >= 0;
+    }
+
+    public int getVerifySampleSize() {
+        return verifySampleSize;
+    }
+
+    public SinkFanOut getSinks() {
+        return sinks;
+    }
+
+    public String getSinkName() {
+        return sinkName;
+    }
+
+    public boolean isBatching() {
+        return batchSizeInBytes > 0;
+    }
+
+    public long getBatchSizeInBytes() {
+        return batchSizeInBytes;
+    }
+
     public String toJson() {
         return rawJson;
     }
@@ -0,0 +1,183 @@
+package org.elasticsearch.sync.cloud.start;
+
+import org.elasticsearch.sync.cloud.utils.IndexInfo;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The state of the source, held in memory for the run: loaded once from the .cloudsync index, keyed by index
+ * name and grouped by state. READY indices are queued in the order of the scheduling policy ({@link IndexScheduler}),
+ * so taking the next batch and moving an index to another state is O(log n), without reading the state again.
+ * Changes are written behind: the latest change of each index is kept till {@link #flush} writes them with bulk
+ * requests, when maxDirty of them are pending, and before every step the sink or the next run can see.
+ * Used by the source thread only.
+ * The flush runs on the source thread, not a background flusher: it is due right before a snapshot starts
+ * (the SNAPSHOT_INPROGRESS move a restart reconciles) and before a manifest is published (the SNAPSHOTED
+ * moves behind it), so the thread would wait for a background write at the same points. The writes of the
+ * non-READY moves are what trigger a flush, READY moves (requeues) are written along with them. A version
+ * conflict then stops the source before it publishes anything the state does not hold.
+ */
+public class StateRegistry {
+
+    /**
+     * Writes entries to the state, returns them with their new versions, see ElasticClient#writeState.
+     */
+    public interface StateWriter {
+        List<IndexInfo> write(List<IndexInfo> entries) throws IOException;
+    }
+
+    //pending changes written without waiting for the next flush.
+    static final int maxDirty = 1000;
+
+    private final Map<String, IndexInfo> entries = new HashMap<>();
+    private final Map<IndexInfo.State, Set<String>> byState = new EnumMap<>(IndexInfo.State.class);
+    //READY indices not taken by poll().
+    private final IndexScheduler ready;
+    //index -> latest change, not written yet.
+    private final Map<String, IndexInfo> dirty = new LinkedHashMap<>();
+    private final StateWriter writer;
+
+    public StateRegistry(final Comparator<IndexInfo> comparator, final StateWriter writer) {
+        this.ready = new IndexScheduler(comparator);
+        this.writer = writer;
+        for (IndexInfo.State state : IndexInfo.State.values()) {
+            byState.put(state, new LinkedHashSet<>());
+        }
+    }
+
+    /**
+     * Replaces what the registry holds with the entries read from the state.
+     */
+    public void load(final Collection<IndexInfo> state) {
+        entries.clear();
+        dirty.clear();
+        ready.clear();
+        for (Set<String> names : byState.values()) {
+            names.clear();
+        }
+        for (IndexInfo entry : state) {
+            //unknown state, written by another version.
+            if (entry.getState() == null) {
+                continue;
+            }
+            entries.put(entry.getName(), entry);
+            byState.get(entry.getState()).add(entry.getName());
+        }
+        ready.addAll(inState(IndexInfo.State.READY));
+    }
+
+    public IndexInfo get(final String index) {
+        return entries.get(index);
+    }
+
+    /**
+     * @return entries in the state, in the order they moved to it.
+     */
+    public List<IndexInfo> inState(final IndexInfo.State state) {
+        List<IndexInfo> inState = new ArrayList<>(byState.get(state).size());
+        for (String name : byState.get(state)) {
+            inState.add(entries.get(name));
+        }
+        return inState;
+    }
+
+    /**
+     * @return entries snapshotted, or being snapshotted, by the given snapshots.
+     */
+    public List<IndexInfo> ofSnapshots(final Collection<String> snapshots) {
+        Set<String> names = new HashSet<>(snapshots);
+        List<IndexInfo> held = new ArrayList<>();
+        for (IndexInfo.State state : new IndexInfo.State[]{IndexInfo.State.SNAPSHOT_INPROGRESS, IndexInfo.State.SNAPSHOTED}) {
+            for (String name : byState.get(state)) {
+                IndexInfo entry = entries.get(name);
+                if (names.contains(entry.getSnapshot())) {
+                    held.add(entry);
+                }
+            }
+        }
+        return held;
+    }
+
+    public int count(final IndexInfo.State state) {
+        return byState.get(state).size();
+    }
+
+    /**
+     * Takes up to max READY indices off the head of the queue. They stay READY till moved, or are put back.
+     */
+    public List<IndexInfo> poll(final int max) {
+        return ready.poll(max);
+    }
+
+    /**
+     * Puts READY indices taken by {@link #poll} back, e.g. those left out of a snapshot batch.
+     */
+    public void putBack(final Collection<IndexInfo> indices) {
+        ready.putBack(indices);
+    }
+
+    public boolean hasReady() {
+        return !ready.isEmpty();
+    }
+
+    /**
+     * Moves the indices to the state. Indices moved to READY are queued again. The change is written by the
+     * next flush, at the latest once maxDirty changes are pending.
+     * @return the entries in their new state.
+     */
+    public List<IndexInfo> move(final Collection<IndexInfo> indices, final IndexInfo.State state, final String snapshot)
+            throws IOException {
+        List<IndexInfo> moved = new ArrayList<>(indices.size());
+        List<IndexInfo> requeued = new ArrayList<>();
+        for (IndexInfo indexInfo : indices) {
+            IndexInfo current = entries.getOrDefault(indexInfo.getName(), indexInfo);
+            IndexInfo next = current.withState(state, snapshot);
+            if (current.getState() != null) {
+                byState.get(current.getState()).remove(next.getName());
+            }
+            byState.get(state).add(next.getName());
+            entries.put(next.getName(), next);
+            //a change not written yet is replaced, only the latest is written.
+            dirty.put(next.getName(), next);
+            if (state == IndexInfo.State.READY && current.getState() != IndexInfo.State.READY) {
+                requeued.add(next);
+            }
+            moved.add(next);
+        }
+        ready.putBack(requeued);
+        if (dirty.size() >= maxDirty) {
+            flush();
+        }
+        return moved;
+    }
+
+    public int dirtyCount() {
+        return dirty.size();
+    }
+
+    /**
+     * Writes the pending changes with bulk requests. An entry changed by someone else since it was loaded fails
+     * the flush (its version does not match), the source then stops.
+     */
+    public void flush() throws IOException {
+        if (dirty.isEmpty()) {
+            return;
+        }
+        List<IndexInfo> written = writer.write(new ArrayList<>(dirty.values()));
+        for (IndexInfo entry : written) {
+            entries.put(entry.getName(), entry);
+        }
+        dirty.clear();
+    }
+}
@@ -0,0 +1,128 @@
+package org.elasticsearch.sync.cloud.start;
+
+import org.apache.logging.log4j.Logger;
+import org.elasticsearch.cluster.ClusterChangedEvent;
+import org.elasticsearch.cluster.ClusterStateListener;
+import org.elasticsearch.common.logging.ESLoggerFactory;
+import org.elasticsearch.common.settings.Setting;
+import org.elasticsearch.sync.cloud.elastic.ElasticClient;
+import org.elasticsearch.sync.cloud.elastic.RepositoryAccess;
+import org.elasticsearch.sync.cloud.status.SyncStats;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.Executor;
+
+/**
+ * Runs the sync threads on the elected master only. The start request is kept in the persistent cluster
+ * setting cloudsync.start, so it survives full cluster restarts, and the threads follow the master: they
+ * stop when the node loses the master role and start on the new master. A new start request replaces the
+ * running threads, so there is never more than one sync loop per cluster: the new threads start once the
+ * threads they replace exited. The loops retry failures themselves, if one exits anyway (e.g. it could not
+ * start) the threads are stopped and started again on the next cluster change.
+ */
+public class SyncCoordinator implements ClusterStateListener {
+
+    public static final Setting<String> START_SETTING =
+            Setting.simpleString("cloudsync.start", Setting.Property.NodeScope, Setting.Property.Dynamic);
+
+    private final Logger logger = ESLoggerFactory.getLogger(SyncCoordinator.class);
+
+    private final ElasticClient client;
+    private final SyncStats stats;
+    private final RepositoryAccess repositoryAccess;
+    private final Executor executor;
+    //start request the threads run with, null if none run on this node.
+    private String running;
+    private final List<AbstractStartThread> workers = new ArrayList<>();
+
+    /**
+     * @param executor the cloudsync thread pool, each sync loop holds one of its threads.
+     */
+    public SyncCoordinator(final ElasticClient client, final SyncStats stats, final RepositoryAccess repositoryAccess,
+                           final Executor executor) {
+        this.client = client;
+        this.stats = stats;
+        this.repositoryAccess = repositoryAccess;
+        this.executor = executor;
+    }
+
+    @Override
+    public void clusterChanged(ClusterChangedEvent event) {
+        String start = START_SETTING.get(event.state().metaData().persistentSettings());
+        reconcile(event.localNodeMaster() && !start.isEmpty() ? start : null);
+    }
+
+    /**
+     * Starts, replaces or stops the threads so they run with the wanted start request.
+     * @param wanted start request json, null to run nothing.
+     */
+    synchronized void reconcile(final String wanted) {
+        if (Objects.equals(running, wanted)) {
+            return;
+        }
+        List<AbstractStartThread> previous = stopWorkers();
+        running = wanted;
+        if (wanted == null) {
+            return;
+        }
+        try {
+            StartInfo startInfo = new StartInfo(wanted);
+            logger.info("cloud-sync starting the {} threads on this node.", startInfo.getMode());
+            List<AbstractStartThread> next = new ArrayList<>();
+            if (StartInfo.SOURCE.equals(startInfo.getMode())) {
+                next.add(new StartAtSourceThread(client, startInfo, stats, repositoryAccess));
+                if (startInfo.getCatchUp() != null) {
+                    next.add(new CatchUpSourceThread(client, startInfo, repositoryAccess));
+                }
+            } else {
+                next.add(new StartAtSinkThread(client, startInfo, stats, repositoryAccess));
+                if (startInfo.getCatchUp() != null) {
+                    next.add(new CatchUpSinkThread(client, startInfo, stats, repositoryAccess));
+                }
+            }
+            if (startInfo.getThrottle() != null) {
+                next.add(new ThrottleControllerThread(client, startInfo));
+            }
+            for (AbstractStartThread worker : next) {
+                workers.add(worker);
+                worker.start(executor, previous, () -> exited(worker));
+            }
+        } catch (Exception ex) {
+            logger.error("cloud-sync failed to start from the cloudsync.start cluster setting.", ex);
+        }
+    }
+
+    /**
+     * A loop exited without a stop: the others are stopped too, and all start again on the next cluster change.
+     */
+    synchronized void exited(final AbstractStartThread worker) {
+        if (!workers.contains(worker)) {
+            return;
+        }
+        logger.warn("cloud-sync {} exited, the sync threads start again on the next cluster change.",
+                worker.getClass().getSimpleName());
+        stopWorkers();
+        running = null;
+    }
+
+    synchronized boolean hasStartRequest() {
+        return running != null;
+    }
+
+    /**
+     * @return the stopped threads, they exit after the call in progress.
+     */
+    private List<AbstractStartThread> stopWorkers() {
+        if (!workers.isEmpty()) {
+            logger.info("cloud-sync stopping the sync threads on this node.");
+        }
+        List<AbstractStartThread> stopped = new ArrayList<>(workers);
+        for (AbstractStartThread worker : stopped) {
+            worker.stop();
+        }
+        workers.clear();
+        return stopped;
+    }
+}
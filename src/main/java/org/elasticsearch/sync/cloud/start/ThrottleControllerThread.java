@@ -0,0 +1,86 @@
+package org.elasticsearch.sync.cloud.start;
+
+import org.apache.logging.log4j.Logger;
+import org.elasticsearch.common.logging.ESLoggerFactory;
+import org.elasticsearch.common.unit.ByteSizeValue;
+import org.elasticsearch.sync.cloud.elastic.ElasticClient;
+import org.elasticsearch.sync.cloud.elastic.NodeLoad;
+
+import java.io.IOException;
+
+/**
+ * Background thread that samples the cluster load and updates the repository throttle, the snapshot
+ * rate on the source, the restore rate on the sink. Runs next to the source or sink thread when
+ * "throttle" is set. The max_rate of a throttle window of the source caps the rate it picks.
+ * A rate is applied by registering the repository again, a running snapshot or restore keeps the rate it
+ * started with: the new rate applies from the next snapshot or restore. The rate is applied again once the
+ * source or sink thread registers the repository with its default throttles, e.g. on a retry.
+ */
+public class ThrottleControllerThread extends AbstractStartThread {
+
+    private final Logger logger = ESLoggerFactory.getLogger(ThrottleControllerThread.class);
+    private static final int sampleIntervalMSecs = 10000;
+    //rate changes smaller than this part of the current rate are not applied.
+    private static final double minChange = 0.1;
+
+    private final ThrottlePolicy policy;
+    private final boolean source;
+
+    public ThrottleControllerThread(final ElasticClient client, final StartInfo startInfo) {
+        super(client, startInfo);
+        this.policy = startInfo.getThrottle();
+        this.source = StartInfo.SOURCE.equals(startInfo.getMode());
+    }
+
+    @Override
+    public void run() {
+        logger.info("cloud-sync starting throttle controller thread.");
+        long rate = policy.initialRate();
+        long applied = -1;
+        long generation = -1;
+        NodeLoad previous = null;
+        while (!isStopped()) {
+            try {
+                NodeLoad load = client.sampleLoad();
+                if (previous != null) {
+                    rate = policy.nextRate(rate, load.indexLatencyMillisSince(previous), load.maxWriteQueue,
+                            load.ioBytesPerSecSince(previous));
+                }
+                previous = load;
+                long target = capped(rate);
+                //read before the apply, a registration during it is seen on the next sample.
+                long registered = client.repositoryGeneration();
+                if (applied < 0 || registered != generation || Math.abs(target - applied) > applied * minChange) {
+                    apply(target);
+                    applied = target;
+                    generation = registered;
+                }
+                Thread.sleep(sampleIntervalMSecs);
+            } catch (InterruptedException ex) {
+                logger.info("cloud-sync throttle controller thread stopped.");
+                return;
+            } catch (Exception ex) {
+                logger.error("cloud-sync throttle controller failed to update the repository.", ex);
+                try {
+                    Thread.sleep(sampleIntervalMSecs);
+                } catch (InterruptedException ie) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * On the source, a throttle window caps the rate of the policy.
+     */
+    private long capped(long rate) {
+        long max = source ? startInfo.getWindows().maxRateAt(System.currentTimeMillis()) : -1;
+        return max > 0 ? Math.min(rate, max) : rate;
+    }
+
+    private void apply(long rate) throws IOException {
+        logger.info("cloud-sync setting {} rate to {}/s.", source ? "snapshot" : "restore", new ByteSizeValue(rate));
+        client.updateRepositoryThrottle(startInfo.getStore(), repository, startInfo.getLocation(),
+                source ? rate : -1, source ? -1 : rate);
+    }
+}
@@ -0,0 +1,78 @@
+package org.elasticsearch.sync.cloud.start;
+
+import org.elasticsearch.common.unit.ByteSizeUnit;
+import org.elasticsearch.common.unit.ByteSizeValue;
+
+import java.util.InputMismatchException;
+import java.util.Map;
+
+/**
+ * Picks the snapshot/restore rate of the repository from the load of the live workload.
+ * Additive increase while the cluster is within its budget, halved as soon as it is not, so
+ * production ingest gets the cluster back quickly and the sync uses whatever is left over.
+ *
+ * "throttle" : {
+ *     "target_latency_ms" : 20,    indexing latency per document the live workload should keep.
+ *     "max_write_queue" : 200,     bulk + index thread pool queue, per node.
+ *     "max_disk_io" : "300mb",     (optional) disk read + write per second, all nodes.
+ *     "min_rate" : "10mb",
+ *     "max_rate" : "500mb"
+ * }
+ * The rate is a setting of the repository, it applies to snapshots and restores started after the change.
+ */
+public final class ThrottlePolicy {
+
+    //rate increase per step, as a part of the min..max range.
+    private static final int increaseSteps = 10;
+
+    private final double targetLatencyMillis;
+    private final long maxWriteQueue;
+    private final long maxDiskBytesPerSec;
+    private final long minBytesPerSec;
+    private final long maxBytesPerSec;
+
+    public ThrottlePolicy(double targetLatencyMillis, long maxWriteQueue, long maxDiskBytesPerSec,
+                          long minBytesPerSec, long maxBytesPerSec) {
+        if (minBytesPerSec <= 0 || maxBytesPerSec < minBytesPerSec) {
+            throw new InputMismatchException("cloud-sync Invalid throttle. Provide 0 < min_rate <= max_rate.");
+        }
+        this.targetLatencyMillis = targetLatencyMillis;
+        this.maxWriteQueue = maxWriteQueue;
+        this.maxDiskBytesPerSec = maxDiskBytesPerSec;
+        this.minBytesPerSec = minBytesPerSec;
+        this.maxBytesPerSec = maxBytesPerSec;
+    }
+
+    public static ThrottlePolicy fromMap(Map<?, ?> map) {
+        return new ThrottlePolicy(
+                map.containsKey("target_latency_ms") ? Double.parseDouble(map.get("target_latency_ms").toString()) : 20,
+                map.containsKey("max_write_queue") ? Long.parseLong(map.get("max_write_queue").toString()) : 200,
+                StartInfo.toBytes(map.get("max_disk_io"), "max_disk_io", Long.MAX_VALUE),
+                StartInfo.toBytes(map.get("min_rate"), "min_rate", new ByteSizeValue(10, ByteSizeUnit.MB).getBytes()),
+                StartInfo.toBytes(map.get("max_rate"), "max_rate", new ByteSizeValue(500, ByteSizeUnit.MB).getBytes()));
+    }
+
+    public long initialRate() {
+        return minBytesPerSec;
+    }
+
+    /**
+     * @param currentBytesPerSec rate in use.
+     * @param indexLatencyMillis indexing latency per document of the live workload.
+     * @param writeQueue largest write queue of any node.
+     * @param diskBytesPerSec disk read + write of all nodes.
+     * @return rate to use next.
+     */
+    public long nextRate(long currentBytesPerSec, double indexLatencyMillis, long writeQueue, long diskBytesPerSec) {
+        boolean overBudget = indexLatencyMillis > targetLatencyMillis
+                || writeQueue > maxWriteQueue
+                || diskBytesPerSec > maxDiskBytesPerSec;
+        long next;
+        if (overBudget) {
+            next = currentBytesPerSec / 2;
+        } else {
+            next = currentBytesPerSec + Math.max(1, (maxBytesPerSec - minBytesPerSec) / increaseSteps);
+        }
+        return Math.max(minBytesPerSec, Math.min(maxBytesPerSec, next));
+    }
+}
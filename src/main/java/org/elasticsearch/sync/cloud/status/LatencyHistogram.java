@@ -0,0 +1,90 @@
+package org.elasticsearch.sync.cloud.status;
+
+import org.elasticsearch.common.xcontent.XContentBuilder;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Durations in power of two millisecond buckets, up to 2^26 ms (about 18 hours). Recording is lock free,
+ * percentiles are the upper bound of the bucket they fall in.
+ */
+public class LatencyHistogram {
+
+    private static final int buckets = 27;
+
+    //bucket i counts durations <= 2^i ms (and > 2^(i-1) ms), the last one everything above.
+    private final AtomicLongArray counts = new AtomicLongArray(buckets);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong sumMillis = new AtomicLong();
+    private final AtomicLong maxMillis = new AtomicLong();
+
+    public void record(final long millis) {
+        long value = Math.max(0, millis);
+        counts.incrementAndGet(bucket(value));
+        count.incrementAndGet();
+        sumMillis.addAndGet(value);
+        maxMillis.accumulateAndGet(value, Math::max);
+    }
+
+    static int bucket(final long millis) {
+        if (millis <= 1) {
+            return 0;
+        }
+        int bucket = 64 - Long.numberOfLeadingZeros(millis - 1);
+        return Math.min(bucket, buckets - 1);
+    }
+
+    public long getCount() {
+        return count.get();
+    }
+
+    public double getMeanMillis() {
+        long n = count.get();
+        return n == 0 ? 0 : (double) sumMillis.get() / n;
+    }
+
+    public long getMaxMillis() {
+        return maxMillis.get();
+    }
+
+    /**
+     * @param percentile 0..100
+     * @return upper bound of the bucket holding the percentile, capped at the max seen.
+     */
+    public long getPercentileMillis(final double percentile) {
+        long n = count.get();
+        if (n == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100.0 * n));
+        long seen = 0;
+        for (int i = 0; i < buckets; i++) {
+            seen += counts.get(i);
+            if (seen >= rank) {
+                return Math.min(1L << i, maxMillis.get());
+            }
+        }
+        return maxMillis.get();
+    }
+
+    public XContentBuilder toXContent(XContentBuilder builder) throws IOException {
+        builder.startObject()
+                .field("count", getCount())
+                .field("mean", getMeanMillis())
+                .field("p50", getPercentileMillis(50))
+                .field("p90", getPercentileMillis(90))
+                .field("p99", getPercentileMillis(99))
+                .field("max", getMaxMillis());
+        builder.startObject("buckets");
+        for (int i = 0; i < buckets; i++) {
+            long bucketCount = counts.get(i);
+            if (bucketCount > 0) {
+                builder.field((i == buckets - 1) ? "+Inf" : String.valueOf(1L << i), bucketCount);
+            }
+        }
+        builder.endObject();
+        return builder.endObject();
+    }
+}
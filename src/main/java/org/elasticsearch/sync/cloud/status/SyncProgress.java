@@ -0,0 +1,130 @@
+package org.elasticsearch.sync.cloud.status;
+
+import org.apache.logging.log4j.Logger;
+import org.elasticsearch.common.logging.ESLoggerFactory;
+import org.elasticsearch.sync.cloud.utils.IndexInfo;
+import org.elasticsearch.sync.cloud.utils.StateCounts;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * In-memory view of the sync progress that /cloudsync/status is served from. The source thread moves
+ * indices between states as it goes, and the whole view is re-loaded from the .cloudsync index and the
+ * handoff manifest in the background once it is older than the TTL. Moves racing with a re-load may be
+ * counted twice or not at all, the next re-load corrects them.
+ */
+public class SyncProgress {
+
+    /**
+     * Loads the view from the cluster, calls {@link #reset}.
+     */
+    public interface Loader {
+        void load(SyncProgress progress) throws Exception;
+    }
+
+    private final Logger logger = ESLoggerFactory.getLogger(SyncProgress.class);
+
+    private final LongSupplier clock;
+    private final Map<IndexInfo.State, AtomicLong> counts = new EnumMap<>(IndexInfo.State.class);
+    private final Map<IndexInfo.State, AtomicLong> sizesInBytes = new EnumMap<>(IndexInfo.State.class);
+    //snapshoted, and deleted by the sink.
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong completedBytes = new AtomicLong();
+    //-1 till loaded once.
+    private volatile long loadedAt = -1;
+    private final AtomicBoolean loading = new AtomicBoolean();
+
+    public SyncProgress() {
+        this(System::currentTimeMillis);
+    }
+
+    public SyncProgress(final LongSupplier clock) {
+        this.clock = clock;
+        for (IndexInfo.State state : IndexInfo.State.values()) {
+            counts.put(state, new AtomicLong());
+            sizesInBytes.put(state, new AtomicLong());
+        }
+    }
+
+    /**
+     * @param inStorage indices and bytes of the snapshoted indices not yet deleted by the sink.
+     */
+    public void reset(final StateCounts stateCounts, final long inStorage, final long inStorageBytes) {
+        for (IndexInfo.State state : IndexInfo.State.values()) {
+            counts.get(state).set(stateCounts.getCount(state));
+            sizesInBytes.get(state).set(stateCounts.getSizeInBytes(state));
+        }
+        completed.set(stateCounts.getCount(IndexInfo.State.SNAPSHOTED) - inStorage);
+        completedBytes.set(stateCounts.getSizeInBytes(IndexInfo.State.SNAPSHOTED) - inStorageBytes);
+        loadedAt = clock.getAsLong();
+    }
+
+    public void move(final IndexInfo.State from, final IndexInfo.State to, final long count, final long bytes) {
+        counts.get(from).addAndGet(-count);
+        sizesInBytes.get(from).addAndGet(-bytes);
+        counts.get(to).addAndGet(count);
+        sizesInBytes.get(to).addAndGet(bytes);
+    }
+
+    /**
+     * The sink acknowledged snapshoted indices.
+     */
+    public void complete(final long count, final long bytes) {
+        completed.addAndGet(count);
+        completedBytes.addAndGet(bytes);
+    }
+
+    public boolean isLoaded() {
+        return loadedAt >= 0;
+    }
+
+    /**
+     * Starts a re-load on the executor if the view is older than the TTL and no re-load runs. Never waits for it.
+     */
+    public void refreshIfStale(final long ttlMillis, final Executor executor, final Loader loader) {
+        if (isLoaded() && clock.getAsLong() - loadedAt < ttlMillis) {
+            return;
+        }
+        if (!loading.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    loader.load(this);
+                } catch (Exception ex) {
+                    logger.warn("cloud-sync failed to refresh the sync progress.", ex);
+                } finally {
+                    loading.set(false);
+                }
+            });
+        } catch (RuntimeException ex) {
+            //e.g. rejected by a full pool, the current view is served.
+            loading.set(false);
+            logger.warn("cloud-sync failed to start a refresh of the sync progress.", ex);
+        }
+    }
+
+    public StatusInfo toStatusInfo() {
+        StatusInfo statusInfo = new StatusInfo();
+        long total = 0;
+        long totalBytes = 0;
+        for (IndexInfo.State state : IndexInfo.State.values()) {
+            total += counts.get(state).get();
+            totalBytes += sizesInBytes.get(state).get();
+        }
+        statusInfo.totalIndices = (int) total;
+        statusInfo.totalSizeInBytes = totalBytes;
+        statusInfo.pendingIndicesToSnapshot = (int) counts.get(IndexInfo.State.READY).get();
+        statusInfo.totalPendingInBytes = sizesInBytes.get(IndexInfo.State.READY).get();
+        statusInfo.completedIndices = (int) completed.get();
+        statusInfo.pendingIndicesToRestore = statusInfo.totalIndices - statusInfo.pendingIndicesToSnapshot
+                - statusInfo.completedIndices;
+        return statusInfo;
+    }
+}
@@ -0,0 +1,159 @@
+package org.elasticsearch.sync.cloud.status;
+
+import org.elasticsearch.common.unit.ByteSizeValue;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntSupplier;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Counters of the sync on this node, since the node started: bytes and latency of every phase, and the
+ * bytes per minute of the last hour for the rolling throughput. The source records the snapshot phase,
+ * the sink restore, green, verify, delete and the
+ * loading of catch-up rounds.
+ */
+public class SyncStats {
+
+    public enum Phase {
+        SNAPSHOT, RESTORE, GREEN, VERIFY, DELETE, CATCH_UP
+    }
+
+    //throughput window, one slot per minute.
+    private static final int windowMinutes = 60;
+    private static final long minuteMillis = 60 * 1000;
+
+    private final LongSupplier clock;
+    private final Map<Phase, PhaseStats> phases = new EnumMap<>(Phase.class);
+    private volatile IntSupplier pendingStages = () -> 0;
+    private volatile Supplier<Map<String, String>> failedSnapshots = Collections::emptyMap;
+    private final SyncProgress progress;
+
+    public SyncStats() {
+        this(System::currentTimeMillis);
+    }
+
+    public SyncStats(final LongSupplier clock) {
+        this.clock = clock;
+        this.progress = new SyncProgress(clock);
+        for (Phase phase : Phase.values()) {
+            phases.put(phase, new PhaseStats());
+        }
+    }
+
+    /**
+     * @return index counts per state, for /cloudsync/status.
+     */
+    public SyncProgress getProgress() {
+        return progress;
+    }
+
+    /**
+     * @param bytes index bytes that went through the phase.
+     */
+    public void record(final Phase phase, final long millis, final long bytes) {
+        phases.get(phase).record(clock.getAsLong(), millis, bytes);
+    }
+
+    public LatencyHistogram getLatency(final Phase phase) {
+        return phases.get(phase).latency;
+    }
+
+    public long getBytes(final Phase phase) {
+        return phases.get(phase).bytes.get();
+    }
+
+    /**
+     * @return average bytes per second of the phase over the last minutes (1..60), 0 without data.
+     */
+    public long getBytesPerSec(final Phase phase, final int minutes) {
+        return phases.get(phase).bytesPerSec(clock.getAsLong(), Math.max(1, Math.min(windowMinutes, minutes)));
+    }
+
+    /**
+     * @return time to move the remaining bytes at the hourly rate of the phase, -1 while there is no rate.
+     */
+    public long getEtaMillis(final Phase phase, final long remainingBytes) {
+        long bytesPerSec = getBytesPerSec(phase, windowMinutes);
+        if (remainingBytes <= 0) {
+            return 0;
+        }
+        return bytesPerSec <= 0 ? -1 : remainingBytes * 1000 / bytesPerSec;
+    }
+
+    /**
+     * Sink stages waiting for green or delete, read when the stats are reported.
+     */
+    public void setPendingStages(final IntSupplier pendingStages) {
+        this.pendingStages = pendingStages;
+    }
+
+    public int getPendingStages() {
+        return pendingStages.getAsInt();
+    }
+
+    /**
+     * Snapshots the sink failed to verify (snapshot -> reason), read when the stats are reported.
+     */
+    public void setFailedSnapshots(final Supplier<Map<String, String>> failedSnapshots) {
+        this.failedSnapshots = failedSnapshots;
+    }
+
+    public Map<String, String> getFailedSnapshots() {
+        return failedSnapshots.get();
+    }
+
+    public XContentBuilder toXContent(XContentBuilder builder) throws IOException {
+        builder.startObject();
+        for (Phase phase : Phase.values()) {
+            builder.startObject(phase.name().toLowerCase())
+                    .field("bytes", new ByteSizeValue(getBytes(phase)))
+                    .field("bytes_per_sec_1m", new ByteSizeValue(getBytesPerSec(phase, 1)))
+                    .field("bytes_per_sec_15m", new ByteSizeValue(getBytesPerSec(phase, 15)))
+                    .field("bytes_per_sec_60m", new ByteSizeValue(getBytesPerSec(phase, 60)));
+            builder.field("latency_ms");
+            getLatency(phase).toXContent(builder);
+            builder.endObject();
+        }
+        return builder.endObject();
+    }
+
+    private static class PhaseStats {
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private final AtomicLong bytes = new AtomicLong();
+        //bytes of minute m are in slot m % windowMinutes, the minute itself in minuteOfSlot.
+        private final long[] slotBytes = new long[windowMinutes];
+        private final long[] minuteOfSlot = new long[windowMinutes];
+
+        synchronized void record(long now, long millis, long phaseBytes) {
+            latency.record(millis);
+            bytes.addAndGet(phaseBytes);
+            long minute = now / minuteMillis;
+            int slot = (int) (minute % windowMinutes);
+            if (minuteOfSlot[slot] != minute) {
+                minuteOfSlot[slot] = minute;
+                slotBytes[slot] = 0;
+            }
+            slotBytes[slot] += phaseBytes;
+        }
+
+        synchronized long bytesPerSec(long now, int minutes) {
+            long minute = now / minuteMillis;
+            long sum = 0;
+            //the current minute counts as partly done.
+            for (long m = Math.max(0, minute - minutes + 1); m <= minute; m++) {
+                int slot = (int) (m % windowMinutes);
+                if (minuteOfSlot[slot] == m) {
+                    sum += slotBytes[slot];
+                }
+            }
+            long elapsedMillis = (minutes - 1) * minuteMillis + (now % minuteMillis);
+            return elapsedMillis <= 0 ? 0 : sum * 1000 / elapsedMillis;
+        }
+    }
+}
@@ -1,7 +1,11 @@
 package org.elasticsearch.sync.cloud.utils;
 
+import org.elasticsearch.ElasticsearchParseException;
+import org.elasticsearch.common.lucene.uid.Versions;
+import org.elasticsearch.common.xcontent.NamedXContentRegistry;
 import org.elasticsearch.common.xcontent.XContentBuilder;
-import org.elasticsearch.common.xcontent.XContentHelper;
+import org.elasticsearch.common.xcontent.XContentParser;
+import org.elasticsearch.common.xcontent.XContentParserUtils;
 import org.elasticsearch.common.xcontent.json.JsonXContent;
 
 import java.io.IOException;
@@ -33,26 +37,92 @@ final public class IndexInfo implements Comparable {
     private String name;
     private Long sizeInBytes;
     private State state;
+    //name of the snapshot holding this index, null till the index is picked for a snapshot.
+    private String snapshot;
+    //index creation time on the source, 0 if not known.
+    private long creationDate = 0;
+    //version of the state document this was read from, not serialized.
+    private long version = Versions.MATCH_ANY;
 
     public IndexInfo(String name, Long sizeInBytes, State state){
+        this(name, sizeInBytes, state, null);
+    }
+
+    public IndexInfo(String name, Long sizeInBytes, State state, String snapshot){
         this.name = name;
         this.sizeInBytes = sizeInBytes;
         this.state = state;
+        this.snapshot = snapshot;
     }
 
     public IndexInfo(String json){
-        Map<String, Object> mapValue = XContentHelper.convertToMap(JsonXContent.jsonXContent, json, false);
-        init(mapValue);
+        try (XContentParser parser = JsonXContent.jsonXContent.createParser(NamedXContentRegistry.EMPTY, json)) {
+            parse(parser);
+        } catch (IOException ex) {
+            throw new ElasticsearchParseException("Failed to parse index state", ex);
+        }
     }
 
     public IndexInfo(Map<String,Object> mapValue) {
         init(mapValue);
     }
 
+    private IndexInfo() {
+    }
+
+    /**
+     * Reads the entry straight off the parser, without a map of its fields. The parser is at, or before,
+     * the start of the entry object and is left at its end.
+     */
+    public static IndexInfo fromXContent(XContentParser parser) throws IOException {
+        IndexInfo indexInfo = new IndexInfo();
+        indexInfo.parse(parser);
+        return indexInfo;
+    }
+
+    private void parse(XContentParser parser) throws IOException {
+        XContentParser.Token token = parser.currentToken() == null ? parser.nextToken() : parser.currentToken();
+        XContentParserUtils.ensureExpectedToken(XContentParser.Token.START_OBJECT, token, parser::getTokenLocation);
+        String field = null;
+        while ((token = parser.nextToken()) != XContentParser.Token.END_OBJECT) {
+            if (token == XContentParser.Token.FIELD_NAME) {
+                field = parser.currentName();
+            } else if (token.isValue()) {
+                switch (field) {
+                    case "name":
+                        this.name = parser.text();
+                        break;
+                    case "sizeInBytes":
+                        this.sizeInBytes = parser.longValue();
+                        break;
+                    case "state":
+                        this.state = State.toState(parser.text());
+                        break;
+                    case "snapshot":
+                        this.snapshot = parser.text();
+                        break;
+                    case "creationDate":
+                        this.creationDate = parser.longValue();
+                        break;
+                    default:
+                        //written by another version.
+                }
+            } else {
+                //nulls, and objects or arrays of another version.
+                parser.skipChildren();
+            }
+        }
+    }
+
     private void init(Map<String,Object> mapValue) {
         this.name = (String)mapValue.get("name");
-        this.sizeInBytes = new Long((Integer)mapValue.get("sizeInBytes"));
+        //Integer or Long, by size.
+        Object sizeInBytes = mapValue.get("sizeInBytes");
+        this.sizeInBytes = (sizeInBytes == null) ? null : ((Number)sizeInBytes).longValue();
         this.state = State.toState((String)mapValue.get("state"));
+        this.snapshot = (String)mapValue.get("snapshot");
+        Object creationDate = mapValue.get("creationDate");
+        this.creationDate = (creationDate == null) ? 0 : ((Number)creationDate).longValue();
     }
 
     public State getState() {
@@ -67,6 +137,46 @@ final public class IndexInfo implements Comparable {
         return sizeInBytes;
     }
 
+    public String getSnapshot() {
+        return snapshot;
+    }
+
+    public long getCreationDate() {
+        return creationDate;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * @return a copy in the given state, keeping the version it was read with.
+     */
+    public IndexInfo withState(State state, String snapshot) {
+        IndexInfo copy = new IndexInfo(name, sizeInBytes, state, snapshot);
+        copy.creationDate = creationDate;
+        copy.version = version;
+        return copy;
+    }
+
+    /**
+     * @return a copy with the given state document version.
+     */
+    public IndexInfo withVersion(long version) {
+        IndexInfo copy = withState(state, snapshot);
+        copy.version = version;
+        return copy;
+    }
+
+    /**
+     * @return a copy with the given index creation time.
+     */
+    public IndexInfo withCreationDate(long creationDate) {
+        IndexInfo copy = withState(state, snapshot);
+        copy.creationDate = creationDate;
+        return copy;
+    }
+
     @Override
     public String toString() {
         try {
@@ -77,12 +187,17 @@ final public class IndexInfo implements Comparable {
     }
 
     public XContentBuilder toXContent(XContentBuilder builder) throws IOException{
-        return builder.startObject()
+        builder.startObject()
                 .field("name",name)
                 .field("sizeInBytes", sizeInBytes)
-                .field("state",state)
-                .endObject();
-
+                .field("state",state);
+        if(snapshot != null) {
+            builder.field("snapshot", snapshot);
+        }
+        if(creationDate > 0) {
+            builder.field("creationDate", creationDate);
+        }
+        return builder.endObject();
     }
 
     public String toJson() throws IOException {
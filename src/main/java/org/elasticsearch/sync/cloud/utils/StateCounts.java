@@ -0,0 +1,59 @@
+package org.elasticsearch.sync.cloud.utils;
+
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Number of indices and their total size, per sync state.
+ */
+final public class StateCounts {
+
+    private final Map<IndexInfo.State, Long> counts = new EnumMap<>(IndexInfo.State.class);
+    private final Map<IndexInfo.State, Long> sizesInBytes = new EnumMap<>(IndexInfo.State.class);
+
+    public static StateCounts of(Collection<IndexInfo> entries) {
+        StateCounts counts = new StateCounts();
+        for (IndexInfo entry : entries) {
+            counts.add(entry);
+        }
+        return counts;
+    }
+
+    public void add(IndexInfo entry) {
+        add(entry.getState(), 1, entry.getSizeInBytes());
+    }
+
+    public void add(IndexInfo.State state, long count, long sizeInBytes) {
+        counts.merge(state, count, Long::sum);
+        sizesInBytes.merge(state, sizeInBytes, Long::sum);
+    }
+
+    public long getCount(IndexInfo.State state) {
+        return counts.getOrDefault(state, 0L);
+    }
+
+    public long getSizeInBytes(IndexInfo.State state) {
+        return sizesInBytes.getOrDefault(state, 0L);
+    }
+
+    public long getTotalCount() {
+        long total = 0;
+        for (Long count : counts.values()) {
+            total += count;
+        }
+        return total;
+    }
+
+    public long getTotalSizeInBytes() {
+        long total = 0;
+        for (Long size : sizesInBytes.values()) {
+            total += size;
+        }
+        return total;
+    }
+
+    public boolean isEmpty() {
+        return getTotalCount() == 0;
+    }
+}
@@ -1,7 +1,11 @@
 package org.elasticsearch.sync.cloud.utils;
 
+import org.elasticsearch.ElasticsearchParseException;
+import org.elasticsearch.common.CheckedConsumer;
+import org.elasticsearch.common.xcontent.NamedXContentRegistry;
 import org.elasticsearch.common.xcontent.XContentBuilder;
-import org.elasticsearch.common.xcontent.XContentHelper;
+import org.elasticsearch.common.xcontent.XContentParser;
+import org.elasticsearch.common.xcontent.XContentParserUtils;
 import org.elasticsearch.common.xcontent.json.JsonXContent;
 
 import java.io.IOException;
@@ -35,9 +39,16 @@ public class Utils {
         return builder.string();
     }
 
-    public static String toJson(List<IndexInfo> ss) throws IOException {
+    public static String toJson(Iterable<IndexInfo> ss) throws IOException {
+        return toXContent(jsonBuilder(), ss).string();
+    }
 
-        XContentBuilder builder = jsonBuilder().startObject()
+    /**
+     * Writes the state document to the builder one entry at a time, e.g. straight from a registry or a scroll.
+     */
+    public static XContentBuilder toXContent(XContentBuilder builder, Iterable<IndexInfo> ss) throws IOException {
+
+        builder.startObject()
                 .field("name","cloudsync")
                 .field("snapshots")
                 .startArray();
@@ -47,7 +58,7 @@ public class Utils {
         }
         builder.endArray();
         builder.endObject();
-        return builder.string();
+        return builder;
     }
 
     public static List<IndexInfo> toSnapshots(String json){
@@ -55,16 +66,38 @@ public class Utils {
         if(json == "" || json.isEmpty())
             return new ArrayList<>();
 
-        Map<String, Object> mapValue = XContentHelper.convertToMap(JsonXContent.jsonXContent, json, false);
-        ArrayList<Object> objList = (ArrayList<Object>) mapValue.get("snapshots");
         List<IndexInfo> ssList = new ArrayList<>();
-        for(Object obj : objList ){
-            IndexInfo ss = new IndexInfo((Map<String,Object>)obj);
-            ssList.add(ss);
+        try (XContentParser parser = JsonXContent.jsonXContent.createParser(NamedXContentRegistry.EMPTY, json)) {
+            readSnapshots(parser, ssList::add);
+        } catch (IOException ex) {
+            throw new ElasticsearchParseException("Failed to parse state document", ex);
         }
         return ssList;
     }
 
+    /**
+     * Reads the entries of a state document one at a time, no tree of maps is built for the document.
+     * @return true if the document has a "snapshots" array.
+     */
+    public static boolean readSnapshots(XContentParser parser, CheckedConsumer<IndexInfo, IOException> consumer) throws IOException {
+        XContentParser.Token token = parser.currentToken() == null ? parser.nextToken() : parser.currentToken();
+        XContentParserUtils.ensureExpectedToken(XContentParser.Token.START_OBJECT, token, parser::getTokenLocation);
+        boolean found = false;
+        while (parser.nextToken() == XContentParser.Token.FIELD_NAME) {
+            String field = parser.currentName();
+            token = parser.nextToken();
+            if ("snapshots".equals(field) && token == XContentParser.Token.START_ARRAY) {
+                found = true;
+                while (parser.nextToken() != XContentParser.Token.END_ARRAY) {
+                    consumer.accept(IndexInfo.fromXContent(parser));
+                }
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return found;
+    }
+
     public static List<IndexInfo> sortAndFilter(List<IndexInfo> ss, IndexInfo.State filteredState){
 
         List<IndexInfo> filtered = new ArrayList<>();
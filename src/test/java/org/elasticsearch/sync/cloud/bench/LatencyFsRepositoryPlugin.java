@@ -0,0 +1,133 @@
+package org.elasticsearch.sync.cloud.bench;
+
+import org.elasticsearch.cluster.metadata.RepositoryMetaData;
+import org.elasticsearch.common.blobstore.BlobContainer;
+import org.elasticsearch.common.blobstore.BlobMetaData;
+import org.elasticsearch.common.blobstore.BlobPath;
+import org.elasticsearch.common.blobstore.BlobStore;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.common.xcontent.NamedXContentRegistry;
+import org.elasticsearch.env.Environment;
+import org.elasticsearch.plugins.Plugin;
+import org.elasticsearch.plugins.RepositoryPlugin;
+import org.elasticsearch.repositories.Repository;
+import org.elasticsearch.repositories.fs.FsRepository;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * An fs repository ("latency_fs") that waits "latency" (default 50ms) before every blob operation, like the
+ * per-request latency of GCS or S3, so a sync between two clusters on one machine runs at cloud-like object rates.
+ * Registered on both clusters over the same location.
+ */
+public class LatencyFsRepositoryPlugin extends Plugin implements RepositoryPlugin {
+
+    public static final String TYPE = "latency_fs";
+
+    @Override
+    public Map<String, Repository.Factory> getRepositories(Environment env, NamedXContentRegistry namedXContentRegistry) {
+        return Collections.singletonMap(TYPE, metadata -> new LatencyFsRepository(metadata, env, namedXContentRegistry));
+    }
+
+    static class LatencyFsRepository extends FsRepository {
+
+        private final long latencyMillis;
+
+        LatencyFsRepository(RepositoryMetaData metadata, Environment environment, NamedXContentRegistry namedXContentRegistry)
+                throws IOException {
+            super(metadata, environment, namedXContentRegistry);
+            this.latencyMillis = metadata.settings().getAsTime("latency", TimeValue.timeValueMillis(50)).millis();
+        }
+
+        @Override
+        protected BlobStore blobStore() {
+            BlobStore delegate = super.blobStore();
+            return new BlobStore() {
+                @Override
+                public BlobContainer blobContainer(BlobPath path) {
+                    return new LatencyBlobContainer(delegate.blobContainer(path), latencyMillis);
+                }
+
+                @Override
+                public void delete(BlobPath path) throws IOException {
+                    delay(latencyMillis);
+                    delegate.delete(path);
+                }
+
+                @Override
+                public void close() throws IOException {
+                    delegate.close();
+                }
+            };
+        }
+    }
+
+    static class LatencyBlobContainer implements BlobContainer {
+
+        private final BlobContainer delegate;
+        private final long latencyMillis;
+
+        LatencyBlobContainer(BlobContainer delegate, long latencyMillis) {
+            this.delegate = delegate;
+            this.latencyMillis = latencyMillis;
+        }
+
+        @Override
+        public BlobPath path() {
+            return delegate.path();
+        }
+
+        @Override
+        public boolean blobExists(String blobName) {
+            delay(latencyMillis);
+            return delegate.blobExists(blobName);
+        }
+
+        @Override
+        public InputStream readBlob(String blobName) throws IOException {
+            delay(latencyMillis);
+            return delegate.readBlob(blobName);
+        }
+
+        @Override
+        public void writeBlob(String blobName, InputStream inputStream, long blobSize) throws IOException {
+            delay(latencyMillis);
+            delegate.writeBlob(blobName, inputStream, blobSize);
+        }
+
+        @Override
+        public void deleteBlob(String blobName) throws IOException {
+            delay(latencyMillis);
+            delegate.deleteBlob(blobName);
+        }
+
+        @Override
+        public Map<String, BlobMetaData> listBlobs() throws IOException {
+            delay(latencyMillis);
+            return delegate.listBlobs();
+        }
+
+        @Override
+        public Map<String, BlobMetaData> listBlobsByPrefix(String blobNamePrefix) throws IOException {
+            delay(latencyMillis);
+            return delegate.listBlobsByPrefix(blobNamePrefix);
+        }
+
+        @Override
+        public void move(String sourceBlobName, String targetBlobName) throws IOException {
+            delay(latencyMillis);
+            delegate.move(sourceBlobName, targetBlobName);
+        }
+    }
+
+    private static void delay(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package org.elasticsearch.sync.cloud.bench;
+
+import org.elasticsearch.common.blobstore.BlobContainer;
+import org.elasticsearch.common.blobstore.BlobPath;
+import org.elasticsearch.common.blobstore.fs.FsBlobStore;
+import org.elasticsearch.common.settings.Settings;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+
+public class RepositoryBenchmarkTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testFsRepository() throws IOException, InterruptedException {
+        FsBlobStore store = new FsBlobStore(Settings.EMPTY, folder.getRoot().toPath());
+        BlobContainer container = store.blobContainer(new BlobPath().add("cloudsync_bench"));
+        RepositoryBenchmark benchmark = new RepositoryBenchmark(container,
+                Arrays.asList(4096L, 100000L), Arrays.asList(1, 3), 5);
+
+        List<RepositoryBenchmark.Result> results = benchmark.run();
+        //write, read and delete for every chunk size and concurrency.
+        assertEquals(2 * 2 * 3, results.size());
+        for (RepositoryBenchmark.Result result : results) {
+            assertTrue(result.getOperationsPerSec() > 0);
+            assertTrue(result.getLatencyMillis(50) <= result.getLatencyMillis(99));
+            if (result.getOperation() != RepositoryBenchmark.Operation.DELETE) {
+                assertTrue(result.getMegabytesPerSec() > 0);
+            }
+        }
+        //blobs are removed after each round.
+        assertTrue(container.listBlobs().isEmpty());
+    }
+
+    @Test
+    public void testPercentiles() {
+        long[] latencies = new long[100];
+        for (int i = 0; i < latencies.length; i++) {
+            latencies[latencies.length - 1 - i] = (i + 1) * 1000000L;
+        }
+        RepositoryBenchmark.Result result = new RepositoryBenchmark.Result(
+                RepositoryBenchmark.Operation.WRITE, 1024 * 1024, 1, 100 * 1024 * 1024, 1000000000L, latencies);
+        assertEquals(50.0, result.getLatencyMillis(50), 0.001);
+        assertEquals(99.0, result.getLatencyMillis(99), 0.001);
+        assertEquals(100.0, result.getLatencyMillis(100), 0.001);
+        assertEquals(100.0, result.getMegabytesPerSec(), 0.001);
+    }
+
+    @Test
+    public void testPatternInputStream() throws IOException {
+        byte[] pattern = {1, 2, 3};
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (InputStream in = new RepositoryBenchmark.PatternInputStream(pattern, 8)) {
+            byte[] buffer = new byte[2];
+            int n;
+            while ((n = in.read(buffer, 0, buffer.length)) >= 0) {
+                out.write(buffer, 0, n);
+            }
+        }
+        assertTrue(Arrays.equals(new byte[]{1, 2, 3, 1, 2, 3, 1, 2}, out.toByteArray()));
+    }
+
+    @Test
+    public void testBenchInfo() {
+        BenchInfo info = new BenchInfo("{\"chunk_sizes\":[\"1mb\", 512], \"concurrency\":[2], \"blobs\":3}");
+        assertEquals(Arrays.asList(1024L * 1024L, 512L), info.getChunkSizes());
+        assertEquals(Collections.singletonList(2), info.getConcurrency());
+        assertEquals(3, info.getBlobs());
+
+        BenchInfo defaults = new BenchInfo(null);
+        assertEquals(8, defaults.getBlobs());
+    }
+}
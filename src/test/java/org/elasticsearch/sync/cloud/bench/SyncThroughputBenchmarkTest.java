@@ -0,0 +1,171 @@
+package org.elasticsearch.sync.cloud.bench;
+
+import org.elasticsearch.action.bulk.BulkRequestBuilder;
+import org.elasticsearch.client.Client;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.env.Environment;
+import org.elasticsearch.plugins.Plugin;
+import org.elasticsearch.sync.cloud.CloudSyncPlugin;
+import org.elasticsearch.sync.cloud.elastic.ClusterEvents;
+import org.elasticsearch.sync.cloud.elastic.ElasticClient;
+import org.elasticsearch.sync.cloud.start.SyncCoordinator;
+import org.elasticsearch.sync.cloud.status.SyncStats;
+import org.elasticsearch.sync.cloud.utils.IndexInfo;
+import org.elasticsearch.test.ESIntegTestCase;
+import org.elasticsearch.test.InternalTestCluster;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import static org.elasticsearch.test.hamcrest.ElasticsearchAssertions.assertAcked;
+
+/**
+ * End-to-end throughput of a sync: a source and a sink cluster in this JVM share a {@link LatencyFsRepositoryPlugin}
+ * repository, the source snapshots the generated indices and the sink restores them. Reports indices per hour and
+ * bytes per second of primary store, from the start request till the last index is restored with all its documents.
+ * Runs offline, and only with -Dtests.cloudsync.bench=true:
+ *
+ * mvn test -Dtests.cloudsync.bench=true -Dtests.class=org.elasticsearch.sync.cloud.bench.SyncThroughputBenchmarkTest
+ *     -Dtests.cloudsync.bench.indices=20       indices synced.
+ *     -Dtests.cloudsync.bench.docs=2000        documents per index.
+ *     -Dtests.cloudsync.bench.doc_bytes=1024   bytes of random text per document.
+ *     -Dtests.cloudsync.bench.latency=50ms     wait before every blob operation of the repository.
+ *     -Dtests.cloudsync.bench.inflight=2       max_inflight_snapshots of the source.
+ *     -Dtests.cloudsync.bench.batch_size=      (optional) batch_size of the source.
+ */
+@ESIntegTestCase.ClusterScope(scope = ESIntegTestCase.Scope.TEST, numDataNodes = 1, numClientNodes = 0,
+        supportsDedicatedMasters = false)
+public class SyncThroughputBenchmarkTest extends ESIntegTestCase {
+
+    private static final String repository = "cloudsync_backup";
+    private static final String indexPrefix = "bench-";
+
+    private Path repositoryPath;
+
+    @Override
+    protected Collection<Class<? extends Plugin>> nodePlugins() {
+        return Arrays.asList(CloudSyncPlugin.class, LatencyFsRepositoryPlugin.class);
+    }
+
+    @Override
+    protected Settings nodeSettings(int nodeOrdinal) {
+        if (repositoryPath == null) {
+            repositoryPath = createTempDir();
+        }
+        return Settings.builder().put(super.nodeSettings(nodeOrdinal))
+                .put(Environment.PATH_REPO_SETTING.getKey(), repositoryPath.toString())
+                .build();
+    }
+
+    public void testSyncThroughput() throws Exception {
+        assumeTrue("run with -Dtests.cloudsync.bench=true", Boolean.getBoolean("tests.cloudsync.bench"));
+        int indices = Integer.getInteger("tests.cloudsync.bench.indices", 20);
+        int docs = Integer.getInteger("tests.cloudsync.bench.docs", 2000);
+        int docBytes = Integer.getInteger("tests.cloudsync.bench.doc_bytes", 1024);
+        String latency = System.getProperty("tests.cloudsync.bench.latency", "50ms");
+        int inflight = Integer.getInteger("tests.cloudsync.bench.inflight", 2);
+        String batchSize = System.getProperty("tests.cloudsync.bench.batch_size", "");
+
+        //the settings and plugins of the source nodes, with the mock transport of the test framework.
+        InternalTestCluster sink = new InternalTestCluster(randomLong(), createTempDir(), false, true, 1, 1,
+                "sink-" + randomAlphaOfLength(6).toLowerCase(), getNodeConfigSource(), 0, false, "sink",
+                getMockPlugins(), Function.identity());
+        try {
+            sink.beforeTest(random(), 0.0);
+            sink.ensureAtLeastNumDataNodes(1);
+            putRepository(client(), latency);
+            putRepository(sink.client(), latency);
+
+            long primaryBytes = createIndices(indices, docs, docBytes);
+            ElasticClient source = new ElasticClient(client(), internalCluster().getInstance(ClusterEvents.class));
+            ElasticClient sinkClient = new ElasticClient(sink.client(), sink.getInstance(ClusterEvents.class));
+            writeReadyState(source);
+
+            String sourceStart = "{\"mode\":\"source\",\"store\":\"fs\",\"indices\":\"" + indexPrefix + "*\","
+                    + "\"location\":\"" + repositoryPath + "\",\"max_inflight_snapshots\":" + inflight
+                    + (batchSize.isEmpty() ? "" : ",\"batch_size\":\"" + batchSize + "\"") + "}";
+            String sinkStart = "{\"mode\":\"sink\",\"store\":\"fs\",\"location\":\"" + repositoryPath + "\"}";
+            long start = System.nanoTime();
+            assertTrue(sinkClient.updatePersistentSetting(SyncCoordinator.START_SETTING.getKey(), sinkStart));
+            assertTrue(source.updatePersistentSetting(SyncCoordinator.START_SETTING.getKey(), sourceStart));
+
+            assertBusy(() -> {
+                for (int i = 0; i < indices; i++) {
+                    String index = indexPrefix + i;
+                    assertTrue(index + " is not restored", sink.client().admin().indices().prepareExists(index).get().isExists());
+                    assertEquals(docs, sink.client().prepareSearch(index).setSize(0).get().getHits().getTotalHits());
+                }
+            }, 60, TimeUnit.MINUTES);
+            long tookMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+            SyncStats sourceStats = internalCluster().getInstance(SyncStats.class, internalCluster().getMasterName());
+            SyncStats sinkStats = sink.getInstance(SyncStats.class, sink.getMasterName());
+            logger.info("cloud-sync benchmark: {} indices of {} docs ({} bytes of primaries), repository latency {}, "
+                            + "max_inflight_snapshots {}, batch_size [{}]: took {} ms, {} indices/hour, {} bytes/sec "
+                            + "(snapshot {} bytes, restore {} bytes).",
+                    indices, docs, primaryBytes, latency, inflight, batchSize, tookMillis,
+                    indices * 3600000L / Math.max(1, tookMillis), primaryBytes * 1000L / Math.max(1, tookMillis),
+                    sourceStats.getBytes(SyncStats.Phase.SNAPSHOT), sinkStats.getBytes(SyncStats.Phase.RESTORE));
+
+            //stops the sync threads before the clusters close.
+            assertTrue(source.updatePersistentSetting(SyncCoordinator.START_SETTING.getKey(), null));
+            assertTrue(sinkClient.updatePersistentSetting(SyncCoordinator.START_SETTING.getKey(), null));
+        } finally {
+            sink.close();
+        }
+    }
+
+    private void putRepository(Client client, String latency) {
+        assertTrue(client.admin().cluster().preparePutRepository(repository).setType(LatencyFsRepositoryPlugin.TYPE)
+                .setSettings(Settings.builder()
+                        .put("location", repositoryPath.toString())
+                        .put("compress", true)
+                        .put("latency", latency))
+                .get().isAcknowledged());
+    }
+
+    /**
+     * @return bytes of the primaries, after a flush.
+     */
+    private long createIndices(int indices, int docs, int docBytes) {
+        for (int i = 0; i < indices; i++) {
+            String index = indexPrefix + i;
+            assertAcked(prepareCreate(index).setSettings(Settings.builder()
+                    .put("index.number_of_shards", 1).put("index.number_of_replicas", 0)));
+            for (int from = 0; from < docs; from += 1000) {
+                BulkRequestBuilder bulk = client().prepareBulk();
+                for (int doc = from; doc < Math.min(docs, from + 1000); doc++) {
+                    bulk.add(client().prepareIndex(index, "doc", Integer.toString(doc))
+                            .setSource("message", randomAlphaOfLength(docBytes), "@timestamp", System.currentTimeMillis()));
+                }
+                assertFalse(bulk.get().hasFailures());
+            }
+        }
+        client().admin().indices().prepareRefresh(indexPrefix + "*").get();
+        client().admin().indices().prepareFlush(indexPrefix + "*").get();
+        ensureGreen(indexPrefix + "*");
+        return client().admin().indices().prepareStats(indexPrefix + "*").setStore(true).get()
+                .getPrimaries().getStore().getSizeInBytes();
+    }
+
+    /**
+     * What the start request of the source writes, see StartRestAction.
+     */
+    private void writeReadyState(ElasticClient source) throws Exception {
+        assertTrue(source.createStateIndex());
+        Map<String, Long> sizes = source.getIndices(indexPrefix + "*");
+        Map<String, Long> creationDates = source.getIndexCreationDates(indexPrefix + "*");
+        List<IndexInfo> entries = new ArrayList<>(sizes.size());
+        for (Map.Entry<String, Long> index : sizes.entrySet()) {
+            entries.add(new IndexInfo(index.getKey(), index.getValue(), IndexInfo.State.READY)
+                    .withCreationDate(creationDates.getOrDefault(index.getKey(), 0L)));
+        }
+        source.writeState(entries);
+    }
+}
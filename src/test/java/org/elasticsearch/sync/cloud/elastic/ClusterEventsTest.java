@@ -0,0 +1,39 @@
+package org.elasticsearch.sync.cloud.elastic;
+
+import org.elasticsearch.cluster.ClusterChangedEvent;
+import org.elasticsearch.cluster.ClusterName;
+import org.elasticsearch.cluster.ClusterState;
+import org.elasticsearch.cluster.RestoreInProgress;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+
+public class ClusterEventsTest {
+
+    @Test
+    public void testRestoreInProgressWakesWaiters() throws InterruptedException {
+        ClusterEvents events = new ClusterEvents();
+        ClusterState before = ClusterState.builder(ClusterName.DEFAULT).build();
+        ClusterState after = ClusterState.builder(before).putCustom(RestoreInProgress.TYPE, new RestoreInProgress()).build();
+
+        long generation = events.generation();
+        events.clusterChanged(new ClusterChangedEvent("test", after, before));
+        assertEquals(generation + 1, events.generation());
+        assertTrue(events.awaitChange(generation, 10));
+    }
+
+    @Test
+    public void testOtherChangesIgnored() throws InterruptedException {
+        ClusterEvents events = new ClusterEvents();
+        ClusterState before = ClusterState.builder(ClusterName.DEFAULT).build();
+        ClusterState after = ClusterState.builder(before).version(before.version() + 1).build();
+
+        long generation = events.generation();
+        events.clusterChanged(new ClusterChangedEvent("test", after, before));
+        assertEquals(generation, events.generation());
+        assertFalse(events.awaitChange(generation, 10));
+    }
+}
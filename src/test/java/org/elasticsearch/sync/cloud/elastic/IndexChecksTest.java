@@ -0,0 +1,70 @@
+package org.elasticsearch.sync.cloud.elastic;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+
+public class IndexChecksTest {
+
+    private static Map<Integer, Long> docs(long shard0, long shard1) {
+        Map<Integer, Long> docs = new HashMap<>();
+        docs.put(0, shard0);
+        docs.put(1, shard1);
+        return docs;
+    }
+
+    @Test
+    public void testMatches() {
+        IndexChecks expected = new IndexChecks(docs(10, 20), 1024, 100, "abc");
+        assertTrue(expected.mismatches(new IndexChecks(docs(10, 20), 1024, 100, "abc")).isEmpty());
+        //size not read on the sink.
+        assertTrue(expected.mismatches(new IndexChecks(docs(10, 20), -1, 100, "abc")).isEmpty());
+    }
+
+    @Test
+    public void testMismatches() {
+        IndexChecks expected = new IndexChecks(docs(10, 20), 1024, 100, "abc");
+        assertEquals(1, expected.mismatches(new IndexChecks(docs(10, 19), 1024, 100, "abc")).size());
+        assertEquals(1, expected.mismatches(new IndexChecks(Collections.singletonMap(0, 10L), 1024, 100, "abc")).size());
+        assertEquals(1, expected.mismatches(new IndexChecks(docs(10, 20), 1000, 100, "abc")).size());
+        assertEquals(1, expected.mismatches(new IndexChecks(docs(10, 20), 1024, 100, "abd")).size());
+
+        //only the size was recorded.
+        IndexChecks sizeOnly = expected.sizeOnly();
+        assertNull(sizeOnly.getSampleHash());
+        assertTrue(sizeOnly.mismatches(new IndexChecks(docs(1, 2), 1024, 100, "xyz")).isEmpty());
+    }
+
+    @Test
+    public void testSampleHashIgnoresOrder() {
+        Map<String, byte[]> first = new LinkedHashMap<>();
+        first.put("log#1", "{\"a\":1}".getBytes(StandardCharsets.UTF_8));
+        first.put("log#2", "{\"a\":2}".getBytes(StandardCharsets.UTF_8));
+        Map<String, byte[]> second = new LinkedHashMap<>();
+        second.put("log#2", "{\"a\":2}".getBytes(StandardCharsets.UTF_8));
+        second.put("log#1", "{\"a\":1}".getBytes(StandardCharsets.UTF_8));
+        assertEquals(IndexChecks.sampleHash(first), IndexChecks.sampleHash(second));
+
+        second.put("log#1", "{\"a\":3}".getBytes(StandardCharsets.UTF_8));
+        assertNotEquals(IndexChecks.sampleHash(first), IndexChecks.sampleHash(second));
+    }
+
+    @Test
+    public void testMap() {
+        IndexChecks checks = IndexChecks.fromMap(new IndexChecks(docs(10, 20), 1024, 100, "abc").toMap());
+        assertEquals(docs(10, 20), checks.getShardDocs());
+        assertEquals(1024, checks.getSizeInBytes());
+        assertEquals(100, checks.getSampleSize());
+        assertEquals("abc", checks.getSampleHash());
+    }
+}
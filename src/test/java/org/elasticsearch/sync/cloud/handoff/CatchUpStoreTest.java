@@ -0,0 +1,115 @@
+package org.elasticsearch.sync.cloud.handoff;
+
+import org.elasticsearch.action.bulk.BulkRequest;
+import org.elasticsearch.action.index.IndexRequest;
+import org.elasticsearch.common.blobstore.BlobPath;
+import org.elasticsearch.common.blobstore.fs.FsBlobStore;
+import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.text.Text;
+import org.elasticsearch.common.xcontent.XContentType;
+import org.elasticsearch.index.Index;
+import org.elasticsearch.search.SearchHit;
+import org.elasticsearch.search.SearchHitField;
+import org.elasticsearch.search.SearchShardTarget;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+
+public class CatchUpStoreTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private CatchUpStore store;
+
+    @Before
+    public void setUp() throws IOException {
+        FsBlobStore blobStore = new FsBlobStore(Settings.EMPTY, folder.getRoot().toPath());
+        store = new CatchUpStore(blobStore.blobContainer(new BlobPath().add(CatchUpStore.path)));
+    }
+
+    private static SearchHit hit(String id, String source) {
+        SearchHit hit = new SearchHit(0, id, new Text("log"), Collections.emptyMap());
+        hit.shard(new SearchShardTarget("node", new Index("logs-2019-01-01", "uuid"), 0, null));
+        hit.sourceRef(new BytesArray(source));
+        return hit;
+    }
+
+    @Test
+    public void testCursors() throws IOException {
+        store.begin("logs-2019-01-01", 1000L);
+        store.writeCursor(new CatchUpStore.Cursor("logs-2019-01-01", 2000L, 1));
+        store.begin("logs-2019-01-02", 3000L);
+
+        List<CatchUpStore.Cursor> cursors = store.readCursors();
+        assertEquals(2, cursors.size());
+        for (CatchUpStore.Cursor cursor : cursors) {
+            if (cursor.getIndex().equals("logs-2019-01-01")) {
+                assertEquals(2000L, cursor.getFrom());
+                assertEquals(1, cursor.getRound());
+            } else {
+                assertEquals(3000L, cursor.getFrom());
+                assertEquals(0, cursor.getRound());
+            }
+        }
+        store.finish("logs-2019-01-01");
+        store.finish("logs-2019-01-01");
+        assertEquals(1, store.readCursors().size());
+    }
+
+    @Test
+    public void testRoundOfBatches() throws IOException {
+        store.writeBatch("logs-2019-01-01", 1, 0, new SearchHit[]{hit("1", "{\"msg\" : \"a\",\n \"@timestamp\" : 1}")});
+        store.writeBatch("logs-2019-01-01", 1, 1, new SearchHit[]{hit("2", "{\"msg\":\"b\"}"), hit("3", "{\"msg\":\"c\"}")});
+        store.writeRound(new CatchUpStore.Round("logs-2019-01-01", 1, 2, 3, 5000L));
+
+        List<CatchUpStore.Round> rounds = store.readRounds();
+        assertEquals(1, rounds.size());
+        CatchUpStore.Round round = rounds.get(0);
+        assertEquals(2, round.getBatches());
+        assertEquals(3, round.getDocs());
+        assertEquals(5000L, round.getTo());
+
+        byte[] body = store.readBatch("logs-2019-01-01", 1, 1);
+        BulkRequest bulk = new BulkRequest().add(body, 0, body.length, XContentType.JSON);
+        assertEquals(2, bulk.numberOfActions());
+        IndexRequest first = (IndexRequest) bulk.requests().get(0);
+        assertEquals("logs-2019-01-01", first.index());
+        assertEquals("log", first.type());
+        assertEquals("2", first.id());
+
+        store.deleteRound(round);
+        assertTrue(store.readRounds().isEmpty());
+    }
+
+    @Test
+    public void testBulkKeepsRouting() throws IOException {
+        SearchHit hit = new SearchHit(0, "1", new Text("log"),
+                Collections.singletonMap("_routing", new SearchHitField("_routing", Collections.singletonList("user1"))));
+        hit.shard(new SearchShardTarget("node", new Index("logs-2019-01-01", "uuid"), 0, null));
+        hit.sourceRef(new BytesArray("{\"msg\":\"a\"}"));
+        byte[] body = CatchUpStore.toBulk(new SearchHit[]{hit, hit("2", "{\"msg\":\"b\"}")});
+        BulkRequest bulk = new BulkRequest().add(body, 0, body.length, XContentType.JSON);
+        assertEquals("user1", ((IndexRequest) bulk.requests().get(0)).routing());
+        assertNull(((IndexRequest) bulk.requests().get(1)).routing());
+    }
+
+    @Test
+    public void testBulkKeepsOneLinePerSource() throws IOException {
+        byte[] body = CatchUpStore.toBulk(new SearchHit[]{hit("1", "{\n  \"msg\" : \"a\"\n}")});
+        String[] lines = new String(body, "UTF-8").split("\n");
+        assertEquals(2, lines.length);
+        assertEquals("{\"msg\":\"a\"}", lines[1]);
+    }
+}
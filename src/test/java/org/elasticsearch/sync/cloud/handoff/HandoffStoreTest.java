@@ -0,0 +1,156 @@
+package org.elasticsearch.sync.cloud.handoff;
+
+import org.elasticsearch.common.blobstore.BlobContainer;
+import org.elasticsearch.common.blobstore.BlobPath;
+import org.elasticsearch.common.blobstore.fs.FsBlobStore;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.sync.cloud.elastic.IndexChecks;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+
+public class HandoffStoreTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private BlobContainer container;
+    private HandoffStore store;
+
+    @Before
+    public void setUp() throws IOException {
+        FsBlobStore blobStore = new FsBlobStore(Settings.EMPTY, folder.getRoot().toPath());
+        container = blobStore.blobContainer(new BlobPath().add(HandoffStore.path));
+        store = new HandoffStore(container);
+    }
+
+    @Test
+    public void testManifestJson() throws IOException {
+        HandoffManifest manifest = HandoffManifest.empty()
+                .add(new HandoffManifest.Entry("snapshot_logs-2", Arrays.asList("logs-2", "logs-1"), 300L))
+                .add(new HandoffManifest.Entry("snapshot_logs-3", Collections.singletonList("logs-3"), 100L, 1546300800000L,
+                        Collections.singletonMap("logs-3", Collections.singletonMap("index.number_of_replicas", "2")),
+                        Collections.singletonList("logs-3"),
+                        Collections.singletonMap("logs-3", new IndexChecks(Collections.singletonMap(0, 10L), 1024L, 100, "abc"))));
+
+        HandoffManifest read = HandoffManifest.fromJson(manifest.toJson());
+        assertEquals(2, read.getGeneration());
+        assertEquals(400L, read.getSizeInBytes());
+        HandoffManifest.Entry first = read.getSnapshots().iterator().next();
+        assertEquals("snapshot_logs-2", first.getName());
+        assertEquals(Arrays.asList("logs-2", "logs-1"), first.getIndices());
+        assertEquals(0L, first.getStartTime());
+        HandoffManifest.Entry second = read.remove(Collections.singleton("snapshot_logs-2")).getSnapshots().iterator().next();
+        assertEquals(1546300800000L, second.getStartTime());
+        assertEquals("2", second.getSettings("logs-3").get("index.number_of_replicas"));
+        assertTrue(first.getSettings("logs-2").isEmpty());
+        assertEquals(Collections.singletonList("logs-3"), second.getWriteBlocked());
+        assertTrue(first.getWriteBlocked().isEmpty());
+        IndexChecks checks = second.getChecks().get("logs-3");
+        assertEquals(Long.valueOf(10L), checks.getShardDocs().get(0));
+        assertEquals(1024L, checks.getSizeInBytes());
+        assertEquals("abc", checks.getSampleHash());
+        assertTrue(first.getChecks().isEmpty());
+
+        assertSame(read, read.remove(Collections.singleton("snapshot_other")));
+        HandoffManifest removed = read.remove(Collections.singleton("snapshot_logs-2"));
+        assertEquals(3, removed.getGeneration());
+        assertFalse(removed.contains("snapshot_logs-2"));
+        assertTrue(removed.contains("snapshot_logs-3"));
+    }
+
+    @Test
+    public void testPublishKeepsLatestGeneration() throws IOException {
+        assertEquals(-1, store.latestGeneration());
+        assertNull(store.readLatest());
+
+        HandoffManifest manifest = HandoffManifest.empty()
+                .add(new HandoffManifest.Entry("snapshot_a", Collections.singletonList("a"), 10L));
+        store.publish(manifest);
+        manifest = manifest.add(new HandoffManifest.Entry("snapshot_b", Collections.singletonList("b"), 20L));
+        store.publish(manifest);
+
+        assertEquals(2, store.latestGeneration());
+        assertEquals(2, store.readLatest().getSnapshots().size());
+        assertEquals(Collections.singleton("manifest-2"), container.listBlobs().keySet());
+    }
+
+    @Test
+    public void testManifestSinks() throws IOException {
+        HandoffManifest manifest = HandoffManifest.empty()
+                .add(new HandoffManifest.Entry("snapshot_a", Collections.singletonList("a"), 10L));
+        assertTrue(manifest.getSinks().isEmpty());
+        assertSame(manifest, manifest.withSinks(Collections.emptyList()));
+
+        HandoffManifest named = manifest.withSinks(Arrays.asList("us_east", "eu_west"));
+        assertEquals(2, named.getGeneration());
+        assertSame(named, named.withSinks(Arrays.asList("us_east", "eu_west")));
+        HandoffManifest read = HandoffManifest.fromJson(named.remove(Collections.singleton("snapshot_a")).toJson());
+        assertEquals(Arrays.asList("us_east", "eu_west"), read.getSinks());
+        assertTrue(read.getSnapshots().isEmpty());
+    }
+
+    @Test
+    public void testAcks() throws IOException {
+        store.ack("snapshot_a");
+        store.ack("snapshot_b");
+        //written again, e.g. after a restart of the sink.
+        store.ack("snapshot_a");
+        assertEquals(new HashSet<>(Arrays.asList("snapshot_a", "snapshot_b")), store.readAcks());
+
+        store.clearAcks(Arrays.asList("snapshot_a", "snapshot_c"));
+        assertEquals(Collections.singleton("snapshot_b"), store.readAcks());
+    }
+
+    @Test
+    public void testSinkAcks() throws IOException {
+        store.ack("snapshot_logs-1", "us_east");
+        store.ack("snapshot_logs-1", "eu_west");
+        store.ack("snapshot_logs-2", "eu_west");
+        //unnamed acks are kept apart.
+        store.ack("snapshot_logs-3");
+
+        Map<String, Set<String>> acks = store.readSinkAcks();
+        assertEquals(new HashSet<>(Arrays.asList("us_east", "eu_west")), acks.get("snapshot_logs-1"));
+        assertEquals(Collections.singleton("eu_west"), acks.get("snapshot_logs-2"));
+        assertEquals(2, acks.size());
+        assertEquals(Collections.singleton("snapshot_logs-3"), store.readAcks());
+
+        store.clearSinkAcks(Collections.singleton("snapshot_logs-1"), Arrays.asList("us_east", "eu_west"));
+        assertEquals(Collections.singleton("snapshot_logs-2"), store.readSinkAcks().keySet());
+    }
+
+    @Test
+    public void testFailures() throws IOException {
+        store.fail("snapshot_logs-1", null, "logs-1: docs of shard 0 differ");
+        store.fail("snapshot_logs-2", "us_east", "logs-2: index is missing");
+        store.fail("snapshot_logs-3", "us", "logs-3: size differs");
+
+        assertEquals(Collections.singletonMap("snapshot_logs-1", "logs-1: docs of shard 0 differ"), store.readFailures(null));
+        assertEquals(Collections.singletonMap("snapshot_logs-2", "logs-2: index is missing"), store.readFailures("us_east"));
+        assertEquals(Collections.singleton("snapshot_logs-3"), store.readFailures("us").keySet());
+        //not acks.
+        assertTrue(store.readAcks().isEmpty());
+        assertTrue(store.readSinkAcks().isEmpty());
+
+        store.clearFailure("snapshot_logs-1", null);
+        store.clearFailure("snapshot_logs-1", null);
+        assertTrue(store.readFailures(null).isEmpty());
+        assertEquals(1, store.readFailures("us_east").size());
+    }
+}
@@ -0,0 +1,55 @@
+package org.elasticsearch.sync.cloud.start;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+
+public class BaseRetentionTest {
+
+    @Test
+    public void testNewerBaseOfTheSameIndex() {
+        Map<String, List<String>> bases = new HashMap<>();
+        bases.put("base_a_100", Collections.singletonList("a"));
+        bases.put("base_a_200", Collections.singletonList("a"));
+        bases.put("base_b_150", Collections.singletonList("b"));
+        assertEquals(Collections.singleton("base_a_100"), BaseRetention.obsolete(bases));
+    }
+
+    @Test
+    public void testBatchSupersededByIndex() {
+        Map<String, List<String>> bases = new HashMap<>();
+        bases.put("base_a_100", Arrays.asList("a", "b", "c"));
+        //re-synced in other batches, one index at a time.
+        bases.put("base_a_200", Arrays.asList("a", "x"));
+        bases.put("base_b_300", Collections.singletonList("b"));
+        assertTrue(BaseRetention.obsolete(bases).isEmpty());
+
+        bases.put("base_c_400", Arrays.asList("c", "y"));
+        assertEquals(Collections.singleton("base_a_100"), BaseRetention.obsolete(bases));
+    }
+
+    @Test
+    public void testNewerBatchKeepsOlderBaseOfOtherIndices() {
+        Map<String, List<String>> bases = new HashMap<>();
+        bases.put("base_a_100", Collections.singletonList("a"));
+        bases.put("base_b_100", Collections.singletonList("b"));
+        bases.put("base_a_200", Arrays.asList("a", "b"));
+        assertEquals(new HashSet<>(Arrays.asList("base_a_100", "base_b_100")), BaseRetention.obsolete(bases));
+    }
+
+    @Test
+    public void testTakenAt() {
+        assertEquals(200, BaseRetention.takenAt("base_logs_2019_01_200"));
+        assertEquals(0, BaseRetention.takenAt("base_logs"));
+        assertTrue(BaseRetention.obsolete(Collections.emptyMap()).isEmpty());
+    }
+}
@@ -0,0 +1,32 @@
+package org.elasticsearch.sync.cloud.start;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+
+public class InFlightBudgetTest {
+
+    @Test
+    public void testSnapshotCount() {
+        InFlightBudget budget = new InFlightBudget(2, Long.MAX_VALUE);
+        assertTrue(budget.hasRoom(0, 0L, 100L));
+        assertTrue(budget.hasRoom(1, 100L, 100L));
+        assertFalse(budget.hasRoom(2, 200L, 1L));
+    }
+
+    @Test
+    public void testBytes() {
+        InFlightBudget budget = new InFlightBudget(10, 1000L);
+        assertTrue(budget.hasRoom(1, 400L, 600L));
+        assertFalse(budget.hasRoom(1, 400L, 601L));
+    }
+
+    @Test
+    public void testEmptyWindowTakesLargeIndex() {
+        InFlightBudget budget = new InFlightBudget(10, 1000L);
+        assertTrue(budget.hasRoom(0, 0L, 5000L));
+        assertFalse(budget.hasRoom(1, 5000L, 1L));
+    }
+}
@@ -0,0 +1,31 @@
+package org.elasticsearch.sync.cloud.start;
+
+import org.elasticsearch.snapshots.SnapshotState;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+
+public class InFlightReconcilerTest {
+
+    @Test
+    public void testCompleteSnapshotIsNotTakenAgain() {
+        assertEquals(InFlightReconciler.Outcome.PUBLISH, InFlightReconciler.decide(SnapshotState.SUCCESS, false));
+        assertEquals(InFlightReconciler.Outcome.DONE, InFlightReconciler.decide(SnapshotState.SUCCESS, true));
+        //restored and deleted by the sink.
+        assertEquals(InFlightReconciler.Outcome.DONE, InFlightReconciler.decide(null, true));
+    }
+
+    @Test
+    public void testRunningSnapshotIsAwaited() {
+        assertEquals(InFlightReconciler.Outcome.WAIT, InFlightReconciler.decide(SnapshotState.IN_PROGRESS, false));
+    }
+
+    @Test
+    public void testRequeue() {
+        assertEquals(InFlightReconciler.Outcome.REQUEUE, InFlightReconciler.decide(null, false));
+        assertEquals(InFlightReconciler.Outcome.REQUEUE, InFlightReconciler.decide(SnapshotState.FAILED, false));
+        assertEquals(InFlightReconciler.Outcome.REQUEUE, InFlightReconciler.decide(SnapshotState.PARTIAL, false));
+        assertEquals(InFlightReconciler.Outcome.REQUEUE, InFlightReconciler.decide(SnapshotState.INCOMPATIBLE, false));
+    }
+}
@@ -0,0 +1,154 @@
+package org.elasticsearch.sync.cloud.start;
+
+import org.elasticsearch.common.blobstore.BlobPath;
+import org.elasticsearch.common.blobstore.fs.FsBlobStore;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.snapshots.SnapshotId;
+import org.elasticsearch.snapshots.SnapshotInfo;
+import org.elasticsearch.snapshots.SnapshotState;
+import org.elasticsearch.sync.cloud.elastic.IndexChecks;
+import org.elasticsearch.sync.cloud.handoff.HandoffManifest;
+import org.elasticsearch.sync.cloud.handoff.HandoffStore;
+import org.elasticsearch.sync.cloud.utils.IndexInfo;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+
+public class InFlightRecoveryTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private HandoffStore handoff;
+    private StateRegistry registry;
+    //snapshot -> state in the repository.
+    private final Map<String, SnapshotState> repository = new HashMap<>();
+    private final List<String> unblocked = new ArrayList<>();
+    private final List<String> deleted = new ArrayList<>();
+
+    private final InFlightRecovery.Source source = new InFlightRecovery.Source() {
+        @Override
+        public SnapshotInfo getSnapshotInfo(String snapshot) {
+            SnapshotState state = repository.get(snapshot);
+            return state == null ? null : new SnapshotInfo(new SnapshotId(snapshot, "uuid"), Collections.emptyList(), state);
+        }
+
+        @Override
+        public Map<String, List<String>> listSnapshotIndices() {
+            Map<String, List<String>> snapshots = new HashMap<>();
+            for (String snapshot : repository.keySet()) {
+                snapshots.put(snapshot, Collections.emptyList());
+            }
+            return snapshots;
+        }
+
+        @Override
+        public void deleteSnapshot(String snapshot) {
+            deleted.add(snapshot);
+            repository.remove(snapshot);
+        }
+
+        @Override
+        public void removeWriteBlock(String index) {
+            unblocked.add(index);
+        }
+
+        @Override
+        public Map<String, IndexChecks> completeChecks(String snapshot, String[] indices, Map<String, IndexChecks> before) {
+            //the blocked indices did not change since the checks were read.
+            assertTrue(unblocked.isEmpty());
+            return before;
+        }
+
+        @Override
+        public Map<String, Map<String, String>> getSettings(String[] indices) {
+            return Collections.emptyMap();
+        }
+    };
+
+    @Before
+    public void setUp() throws IOException {
+        FsBlobStore blobStore = new FsBlobStore(Settings.EMPTY, folder.getRoot().toPath());
+        handoff = new HandoffStore(blobStore.blobContainer(new BlobPath().add(HandoffStore.path)));
+        registry = new StateRegistry(SchedulingPolicy.NAME.comparator(Collections.emptyMap()), entries -> entries);
+        //the previous source stopped with the batch in flight.
+        registry.load(Arrays.asList(
+                new IndexInfo("logs-1", 100L, IndexInfo.State.SNAPSHOT_INPROGRESS, "snapshot_logs-1"),
+                new IndexInfo("logs-2", 200L, IndexInfo.State.SNAPSHOT_INPROGRESS, "snapshot_logs-1")));
+        //after prepare, before the snapshot: logs-1 write blocked, checks read.
+        handoff.writeInFlight(new HandoffManifest.Entry("snapshot_logs-1", Arrays.asList("logs-1", "logs-2"), 300L, 0,
+                Collections.emptyMap(), Collections.singletonList("logs-1"),
+                Collections.singletonMap("logs-1", new IndexChecks(Collections.singletonMap(0, 10L), 1024L, 100, "abc"))));
+    }
+
+    private HandoffManifest reconcile() throws IOException, InterruptedException {
+        return new InFlightRecovery(source, registry, handoff, 0).reconcile(HandoffManifest.empty(), Collections.emptySet());
+    }
+
+    @Test
+    public void testCompleteSnapshotIsPublishedWithBlocksAndChecks() throws IOException, InterruptedException {
+        //the snapshot completed, the source stopped before moving the batch to SNAPSHOTED.
+        repository.put("snapshot_logs-1", SnapshotState.SUCCESS);
+
+        HandoffManifest manifest = reconcile();
+        HandoffManifest.Entry entry = manifest.getSnapshots().iterator().next();
+        assertEquals(Collections.singletonList("logs-1"), entry.getWriteBlocked());
+        assertEquals(Collections.singleton("logs-1"), entry.getChecks().keySet());
+        assertEquals(300L, entry.getSizeInBytes());
+        assertEquals(Collections.singletonList("logs-1"), unblocked);
+        assertEquals(IndexInfo.State.SNAPSHOTED, registry.get("logs-2").getState());
+
+        HandoffManifest.Entry published = handoff.readLatest().getSnapshots().iterator().next();
+        assertEquals(Collections.singletonList("logs-1"), published.getWriteBlocked());
+        assertEquals(Long.valueOf(10L), published.getChecks().get("logs-1").getShardDocs().get(0));
+        assertNull(handoff.readInFlight("snapshot_logs-1"));
+    }
+
+    @Test
+    public void testSnapshotNeverTakenIsRequeuedAndUnblocked() throws IOException, InterruptedException {
+        HandoffManifest manifest = reconcile();
+        assertTrue(manifest.getSnapshots().isEmpty());
+        assertNull(handoff.readLatest());
+        assertEquals(Collections.singletonList("logs-1"), unblocked);
+        assertEquals(IndexInfo.State.READY, registry.get("logs-1").getState());
+        assertNull(handoff.readInFlight("snapshot_logs-1"));
+    }
+
+    @Test
+    public void testPartialSnapshotIsDeleted() throws IOException, InterruptedException {
+        repository.put("snapshot_logs-1", SnapshotState.PARTIAL);
+
+        reconcile();
+        assertEquals(Collections.singletonList("snapshot_logs-1"), deleted);
+        assertEquals(Collections.singletonList("logs-1"), unblocked);
+        assertEquals(2, registry.count(IndexInfo.State.READY));
+    }
+
+    @Test
+    public void testUnlistedSnapshotIsPublished() throws IOException, InterruptedException {
+        //moved to SNAPSHOTED, stopped before the publish: the blocks were removed after the snapshot.
+        registry.move(registry.inState(IndexInfo.State.SNAPSHOT_INPROGRESS), IndexInfo.State.SNAPSHOTED, "snapshot_logs-1");
+        repository.put("snapshot_logs-1", SnapshotState.SUCCESS);
+
+        HandoffManifest manifest = reconcile();
+        assertTrue(manifest.contains("snapshot_logs-1"));
+        assertFalse(manifest.getSnapshots().iterator().next().getChecks().isEmpty());
+        assertEquals(Collections.singletonList("logs-1"), manifest.getSnapshots().iterator().next().getWriteBlocked());
+        assertNull(handoff.readInFlight("snapshot_logs-1"));
+    }
+}
@@ -0,0 +1,64 @@
+package org.elasticsearch.sync.cloud.start;
+
+import org.elasticsearch.sync.cloud.utils.IndexInfo;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+
+public class IndexSchedulerTest {
+
+    private List<IndexInfo> indices() {
+        List<IndexInfo> list = new ArrayList<>();
+        list.add(new IndexInfo("logs-2019-01-01", 300L, IndexInfo.State.READY).withCreationDate(3000L));
+        list.add(new IndexInfo("logs-2019-01-03", 100L, IndexInfo.State.READY).withCreationDate(1000L));
+        list.add(new IndexInfo("audit-2019-01-02", 200L, IndexInfo.State.READY).withCreationDate(2000L));
+        return list;
+    }
+
+    private String first(SchedulingPolicy policy, Map<String, Integer> priorities) {
+        IndexScheduler scheduler = new IndexScheduler(policy.comparator(priorities));
+        scheduler.addAll(indices());
+        return scheduler.poll(1).get(0).getName();
+    }
+
+    @Test
+    public void testPolicies() {
+        Map<String, Integer> none = Collections.emptyMap();
+        assertEquals("logs-2019-01-03", first(SchedulingPolicy.NAME, none));
+        assertEquals("logs-2019-01-03", first(SchedulingPolicy.SMALLEST_FIRST, none));
+        assertEquals("logs-2019-01-01", first(SchedulingPolicy.LARGEST_FIRST, none));
+        assertEquals("logs-2019-01-01", first(SchedulingPolicy.NEWEST_FIRST, none));
+
+        Map<String, Integer> priorities = new HashMap<>();
+        priorities.put("audit-*", 10);
+        priorities.put("logs-*", 1);
+        assertEquals("audit-2019-01-02", first(SchedulingPolicy.WEIGHTED, priorities));
+        assertEquals(0, SchedulingPolicy.weight("metrics-2019", priorities));
+        assertEquals(SchedulingPolicy.WEIGHTED, SchedulingPolicy.fromString("weighted"));
+    }
+
+    @Test
+    public void testPollAndPutBack() {
+        IndexScheduler scheduler = new IndexScheduler(SchedulingPolicy.NAME.comparator(Collections.emptyMap()));
+        scheduler.addAll(indices());
+
+        List<IndexInfo> head = scheduler.poll(2);
+        assertEquals(2, head.size());
+        assertEquals("logs-2019-01-03", head.get(0).getName());
+        assertEquals("logs-2019-01-01", head.get(1).getName());
+        assertEquals(1, scheduler.size());
+
+        scheduler.putBack(head.subList(1, 2));
+        assertEquals("logs-2019-01-01", scheduler.poll(1).get(0).getName());
+        assertEquals(1, scheduler.poll(5).size());
+        assertTrue(scheduler.isEmpty());
+    }
+}
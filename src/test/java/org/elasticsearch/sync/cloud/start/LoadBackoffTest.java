@@ -0,0 +1,50 @@
+package org.elasticsearch.sync.cloud.start;
+
+import org.elasticsearch.sync.cloud.elastic.NodeLoad;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+
+public class LoadBackoffTest {
+
+    private final LoadBackoff backoff = new LoadBackoff(0, 10, 100, 500, 1000, 5000);
+
+    private static NodeLoad load(long writeQueue, long searchQueue, long writeRejected, long searchRejected) {
+        return new NodeLoad(0, 0, 0, writeQueue, 0, searchQueue, writeRejected, searchRejected);
+    }
+
+    @Test
+    public void testHealthy() {
+        assertEquals(0, backoff.nextDelay(0, null, load(100, 500, 50, 50)));
+        assertEquals(0, backoff.nextDelay(4000, load(0, 0, 50, 50), load(0, 0, 50, 60)));
+    }
+
+    @Test
+    public void testQueues() {
+        assertEquals(1000, backoff.nextDelay(0, null, load(101, 0, 0, 0)));
+        assertEquals(1000, backoff.nextDelay(0, null, load(0, 501, 0, 0)));
+    }
+
+    @Test
+    public void testRejectionsSinceLastSample() {
+        assertEquals(1000, backoff.nextDelay(0, load(0, 0, 5, 0), load(0, 0, 6, 0)));
+        assertEquals(1000, backoff.nextDelay(0, load(0, 0, 0, 0), load(0, 0, 0, 11)));
+        //a restarted node resets its counters.
+        assertEquals(0, backoff.nextDelay(0, load(0, 0, 100, 0), load(0, 0, 10, 0)));
+    }
+
+    @Test
+    public void testExponential() {
+        NodeLoad overloaded = load(200, 0, 0, 0);
+        long delay = backoff.nextDelay(0, null, overloaded);
+        assertEquals(1000, delay);
+        delay = backoff.nextDelay(delay, overloaded, overloaded);
+        assertEquals(2000, delay);
+        delay = backoff.nextDelay(delay, overloaded, overloaded);
+        assertEquals(4000, delay);
+        delay = backoff.nextDelay(delay, overloaded, overloaded);
+        assertEquals(5000, delay);
+        assertEquals(0, backoff.nextDelay(delay, overloaded, load(0, 0, 0, 0)));
+    }
+}
@@ -0,0 +1,66 @@
+package org.elasticsearch.sync.cloud.start;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.InputMismatchException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+
+public class MigrationWindowsTest {
+
+    private static final String windows = "{\"mode\":\"source\",\"timezone\":\"America/Denver\",\"windows\":["
+            + "{\"days\":[\"mon\",\"tue\",\"wed\",\"thu\",\"fri\"],\"start\":\"08:00\",\"end\":\"18:00\",\"action\":\"throttle\",\"max_rate\":\"20mb\"},"
+            + "{\"days\":[\"fri\"],\"start\":\"22:00\",\"end\":\"02:00\",\"action\":\"pause\"},"
+            + "{\"days\":[\"mon\"],\"start\":\"12:00\",\"end\":\"13:00\",\"action\":\"throttle\",\"max_rate\":\"5mb\"}]}";
+
+    //2024-01-01 is a Monday.
+    private static long at(int day, int hour, int minute) {
+        return ZonedDateTime.of(2024, 1, day, hour, minute, 0, 0, ZoneId.of("America/Denver")).toInstant().toEpochMilli();
+    }
+
+    @Test
+    public void testNone() throws IOException {
+        StartInfo startInfo = new StartInfo("{\"mode\":\"source\"}");
+        assertTrue(startInfo.getWindows().isEmpty());
+        assertEquals(MigrationWindows.Action.RUN, startInfo.getWindows().actionAt(at(1, 10, 0)));
+        assertEquals(-1, startInfo.getWindows().maxRateAt(at(1, 10, 0)));
+    }
+
+    @Test
+    public void testThrottleWindow() throws IOException {
+        MigrationWindows windows = new StartInfo(MigrationWindowsTest.windows).getWindows();
+        assertEquals(MigrationWindows.Action.THROTTLE, windows.actionAt(at(2, 8, 0)));
+        assertEquals(20L * 1024 * 1024, windows.maxRateAt(at(2, 17, 59)));
+        assertEquals(MigrationWindows.Action.RUN, windows.actionAt(at(2, 18, 0)));
+        assertEquals(MigrationWindows.Action.RUN, windows.actionAt(at(6, 10, 0)));
+        //overlapping throttle windows, the lowest rate wins.
+        assertEquals(5L * 1024 * 1024, windows.maxRateAt(at(1, 12, 30)));
+    }
+
+    @Test
+    public void testOverMidnight() throws IOException {
+        MigrationWindows windows = new StartInfo(MigrationWindowsTest.windows).getWindows();
+        assertEquals(MigrationWindows.Action.PAUSE, windows.actionAt(at(5, 23, 0)));
+        //saturday morning belongs to the friday window.
+        assertEquals(MigrationWindows.Action.PAUSE, windows.actionAt(at(6, 1, 59)));
+        assertEquals(MigrationWindows.Action.RUN, windows.actionAt(at(6, 2, 0)));
+        //the window does not start on thursday.
+        assertEquals(MigrationWindows.Action.RUN, windows.actionAt(at(4, 23, 0)));
+        assertEquals(MigrationWindows.Action.RUN, windows.actionAt(at(5, 1, 0)));
+    }
+
+    @Test(expected = InputMismatchException.class)
+    public void testThrottleWithoutRate() throws IOException {
+        new StartInfo("{\"mode\":\"source\",\"windows\":[{\"start\":\"08:00\",\"end\":\"18:00\",\"action\":\"throttle\"}]}");
+    }
+
+    @Test(expected = InputMismatchException.class)
+    public void testInvalidDay() throws IOException {
+        new StartInfo("{\"mode\":\"source\",\"windows\":[{\"days\":[\"xyz\"],\"start\":\"08:00\",\"end\":\"18:00\",\"action\":\"pause\"}]}");
+    }
+}
@@ -0,0 +1,45 @@
+package org.elasticsearch.sync.cloud.start;
+
+import org.elasticsearch.sync.cloud.utils.IndexInfo;
+import org.junit.Test;
+
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+
+public class PreparePolicyTest {
+
+    private static final long day = 24 * 3600 * 1000L;
+
+    @Test
+    public void testCold() throws IOException {
+        PreparePolicy policy = new StartInfo("{\"mode\":\"source\",\"prepare\":{\"min_age\":\"7d\"}}").getPrepare();
+        long now = 100 * day;
+        assertTrue(policy.isCold(new IndexInfo("logs-1", 10L, IndexInfo.State.READY).withCreationDate(now - 8 * day), now));
+        assertFalse(policy.isCold(new IndexInfo("logs-2", 10L, IndexInfo.State.READY).withCreationDate(now - day), now));
+        //creation time not known.
+        assertFalse(policy.isCold(new IndexInfo("logs-3", 10L, IndexInfo.State.READY), now));
+        assertTrue(policy.isMerging());
+        assertEquals(1, policy.getMaxNumSegments());
+    }
+
+    @Test
+    public void testMergeRate() throws IOException {
+        PreparePolicy policy = new StartInfo("{\"mode\":\"source\",\"prepare\":{\"max_rate\":1000}}").getPrepare();
+        assertEquals(4000, policy.pauseMillis(5000, 1000));
+        assertEquals(0, policy.pauseMillis(5000, 6000));
+
+        PreparePolicy unlimited = new PreparePolicy(0, 0, -1);
+        assertEquals(0, unlimited.pauseMillis(5000, 0));
+        assertFalse(unlimited.isMerging());
+    }
+
+    @Test
+    public void testNotSet() throws IOException {
+        assertNull(new StartInfo("{\"mode\":\"source\"}").getPrepare());
+    }
+}
@@ -0,0 +1,68 @@
+package org.elasticsearch.sync.cloud.start;
+
+import org.elasticsearch.common.settings.Settings;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.InputMismatchException;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+
+public class RestoreProfileTest {
+
+    private static final long day = 24 * 3600 * 1000L;
+
+    private final RestoreProfile profile = new StartInfo("{\"mode\":\"sink\",\"restore_profile\":{"
+            + "\"require\":{\"box_type\":\"ingest\"},"
+            + "\"tiers\":[{\"min_age\":\"7d\",\"replicas\":1},{\"min_age\":\"30d\",\"replicas\":0}]}}").getRestoreProfile();
+
+    public RestoreProfileTest() throws IOException {
+    }
+
+    @Test
+    public void testRestoreSettings() {
+        Settings settings = profile.restoreSettings();
+        assertEquals("0", settings.get(RestoreProfile.replicasKey));
+        assertEquals("-1", settings.get(RestoreProfile.refreshKey));
+        assertEquals("ingest", settings.get("index.routing.allocation.require.box_type"));
+    }
+
+    @Test
+    public void testTargetFromSource() {
+        Map<String, String> source = new HashMap<>();
+        source.put(RestoreProfile.replicasKey, "2");
+        source.put(RestoreProfile.refreshKey, "30s");
+
+        Map<String, String> target = profile.targetSettings(source, day);
+        assertEquals("2", target.get(RestoreProfile.replicasKey));
+        assertEquals("30s", target.get(RestoreProfile.refreshKey));
+        assertTrue(target.containsKey("index.routing.allocation.require.box_type"));
+        assertNull(target.get("index.routing.allocation.require.box_type"));
+
+        //not known, the defaults.
+        target = profile.targetSettings(Collections.emptyMap(), -1);
+        assertEquals("1", target.get(RestoreProfile.replicasKey));
+        assertTrue(target.containsKey(RestoreProfile.refreshKey));
+        assertNull(target.get(RestoreProfile.refreshKey));
+    }
+
+    @Test
+    public void testAgeTiers() {
+        Map<String, String> source = Collections.singletonMap(RestoreProfile.replicasKey, "2");
+        assertEquals("2", profile.targetSettings(source, 6 * day).get(RestoreProfile.replicasKey));
+        assertEquals("1", profile.targetSettings(source, 7 * day).get(RestoreProfile.replicasKey));
+        assertEquals("1", profile.targetSettings(source, 29 * day).get(RestoreProfile.replicasKey));
+        assertEquals("0", profile.targetSettings(source, 400 * day).get(RestoreProfile.replicasKey));
+    }
+
+    @Test(expected = InputMismatchException.class)
+    public void testTierWithoutReplicas() throws IOException {
+        new StartInfo("{\"mode\":\"sink\",\"restore_profile\":{\"tiers\":[{\"min_age\":\"7d\"}]}}");
+    }
+}
@@ -0,0 +1,65 @@
+package org.elasticsearch.sync.cloud.start;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.InputMismatchException;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+
+public class SinkFanOutTest {
+
+    @Test
+    public void testReleasedOnceEverySinkAcked() {
+        SinkFanOut fanOut = SinkFanOut.fromList(Arrays.asList("us_east", "eu_west"));
+        Map<String, Set<String>> acks = new HashMap<>();
+        acks.put("snapshot_a", new HashSet<>(Arrays.asList("us_east", "eu_west")));
+        acks.put("snapshot_b", Collections.singleton("eu_west"));
+        //a sink no longer registered does not count.
+        acks.put("snapshot_c", new HashSet<>(Arrays.asList("us_east", "ap_south")));
+
+        assertEquals(Collections.singleton("snapshot_a"), fanOut.released(acks));
+        assertEquals(Collections.singleton("us_east"), fanOut.pending("snapshot_b", acks));
+        assertEquals(Collections.singleton("eu_west"), fanOut.pending("snapshot_c", acks));
+        assertEquals(fanOut.getSinks(), fanOut.pending("snapshot_d", acks));
+        assertTrue(fanOut.pending("snapshot_a", acks).isEmpty());
+    }
+
+    @Test(expected = InputMismatchException.class)
+    public void testNameWithSeparator() {
+        SinkFanOut.fromList(Collections.singletonList("us-east"));
+    }
+
+    @Test(expected = InputMismatchException.class)
+    public void testNoSinks() {
+        SinkFanOut.fromList(Collections.emptyList());
+    }
+
+    @Test(expected = InputMismatchException.class)
+    public void testUnnamedSinkOfNamedSinksIsRejected() {
+        SinkFanOut.checkSink(null, Arrays.asList("us_east", "eu_west"));
+    }
+
+    @Test(expected = InputMismatchException.class)
+    public void testUnlistedSinkIsRejected() {
+        SinkFanOut.checkSink("ap_south", Arrays.asList("us_east", "eu_west"));
+    }
+
+    @Test(expected = InputMismatchException.class)
+    public void testNamedSinkOfUnnamedSourceIsRejected() {
+        SinkFanOut.checkSink("us_east", Collections.emptyList());
+    }
+
+    @Test
+    public void testListedSinks() {
+        SinkFanOut.checkSink("us_east", Arrays.asList("us_east", "eu_west"));
+        SinkFanOut.checkSink(null, Collections.emptyList());
+    }
+}
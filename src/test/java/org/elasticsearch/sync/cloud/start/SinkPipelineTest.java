@@ -0,0 +1,40 @@
+package org.elasticsearch.sync.cloud.start;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+
+public class SinkPipelineTest {
+
+    @Test
+    public void testAcquireHoldsSlotTillDone() throws InterruptedException {
+        SinkPipeline pipeline = new SinkPipeline(1);
+        //taken before the restore starts.
+        Runnable done = pipeline.acquire("snapshot_a");
+        assertTrue(pipeline.isPending("snapshot_a"));
+
+        CountDownLatch acquired = new CountDownLatch(1);
+        Thread second = new Thread(() -> {
+            try {
+                pipeline.acquire("snapshot_b").run();
+                acquired.countDown();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        second.start();
+        assertFalse(acquired.await(200, TimeUnit.MILLISECONDS));
+
+        done.run();
+        done.run();
+        assertTrue(acquired.await(10, TimeUnit.SECONDS));
+        second.join();
+        assertEquals(0, pipeline.pendingCount());
+    }
+}
@@ -0,0 +1,170 @@
+package org.elasticsearch.sync.cloud.start;
+
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.sync.cloud.elastic.IndexChecks;
+import org.elasticsearch.sync.cloud.handoff.HandoffManifest;
+import org.elasticsearch.sync.cloud.status.SyncStats;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+
+public class SinkStagesTest {
+
+    private final List<String> calls = new ArrayList<>();
+    private final List<String> finished = new ArrayList<>();
+    private final Map<String, String> mismatched = new HashMap<>();
+    //calls failing once.
+    private final List<String> failOnce = new ArrayList<>();
+    private List<String> mismatches = Collections.emptyList();
+
+    private final SinkStages.Sink sink = new SinkStages.Sink() {
+        @Override
+        public boolean restore(HandoffManifest.Entry snapshot) throws IOException {
+            call("restore");
+            return true;
+        }
+
+        @Override
+        public Map<String, Long> restoredSizes(HandoffManifest.Entry snapshot) {
+            return Collections.singletonMap("logs-1", 1024L);
+        }
+
+        @Override
+        public long settle(HandoffManifest.Entry snapshot) throws IOException {
+            call("settle");
+            return 1024L;
+        }
+
+        @Override
+        public void waitForGreen(HandoffManifest.Entry snapshot, ActionListener<Void> listener) {
+            respond("green", null, listener);
+        }
+
+        @Override
+        public void verify(HandoffManifest.Entry snapshot, Map<String, Long> restoredSizes,
+                           ActionListener<List<String>> listener) {
+            respond("verify", mismatches, listener);
+        }
+
+        @Override
+        public void delete(HandoffManifest.Entry snapshot, ActionListener<Boolean> listener) {
+            respond("delete", true, listener);
+        }
+
+        @Override
+        public void finished(String snapshot) {
+            finished.add(snapshot);
+        }
+
+        @Override
+        public void mismatched(String snapshot, String reason) {
+            mismatched.put(snapshot, reason);
+        }
+    };
+
+    private void call(String stage) throws IOException {
+        calls.add(stage);
+        if (failOnce.remove(stage)) {
+            throw new IOException(stage + " failed");
+        }
+    }
+
+    private <T> void respond(String stage, T response, ActionListener<T> listener) {
+        calls.add(stage);
+        if (failOnce.remove(stage)) {
+            listener.onFailure(new IOException(stage + " failed"));
+        } else {
+            listener.onResponse(response);
+        }
+    }
+
+    private static HandoffManifest.Entry entry(boolean checked) {
+        return new HandoffManifest.Entry("snapshot_logs-1", Collections.singletonList("logs-1"), 1024L, 0,
+                Collections.emptyMap(), Collections.emptyList(), checked
+                ? Collections.singletonMap("logs-1", new IndexChecks(Collections.singletonMap(0, 10L), 1024L, 0, ""))
+                : Collections.emptyMap());
+    }
+
+    @Test
+    public void testStagesRunInOrder() {
+        SinkStages stages = new SinkStages(sink, new SyncStats(), true, 0);
+        int[] done = new int[1];
+        assertTrue(stages.run(entry(true), () -> done[0]++));
+        assertEquals(Arrays.asList("restore", "settle", "green", "verify", "delete"), calls);
+        assertEquals(Collections.singletonList("snapshot_logs-1"), finished);
+        assertEquals(1, done[0]);
+        assertEquals(SinkStages.Stage.RESTORE, stages.stageOf("snapshot_logs-1"));
+    }
+
+    @Test
+    public void testFailedDeleteIsRetriedWithoutRestore() {
+        SinkStages stages = new SinkStages(sink, new SyncStats(), true, 0);
+        failOnce.add("delete");
+        int[] done = new int[1];
+        assertTrue(stages.run(entry(false), () -> done[0]++));
+        assertEquals(1, done[0]);
+        assertTrue(finished.isEmpty());
+        assertEquals(SinkStages.Stage.DELETE, stages.stageOf("snapshot_logs-1"));
+
+        //the next pass of the sink.
+        calls.clear();
+        assertTrue(stages.run(entry(false), () -> done[0]++));
+        assertEquals(Collections.singletonList("delete"), calls);
+        assertEquals(Collections.singletonList("snapshot_logs-1"), finished);
+        assertEquals(2, done[0]);
+    }
+
+    @Test
+    public void testFailedSettleIsRetriedWithoutRestore() {
+        SinkStages stages = new SinkStages(sink, new SyncStats(), true, 0);
+        failOnce.add("settle");
+        assertFalse(stages.run(entry(false), () -> {}));
+        assertEquals(SinkStages.Stage.SETTLE, stages.stageOf("snapshot_logs-1"));
+
+        calls.clear();
+        assertTrue(stages.run(entry(false), () -> {}));
+        assertEquals(Arrays.asList("settle", "green", "delete"), calls);
+    }
+
+    @Test
+    public void testFailedStageWaits() {
+        SinkStages stages = new SinkStages(sink, new SyncStats(), true, 60000);
+        failOnce.add("green");
+        assertTrue(stages.run(entry(false), () -> {}));
+        assertFalse(stages.isDue("snapshot_logs-1"));
+        assertEquals(SinkStages.Stage.GREEN, stages.stageOf("snapshot_logs-1"));
+
+        //no longer in the manifest.
+        stages.retain(Collections.emptySet());
+        assertTrue(stages.isDue("snapshot_logs-1"));
+    }
+
+    @Test
+    public void testMismatchKeepsSnapshot() {
+        SinkStages stages = new SinkStages(sink, new SyncStats(), true, 0);
+        mismatches = Collections.singletonList("logs-1: docs");
+        assertTrue(stages.run(entry(true), () -> {}));
+        assertEquals("logs-1: docs", mismatched.get("snapshot_logs-1"));
+        assertFalse(calls.contains("delete"));
+        assertTrue(finished.isEmpty());
+    }
+
+    @Test
+    public void testNamedSinkDoesNotDelete() {
+        SinkStages stages = new SinkStages(sink, new SyncStats(), false, 0);
+        assertTrue(stages.run(entry(false), () -> {}));
+        assertFalse(calls.contains("delete"));
+        assertEquals(Collections.singletonList("snapshot_logs-1"), finished);
+    }
+}
@@ -0,0 +1,62 @@
+package org.elasticsearch.sync.cloud.start;
+
+import org.elasticsearch.sync.cloud.utils.IndexInfo;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+
+
+public class SnapshotBatcherTest {
+
+    @Test
+    public void testPacksBySize() {
+        List<IndexInfo> ready = new ArrayList<>();
+        ready.add(new IndexInfo("logs-2019-01-04", 600L, IndexInfo.State.READY));
+        ready.add(new IndexInfo("logs-2019-01-03", 500L, IndexInfo.State.READY));
+        ready.add(new IndexInfo("logs-2019-01-02", 300L, IndexInfo.State.READY));
+        ready.add(new IndexInfo("logs-2019-01-01", 100L, IndexInfo.State.READY));
+
+        List<IndexInfo> batch = new SnapshotBatcher(1000L).nextBatch(ready, Collections.emptyMap());
+        assertEquals(3, batch.size());
+        assertEquals("logs-2019-01-04", batch.get(0).getName());
+        assertEquals("logs-2019-01-02", batch.get(1).getName());
+        assertEquals("logs-2019-01-01", batch.get(2).getName());
+    }
+
+    @Test
+    public void testFirstIndexAlwaysTaken() {
+        List<IndexInfo> ready = new ArrayList<>();
+        ready.add(new IndexInfo("logs-2019-01-02", 5000L, IndexInfo.State.READY));
+        ready.add(new IndexInfo("logs-2019-01-01", 100L, IndexInfo.State.READY));
+
+        List<IndexInfo> batch = new SnapshotBatcher(1000L).nextBatch(ready, Collections.emptyMap());
+        assertEquals(1, batch.size());
+        assertEquals("logs-2019-01-02", batch.get(0).getName());
+        assertEquals(0, new SnapshotBatcher(1000L).nextBatch(new ArrayList<>(), Collections.emptyMap()).size());
+    }
+
+    @Test
+    public void testSpreadsOverNodes() {
+        List<IndexInfo> ready = new ArrayList<>();
+        ready.add(new IndexInfo("logs-a", 400L, IndexInfo.State.READY));
+        ready.add(new IndexInfo("logs-b", 400L, IndexInfo.State.READY));
+        ready.add(new IndexInfo("logs-c", 400L, IndexInfo.State.READY));
+
+        Map<String, Map<String, Long>> primaries = new HashMap<>();
+        primaries.put("logs-a", Collections.singletonMap("node1", 400L));
+        primaries.put("logs-b", Collections.singletonMap("node1", 400L));
+        primaries.put("logs-c", Collections.singletonMap("node2", 400L));
+
+        //logs-b would put the whole batch on node1.
+        List<IndexInfo> batch = new SnapshotBatcher(800L).nextBatch(ready, primaries);
+        assertEquals(2, batch.size());
+        assertEquals("logs-a", batch.get(0).getName());
+        assertEquals("logs-c", batch.get(1).getName());
+    }
+}
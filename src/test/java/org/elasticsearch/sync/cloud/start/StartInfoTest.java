@@ -0,0 +1,73 @@
+package org.elasticsearch.sync.cloud.start;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.InputMismatchException;
+import java.util.LinkedHashSet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+
+public class StartInfoTest {
+
+    @Test
+    public void testDefaults() throws IOException {
+        StartInfo startInfo = new StartInfo("{\"mode\":\"source\",\"store\":\"fs\",\"indices\":\"logs-*\",\"location\":\"/tmp\"}");
+        assertEquals(StartInfo.SOURCE, startInfo.getMode());
+        assertEquals(1, startInfo.getMaxInflightSnapshots());
+        assertEquals(Long.MAX_VALUE, startInfo.getMaxInflightBytes());
+        assertEquals(2, startInfo.getMaxSinkStages());
+        assertFalse(startInfo.isIncremental());
+        assertFalse(startInfo.isBatching());
+    }
+
+    @Test
+    public void testInflightBudget() throws IOException {
+        StartInfo startInfo = new StartInfo("{\"mode\":\"source\",\"max_inflight_snapshots\":4,\"max_inflight_bytes\":\"2gb\"}");
+        assertEquals(4, startInfo.getMaxInflightSnapshots());
+        assertEquals(2L * 1024 * 1024 * 1024, startInfo.getMaxInflightBytes());
+
+        startInfo = new StartInfo("{\"mode\":\"source\",\"max_inflight_bytes\":1024}");
+        assertEquals(1024L, startInfo.getMaxInflightBytes());
+    }
+
+    @Test
+    public void testIncremental() throws IOException {
+        StartInfo startInfo = new StartInfo("{\"mode\":\"sink\",\"incremental\":true}");
+        assertTrue(startInfo.isIncremental());
+    }
+
+    @Test
+    public void testCatchUp() throws IOException {
+        StartInfo startInfo = new StartInfo("{\"mode\":\"source\",\"catch_up\":{\"timestamp_field\":\"@timestamp\",\"max_lag_ms\":30000}}");
+        assertEquals("@timestamp", startInfo.getCatchUp().getTimestampField());
+        assertEquals(30000L, startInfo.getCatchUp().getMaxLagMillis());
+        assertEquals(10000L, startInfo.getCatchUp().getMarginMillis());
+        assertEquals(5000, startInfo.getCatchUp().getBatchDocs());
+        assertEquals(2, startInfo.getCatchUp().getWorkers());
+    }
+
+    @Test(expected = InputMismatchException.class)
+    public void testCatchUpMarginBelowMaxLag() throws IOException {
+        new StartInfo("{\"mode\":\"source\",\"catch_up\":{\"timestamp_field\":\"@timestamp\",\"max_lag_ms\":5000,\"margin_ms\":5000}}");
+    }
+
+    @Test
+    public void testSinks() throws IOException {
+        StartInfo source = new StartInfo("{\"mode\":\"source\",\"sinks\":[\"us_east\",\"eu_west\"]}");
+        assertEquals(new LinkedHashSet<>(Arrays.asList("us_east", "eu_west")), source.getSinks().getSinks());
+        StartInfo sink = new StartInfo("{\"mode\":\"sink\",\"sink_name\":\"eu_west\"}");
+        assertEquals("eu_west", sink.getSinkName());
+        assertNull(sink.getSinks());
+    }
+
+    @Test(expected = InputMismatchException.class)
+    public void testSinksWithCatchUp() throws IOException {
+        new StartInfo("{\"mode\":\"source\",\"sinks\":[\"us_east\"],\"catch_up\":{\"timestamp_field\":\"@timestamp\"}}");
+    }
+}
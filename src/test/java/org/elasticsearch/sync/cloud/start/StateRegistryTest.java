@@ -0,0 +1,90 @@
+package org.elasticsearch.sync.cloud.start;
+
+import org.elasticsearch.sync.cloud.utils.IndexInfo;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+
+public class StateRegistryTest {
+
+    //bulk requests written, each the entries it got.
+    private final List<List<IndexInfo>> writes = new ArrayList<>();
+    private StateRegistry registry;
+
+    @Before
+    public void setUp() {
+        registry = new StateRegistry(SchedulingPolicy.NAME.comparator(Collections.emptyMap()), entries -> {
+            writes.add(entries);
+            List<IndexInfo> written = new ArrayList<>();
+            for (IndexInfo entry : entries) {
+                written.add(entry.withVersion(entry.getVersion() + 1));
+            }
+            return written;
+        });
+        registry.load(Arrays.asList(
+                new IndexInfo("logs-1", 100L, IndexInfo.State.READY).withVersion(1),
+                new IndexInfo("logs-2", 200L, IndexInfo.State.READY).withVersion(1),
+                new IndexInfo("logs-3", 300L, IndexInfo.State.SNAPSHOTED, "snapshot_logs-3").withVersion(4)));
+    }
+
+    @Test
+    public void testMovesAreWrittenBehind() throws IOException {
+        assertEquals(2, registry.count(IndexInfo.State.READY));
+        List<IndexInfo> batch = registry.poll(1);
+        assertEquals("logs-2", batch.get(0).getName());
+
+        registry.move(batch, IndexInfo.State.SNAPSHOT_INPROGRESS, "snapshot_logs-2");
+        registry.move(batch, IndexInfo.State.SNAPSHOTED, "snapshot_logs-2");
+        assertTrue(writes.isEmpty());
+        assertEquals(1, registry.dirtyCount());
+        assertEquals(2, registry.count(IndexInfo.State.SNAPSHOTED));
+        assertEquals(1, registry.ofSnapshots(Collections.singleton("snapshot_logs-2")).size());
+
+        //only the latest change, checked against the version it was loaded with.
+        registry.flush();
+        assertEquals(1, writes.size());
+        assertEquals(IndexInfo.State.SNAPSHOTED, writes.get(0).get(0).getState());
+        assertEquals(1, writes.get(0).get(0).getVersion());
+        assertEquals(2, registry.get("logs-2").getVersion());
+        registry.flush();
+        assertEquals(1, writes.size());
+    }
+
+    @Test
+    public void testRequeue() throws IOException {
+        assertEquals("logs-2", registry.poll(1).get(0).getName());
+        registry.move(Collections.singletonList(registry.get("logs-3")), IndexInfo.State.READY, null);
+        assertEquals(Arrays.asList("logs-3", "logs-1"), names(registry.poll(2)));
+        assertFalse(registry.hasReady());
+        assertTrue(registry.ofSnapshots(Collections.singleton("snapshot_logs-3")).isEmpty());
+    }
+
+    @Test
+    public void testFlushOnceMaxDirty() throws IOException {
+        List<IndexInfo> many = new ArrayList<>();
+        for (int i = 0; i < StateRegistry.maxDirty; i++) {
+            many.add(new IndexInfo("metrics-" + i, 1L, IndexInfo.State.READY));
+        }
+        registry.move(many, IndexInfo.State.SNAPSHOT_INPROGRESS, "snapshot_metrics");
+        assertEquals(1, writes.size());
+        assertEquals(0, registry.dirtyCount());
+    }
+
+    private static List<String> names(List<IndexInfo> entries) {
+        List<String> names = new ArrayList<>();
+        for (IndexInfo entry : entries) {
+            names.add(entry.getName());
+        }
+        return names;
+    }
+}
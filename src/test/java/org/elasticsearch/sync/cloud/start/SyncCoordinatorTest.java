@@ -0,0 +1,123 @@
+package org.elasticsearch.sync.cloud.start;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+
+public class SyncCoordinatorTest {
+
+    @Test
+    public void testStopEndsLoop() throws IOException, InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch exited = new CountDownLatch(1);
+        AbstractStartThread worker = new AbstractStartThread(null, new StartInfo("{\"mode\":\"sink\"}")) {
+            @Override
+            public void run() {
+                started.countDown();
+                while (!isStopped()) {
+                    try {
+                        Thread.sleep(60000);
+                    } catch (InterruptedException ex) {
+                        //stop interrupts the wait.
+                    }
+                }
+                exited.countDown();
+            }
+        };
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        worker.start(executor);
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+        worker.stop();
+        assertTrue(exited.await(10, TimeUnit.SECONDS));
+        executor.shutdown();
+    }
+
+    @Test
+    public void testNothingRunsWithoutRequest() {
+        SyncCoordinator coordinator = new SyncCoordinator(null, null, null, Runnable::run);
+        coordinator.reconcile(null);
+        assertFalse(coordinator.hasStartRequest());
+
+        //an invalid request is not retried on every cluster change.
+        coordinator.reconcile("{\"mode\":\"other\"}");
+        assertTrue(coordinator.hasStartRequest());
+        coordinator.reconcile(null);
+        assertFalse(coordinator.hasStartRequest());
+    }
+
+    @Test
+    public void testNewLoopStartsOnceOldExited() throws IOException, InterruptedException {
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AbstractStartThread old = new AbstractStartThread(null, new StartInfo("{\"mode\":\"sink\"}")) {
+            @Override
+            public void run() {
+                //a call in progress that ignores the interrupt.
+                running.countDown();
+                while (release.getCount() > 0) {
+                    try {
+                        release.await();
+                    } catch (InterruptedException ex) {
+                        //keeps going till released.
+                    }
+                }
+            }
+        };
+        CountDownLatch started = new CountDownLatch(1);
+        AbstractStartThread next = new AbstractStartThread(null, new StartInfo("{\"mode\":\"sink\"}")) {
+            @Override
+            public void run() {
+                started.countDown();
+            }
+        };
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        old.start(executor);
+        assertTrue(running.await(10, TimeUnit.SECONDS));
+        old.stop();
+        next.start(executor, Collections.singletonList(old), () -> {});
+        assertFalse(started.await(200, TimeUnit.MILLISECONDS));
+
+        release.countDown();
+        assertTrue(old.awaitExit(10000));
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+        executor.shutdown();
+    }
+
+    @Test
+    public void testExitWithoutStopIsReported() throws IOException, InterruptedException {
+        AtomicBoolean reported = new AtomicBoolean();
+        AbstractStartThread worker = new AbstractStartThread(null, new StartInfo("{\"mode\":\"sink\"}")) {
+            @Override
+            public void run() {
+                throw new IllegalStateException("failed");
+            }
+        };
+        try {
+            worker.start(Runnable::run, Collections.emptyList(), () -> reported.set(true));
+        } catch (IllegalStateException ex) {
+            //thrown on the calling thread by the direct executor.
+        }
+        assertTrue(reported.get());
+        assertTrue(worker.awaitExit(0));
+    }
+
+    @Test
+    public void testRetryBackoff() {
+        assertEquals(AbstractStartThread.minRetryMillis, AbstractStartThread.nextRetryMillis(0));
+        assertEquals(2 * AbstractStartThread.minRetryMillis,
+                AbstractStartThread.nextRetryMillis(AbstractStartThread.minRetryMillis));
+        assertEquals(AbstractStartThread.maxRetryMillis,
+                AbstractStartThread.nextRetryMillis(AbstractStartThread.maxRetryMillis));
+    }
+}
@@ -0,0 +1,50 @@
+package org.elasticsearch.sync.cloud.start;
+
+import org.elasticsearch.sync.cloud.elastic.NodeLoad;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+
+
+public class ThrottlePolicyTest {
+
+    private final ThrottlePolicy policy = new ThrottlePolicy(20, 100, 1000, 100, 1100);
+
+    @Test
+    public void testIncreaseWithinBudget() {
+        assertEquals(100, policy.initialRate());
+        assertEquals(200, policy.nextRate(100, 10, 50, 500));
+        assertEquals(1100, policy.nextRate(1050, 10, 50, 500));
+    }
+
+    @Test
+    public void testDecreaseOverBudget() {
+        assertEquals(500, policy.nextRate(1000, 30, 0, 0));
+        assertEquals(500, policy.nextRate(1000, 0, 101, 0));
+        assertEquals(500, policy.nextRate(1000, 0, 0, 1001));
+        assertEquals(100, policy.nextRate(150, 30, 0, 0));
+    }
+
+    @Test
+    public void testFromMap() {
+        Map<String, Object> map = new HashMap<>();
+        map.put("target_latency_ms", 5);
+        map.put("min_rate", "1mb");
+        map.put("max_rate", "2mb");
+        ThrottlePolicy fromMap = ThrottlePolicy.fromMap(map);
+        assertEquals(1024 * 1024, fromMap.initialRate());
+        assertEquals(1024 * 1024, fromMap.nextRate(2 * 1024 * 1024, 6, 0, 0));
+    }
+
+    @Test
+    public void testLoadDeltas() {
+        NodeLoad first = new NodeLoad(1000, 100, 1000, 0, 1000);
+        NodeLoad second = new NodeLoad(3000, 300, 5000, 0, 3000);
+        assertEquals(20.0, second.indexLatencyMillisSince(first), 0.001);
+        assertEquals(1024 * 1000, second.ioBytesPerSecSince(first));
+        assertEquals(0.0, first.indexLatencyMillisSince(first), 0.001);
+    }
+}
@@ -0,0 +1,80 @@
+package org.elasticsearch.sync.cloud.status;
+
+import org.elasticsearch.sync.cloud.utils.IndexInfo;
+import org.elasticsearch.sync.cloud.utils.StateCounts;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+
+public class SyncProgressTest {
+
+    @Test
+    public void testMovesBetweenLoads() {
+        SyncProgress progress = new SyncProgress();
+        StateCounts counts = new StateCounts();
+        counts.add(IndexInfo.State.READY, 5, 500L);
+        counts.add(IndexInfo.State.SNAPSHOTED, 3, 300L);
+        //one of the snapshoted indices is still in the storage.
+        progress.reset(counts, 1, 100L);
+
+        StatusInfo status = progress.toStatusInfo();
+        assertEquals(8, status.totalIndices);
+        assertEquals(5, status.pendingIndicesToSnapshot);
+        assertEquals(2, status.completedIndices);
+        assertEquals(1, status.pendingIndicesToRestore);
+
+        progress.move(IndexInfo.State.READY, IndexInfo.State.SNAPSHOT_INPROGRESS, 2, 200L);
+        progress.move(IndexInfo.State.SNAPSHOT_INPROGRESS, IndexInfo.State.SNAPSHOTED, 2, 200L);
+        progress.complete(1, 100L);
+
+        status = progress.toStatusInfo();
+        assertEquals(8, status.totalIndices);
+        assertEquals(800L, status.totalSizeInBytes);
+        assertEquals(3, status.pendingIndicesToSnapshot);
+        assertEquals(300L, status.totalPendingInBytes);
+        assertEquals(3, status.completedIndices);
+        assertEquals(2, status.pendingIndicesToRestore);
+    }
+
+    @Test
+    public void testRefreshIfStale() {
+        AtomicLong now = new AtomicLong(1000);
+        SyncProgress progress = new SyncProgress(now::get);
+        AtomicInteger loads = new AtomicInteger();
+        List<Runnable> queued = new ArrayList<>();
+
+        assertFalse(progress.isLoaded());
+        progress.refreshIfStale(10000, queued::add, view -> {
+            loads.incrementAndGet();
+            view.reset(new StateCounts(), 0, 0);
+        });
+        //not loaded inline, and only one load at a time.
+        progress.refreshIfStale(10000, queued::add, view -> loads.incrementAndGet());
+        assertEquals(1, queued.size());
+        assertFalse(progress.isLoaded());
+
+        queued.remove(0).run();
+        assertTrue(progress.isLoaded());
+        assertEquals(1, loads.get());
+
+        progress.refreshIfStale(10000, queued::add, view -> loads.incrementAndGet());
+        assertEquals(0, queued.size());
+        now.addAndGet(10000);
+        progress.refreshIfStale(10000, queued::add, view -> {
+            throw new IllegalStateException("load failed");
+        });
+        assertEquals(1, queued.size());
+        queued.remove(0).run();
+        //a failed load does not block the next one.
+        progress.refreshIfStale(10000, queued::add, view -> loads.incrementAndGet());
+        assertEquals(1, queued.size());
+    }
+}
@@ -0,0 +1,76 @@
+package org.elasticsearch.sync.cloud.status;
+
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+
+
+public class SyncStatsTest {
+
+    @Test
+    public void testHistogramBuckets() {
+        assertEquals(0, LatencyHistogram.bucket(0));
+        assertEquals(0, LatencyHistogram.bucket(1));
+        assertEquals(1, LatencyHistogram.bucket(2));
+        assertEquals(2, LatencyHistogram.bucket(3));
+        assertEquals(10, LatencyHistogram.bucket(1024));
+        assertEquals(11, LatencyHistogram.bucket(1025));
+        assertEquals(26, LatencyHistogram.bucket(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void testHistogramPercentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.getPercentileMillis(50));
+        for (int i = 0; i < 90; i++) {
+            histogram.record(100);
+        }
+        for (int i = 0; i < 10; i++) {
+            histogram.record(5000);
+        }
+        assertEquals(100, histogram.getCount());
+        assertEquals(590.0, histogram.getMeanMillis(), 0.001);
+        assertEquals(128, histogram.getPercentileMillis(50));
+        assertEquals(128, histogram.getPercentileMillis(90));
+        //bucket bound 8192 is capped at the max seen.
+        assertEquals(5000, histogram.getPercentileMillis(99));
+        assertEquals(5000, histogram.getMaxMillis());
+    }
+
+    @Test
+    public void testRollingThroughput() {
+        AtomicLong now = new AtomicLong(10 * 60 * 1000);
+        SyncStats stats = new SyncStats(now::get);
+
+        stats.record(SyncStats.Phase.SNAPSHOT, 1000, 60 * 1000);
+        now.addAndGet(30 * 1000);
+        //60kb over the 30 seconds of the current minute.
+        assertEquals(2000, stats.getBytesPerSec(SyncStats.Phase.SNAPSHOT, 1));
+        assertEquals(0, stats.getBytesPerSec(SyncStats.Phase.RESTORE, 1));
+
+        //an hour later the minute left the window, the total stays.
+        now.addAndGet(60 * 60 * 1000);
+        assertEquals(0, stats.getBytesPerSec(SyncStats.Phase.SNAPSHOT, 60));
+        assertEquals(60 * 1000, stats.getBytes(SyncStats.Phase.SNAPSHOT));
+        assertEquals(1, stats.getLatency(SyncStats.Phase.SNAPSHOT).getCount());
+    }
+
+    @Test
+    public void testEta() {
+        AtomicLong now = new AtomicLong(0);
+        SyncStats stats = new SyncStats(now::get);
+        assertEquals(-1, stats.getEtaMillis(SyncStats.Phase.SNAPSHOT, 1000));
+        assertEquals(0, stats.getEtaMillis(SyncStats.Phase.SNAPSHOT, 0));
+
+        for (int minute = 0; minute < 60; minute++) {
+            stats.record(SyncStats.Phase.SNAPSHOT, 1000, 60 * 1000 * 1000L);
+            now.addAndGet(60 * 1000);
+        }
+        now.addAndGet(-1);
+        //about 1mb per second over the hour.
+        long eta = stats.getEtaMillis(SyncStats.Phase.SNAPSHOT, 3600 * 1000 * 1000L);
+        assertEquals(3600 * 1000, eta, 1000);
+    }
+}
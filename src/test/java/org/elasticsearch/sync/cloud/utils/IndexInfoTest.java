@@ -55,4 +55,28 @@ public class IndexInfoTest {
         assertEquals("SNAPSHOTED",ss.getState().toString());
     }
 
+    @Test
+    public void testSnapshotName() throws IOException  {
+        IndexInfo indexInfo = new IndexInfo("logs-2019-01-01",34L, IndexInfo.State.SNAPSHOTED, "snapshot_logs-2019-01-02");
+        IndexInfo ss = new IndexInfo(indexInfo.toJson());
+        assertEquals("snapshot_logs-2019-01-02",ss.getSnapshot());
+
+        ss = new IndexInfo(new IndexInfo("logs-2019-01-01",34L, IndexInfo.State.READY).toJson());
+        assertEquals(null,ss.getSnapshot());
+    }
+
+    @Test
+    public void testSizeOver2gb() {
+        IndexInfo parsed = new IndexInfo("{\"name\":\"logs-2019-01-01\",\"sizeInBytes\":3221225472,\"state\":\"READY\"," +
+                "\"creationDate\":1546300800000,\"unknown\":{\"a\":1},\"snapshot\":null}");
+        assertEquals(3221225472L, parsed.getSizeInBytes().longValue());
+        assertEquals(1546300800000L, parsed.getCreationDate());
+        assertEquals(null, parsed.getSnapshot());
+
+        Map<String,Object> map = new HashMap<>();
+        map.put("name","logs-2019-01-01");
+        map.put("sizeInBytes",3221225472L);
+        map.put("state","READY");
+        assertEquals(3221225472L, new IndexInfo(map).getSizeInBytes().longValue());
+    }
 }
@@ -0,0 +1,42 @@
+package org.elasticsearch.sync.cloud.utils;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+
+public class StateCountsTest {
+
+    @Test
+    public void testCounts() {
+        StateCounts counts = new StateCounts();
+        assertTrue(counts.isEmpty());
+
+        counts.add(IndexInfo.State.READY, 2, 300L);
+        counts.add(IndexInfo.State.SNAPSHOTED, 1, 34L);
+        counts.add(IndexInfo.State.READY, 1, 100L);
+
+        assertFalse(counts.isEmpty());
+        assertEquals(3, counts.getCount(IndexInfo.State.READY));
+        assertEquals(400L, counts.getSizeInBytes(IndexInfo.State.READY));
+        assertEquals(0, counts.getCount(IndexInfo.State.SNAPSHOT_INPROGRESS));
+        assertEquals(4, counts.getTotalCount());
+        assertEquals(434L, counts.getTotalSizeInBytes());
+    }
+
+    @Test
+    public void testOfEntries() {
+        StateCounts counts = StateCounts.of(Arrays.asList(
+                new IndexInfo("logs-1", 10L, IndexInfo.State.SNAPSHOTED, "snapshot_logs-1"),
+                new IndexInfo("logs-2", 20L, IndexInfo.State.SNAPSHOTED, "snapshot_logs-1"),
+                new IndexInfo("logs-3", 5L, IndexInfo.State.SNAPSHOT_INPROGRESS, "snapshot_logs-3")));
+
+        assertEquals(2, counts.getCount(IndexInfo.State.SNAPSHOTED));
+        assertEquals(30L, counts.getSizeInBytes(IndexInfo.State.SNAPSHOTED));
+        assertEquals(1, counts.getCount(IndexInfo.State.SNAPSHOT_INPROGRESS));
+    }
+}
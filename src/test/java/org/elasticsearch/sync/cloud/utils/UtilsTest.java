@@ -1,5 +1,8 @@
 package org.elasticsearch.sync.cloud.utils;
 
+import org.elasticsearch.common.xcontent.NamedXContentRegistry;
+import org.elasticsearch.common.xcontent.XContentParser;
+import org.elasticsearch.common.xcontent.json.JsonXContent;
 import org.json.JSONException;
 import org.junit.Test;
 import org.skyscreamer.jsonassert.JSONAssert;
@@ -11,7 +14,10 @@ import java.util.List;
 import java.util.Map;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 
 public class UtilsTest  {
@@ -95,4 +101,31 @@ public class UtilsTest  {
         assertEquals(3,ss.size());
         assertEquals(IndexInfo.State.SNAPSHOTED,ss.get(0).getState());
     }
+
+    @Test
+    public void testReadSnapshotsStreams() throws IOException {
+        String json = "{\"name\":\"cloudsync\",\"meta\":{\"v\":[1,2]},\"snapshots\":[" +
+                "{\"name\":\"logs-2019-01-02\",\"sizeInBytes\":5368709120,\"state\":\"SNAPSHOTED\",\"snapshot\":\"snapshot_logs-2019-01-02\"}," +
+                "{\"name\":\"logs-2019-01-01\",\"sizeInBytes\":34,\"state\":\"READY\",\"tags\":[\"a\"]}]}";
+        List<String> names = new ArrayList<>();
+        try (XContentParser parser = JsonXContent.jsonXContent.createParser(NamedXContentRegistry.EMPTY, json)) {
+            assertTrue(Utils.readSnapshots(parser, entry -> names.add(entry.getName())));
+        }
+        assertEquals(2, names.size());
+        assertEquals("logs-2019-01-01", names.get(1));
+
+        List<IndexInfo> ss = Utils.toSnapshots(json);
+        assertEquals(5368709120L, ss.get(0).getSizeInBytes().longValue());
+        assertEquals("snapshot_logs-2019-01-02", ss.get(0).getSnapshot());
+        assertEquals(5368709120L, Utils.toSnapshots(Utils.toJson(ss)).get(0).getSizeInBytes().longValue());
+    }
+
+    @Test
+    public void testReadSnapshotsWithoutField() throws IOException {
+        //a state document of the one document per index layout.
+        String json = "{\"name\":\"1\",\"sizeInBytes\":34,\"state\":\"READY\"}";
+        try (XContentParser parser = JsonXContent.jsonXContent.createParser(NamedXContentRegistry.EMPTY, json)) {
+            assertFalse(Utils.readSnapshots(parser, entry -> fail("no entries expected")));
+        }
+    }
 }